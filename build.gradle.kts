@@ -9,6 +9,7 @@ plugins {
     alias(libs.plugins.changelog) // Gradle Changelog Plugin
     alias(libs.plugins.qodana) // Gradle Qodana Plugin
     alias(libs.plugins.kover) // Gradle Kover Plugin
+    alias(libs.plugins.jmh) // JMH benchmarks in src/jmh
 }
 
 group = providers.gradleProperty("pluginGroup").get()
@@ -40,11 +41,6 @@ dependencies {
     implementation(libs.jackson.core)
     implementation(libs.jackson.annotations)
 
-    // for JGraph
-    implementation("org.jgrapht:jgrapht-core:1.5.2")
-    implementation("org.jgrapht:jgrapht-ext:1.5.2") // needed for JGraphXAdapter
-    implementation("com.github.vlsi.mxgraph:jgraphx:4.2.2")
-
     // IntelliJ Platform Gradle Plugin Dependencies Extension - read more: https://plugins.jetbrains.com/docs/intellij/tools-intellij-platform-gradle-plugin-dependencies-extension.html
     intellijPlatform {
         create(providers.gradleProperty("platformType"), providers.gradleProperty("platformVersion"))
@@ -62,6 +58,12 @@ dependencies {
     }
 }
 
+// the benchmarks call into classes compiled against the IntelliJ Platform, e.g. OrganiseHelpers
+configurations {
+    named("jmhCompileOnly") { extendsFrom(compileOnly.get()) }
+    named("jmhRuntimeOnly") { extendsFrom(compileOnly.get()) }
+}
+
 // Configure IntelliJ Platform Gradle Plugin - read more: https://plugins.jetbrains.com/docs/intellij/tools-intellij-platform-gradle-plugin-extension.html
 intellijPlatform {
     pluginConfiguration {
@@ -126,6 +128,17 @@ changelog {
     repositoryUrl = providers.gradleProperty("pluginRepositoryUrl")
 }
 
+// Configure JMH Gradle Plugin - read more: https://github.com/melix/jmh-gradle-plugin
+jmh {
+    jmhVersion = libs.versions.jmh
+    warmupIterations = 2
+    iterations = 5
+    fork = 1
+    // the biggest generated graphs need room for the analysis results
+    jvmArgs = listOf("-Xmx4g")
+    resultFormat = "JSON"
+}
+
 // Configure Gradle Kover Plugin - read more: https://github.com/Kotlin/kotlinx-kover#configuration
 kover {
     reports {
@@ -145,6 +158,14 @@ tasks {
     publishPlugin {
         dependsOn(patchChangelog)
     }
+
+    // analyse knit.json without an IDE, e.g. in CI: ./gradlew analyseKnitJson --args="demo-jvm/build/knit.json"
+    register<JavaExec>("analyseKnitJson") {
+        group = "verification"
+        description = "Checks knit.json files for cyclic dependencies, exits with 1 when there are any"
+        classpath = sourceSets.main.get().runtimeClasspath
+        mainClass = "com.github.coffeencode.toolWindow.KnitJsonAnalyser"
+    }
 }
 
 intellijPlatformTesting {
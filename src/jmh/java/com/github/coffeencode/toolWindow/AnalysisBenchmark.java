@@ -0,0 +1,188 @@
+package com.github.coffeencode.toolWindow;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * every analysis on its own, on the graph parsed once per trial, and the whole load as the tool window runs it
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AnalysisBenchmark {
+    // the results of one analysis, as flags by edge id and in the class -> dependencies shape
+    @State(Scope.Benchmark)
+    public static class Analysed {
+        AnalysisResult result;
+        Map<String, List<String>> cyclic;
+        Map<String, List<String>> redundant;
+
+        @Setup(Level.Trial)
+        public void analyse(GeneratedKnitJson knitJson) {
+            result = new AnalysisExecutor().analyse(knitJson.graph, AnalysisProgress.NONE).toAnalysisResult();
+            cyclic = result.toMap(AnalysisResult.CYCLIC);
+            redundant = result.toMap(AnalysisResult.REDUNDANT);
+        }
+    }
+
+    // the class name index of the search bar, built once
+    @State(Scope.Benchmark)
+    public static class Indexed {
+        ClassSearchIndex index;
+
+        @Setup(Level.Trial)
+        public void index(GeneratedKnitJson knitJson) {
+            index = new ClassSearchIndex(knitJson.graph);
+        }
+    }
+
+    // the graph as an older build had it: every 1000th dependency missing, and one per 1000 classes extra, a
+    // shortcut to a dependency of a dependency (a random one would likely close a cycle through half the graph)
+    @State(Scope.Benchmark)
+    public static class Baseline {
+        DependencyGraph graph;
+
+        @Setup(Level.Trial)
+        public void change(GeneratedKnitJson knitJson) {
+            DependencyGraph current = knitJson.graph;
+            DependencyGraph.Builder builder = new DependencyGraph.Builder();
+            for (int node = 0; node < current.nodeCount(); node++) {
+                builder.addNode(current.name(node));
+                for (int edge = current.edgeStart(node); edge < current.edgeEnd(node); edge++) {
+                    if (edge % 1000 != 0) {
+                        builder.addEdge(current.name(node), current.name(current.target(edge)));
+                    }
+                }
+                if (node % 1000 == 500 && current.outDegree(node) > 0) {
+                    int next = current.target(current.edgeStart(node));
+                    if (current.outDegree(next) > 0) {
+                        builder.addEdge(current.name(node), current.name(current.target(current.edgeStart(next))));
+                    }
+                }
+            }
+            graph = builder.build();
+        }
+    }
+
+    @Benchmark
+    public StronglyConnectedComponents components(GeneratedKnitJson knitJson) {
+        return new StronglyConnectedComponents(knitJson.graph);
+    }
+
+    @Benchmark
+    public Map<String, List<String>> findCycles(GeneratedKnitJson knitJson) {
+        return new Cyclic(knitJson.graph).findCycles();
+    }
+
+    @Benchmark
+    public List<List<String>> findElementaryCycles(GeneratedKnitJson knitJson) {
+        return new Cyclic(knitJson.graph).findElementaryCycles(1000);
+    }
+
+    // the same number of cycles, shortest first
+    @Benchmark
+    public int enumerateCycles(GeneratedKnitJson knitJson) {
+        CycleEnumerator cycles = new Cyclic(knitJson.graph).cycles(1000, 0, 0);
+        int count = 0;
+        while (cycles.hasNext()) {
+            count += cycles.next().size();
+        }
+        return count;
+    }
+
+    @Benchmark
+    public Map<String, List<String>> findTransitives(GeneratedKnitJson knitJson) {
+        return new Transitive(knitJson.graph).findTransitives();
+    }
+
+    // what the tool window keeps instead of the lists: one compressed set per component, counted
+    @Benchmark
+    public long transitiveClosure(GeneratedKnitJson knitJson) {
+        TransitiveClosure closure = new TransitiveClosure(knitJson.graph);
+        long reached = 0;
+        for (int c = 0; c < closure.components().componentCount(); c++) {
+            reached += closure.reachableComponents(c).cardinality();
+        }
+        return reached;
+    }
+
+    @Benchmark
+    public Map<String, List<String>> findRedundant(GeneratedKnitJson knitJson) {
+        return new Transitive(knitJson.graph).findRedundant();
+    }
+
+    // blast radius sketches and dominator tree of every class
+    @Benchmark
+    public ImpactAnalysis impact(GeneratedKnitJson knitJson) {
+        return new ImpactAnalysis(knitJson.graph);
+    }
+
+    // all analyses at the same time, sharing one component computation
+    @Benchmark
+    public AnalysisExecutor.Result analyse(GeneratedKnitJson knitJson) {
+        return new AnalysisExecutor().analyse(knitJson.graph, AnalysisProgress.NONE);
+    }
+
+    // parsing and analysing from scratch, what opening the tool window without a snapshot costs
+    @Benchmark
+    public IncrementalAnalysis load(GeneratedKnitJson knitJson) throws IOException {
+        IncrementalAnalysis analysis = new IncrementalAnalysis();
+        analysis.load(new ByteArrayInputStream(knitJson.bytes));
+        return analysis;
+    }
+
+    // comparing with a baseline like a branch would have, see Baseline
+    @Benchmark
+    public DependencyDiff diff(Baseline baseline, Analysed analysed) {
+        return DependencyDiff.compare(baseline.graph, analysed.result, AnalysisProgress.NONE);
+    }
+
+    @Benchmark
+    public ClassSearchIndex buildSearchIndex(GeneratedKnitJson knitJson) {
+        return new ClassSearchIndex(knitJson.graph);
+    }
+
+    // what typing a camel-hump query and a package-prefixed one costs per keystroke
+    @Benchmark
+    public int search(Indexed indexed) {
+        return indexed.index.search("CF", 50).size() + indexed.index.search("c.e.Class1", 50).size();
+    }
+
+    // styling every edge the way the view does, by searching the lists of the two maps
+    @Benchmark
+    public int classifyByLists(GeneratedKnitJson knitJson, Analysed analysed) {
+        DependencyGraph graph = knitJson.graph;
+        int styled = 0;
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            List<String> cyclic = analysed.cyclic.get(graph.name(node));
+            List<String> redundant = analysed.redundant.get(graph.name(node));
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                String target = graph.name(graph.target(edge));
+                styled += AnalysisResult.flags(cyclic != null && cyclic.contains(target),
+                        redundant != null && redundant.contains(target));
+            }
+        }
+        return styled;
+    }
+
+    // the same by edge id
+    @Benchmark
+    public int classifyByEdgeId(Analysed analysed) {
+        int styled = 0;
+        for (int edge = 0; edge < analysed.result.graph().edgeCount(); edge++) {
+            styled += analysed.result.flags(edge);
+        }
+        return styled;
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.coffeencode.toolWindow;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * one synthetic knit.json per benchmark trial (see KnitJsonGenerator), shared by every benchmark.
+ * ./gradlew jmh runs every combination, a single stage or size can be picked with the benchmark jar, e.g.
+ * ./gradlew jmhJar and java -jar build/libs/*-jmh.jar AnalysisBenchmark -p classes=10000
+ */
+@State(Scope.Benchmark)
+public class GeneratedKnitJson {
+    @Param({"100", "1000", "10000", "100000"})
+    public int classes;
+
+    // chance of a dependency pointing back, 0 gives a DAG
+    @Param({"0", "0.01", "0.1"})
+    public double cycleDensity;
+
+    public String json;
+    public byte[] bytes;
+    // the parsed graph, input of every stage after parsing
+    public DependencyGraph graph;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        json = new KnitJsonGenerator(classes, cycleDensity, 42).generate();
+        bytes = json.getBytes(StandardCharsets.UTF_8);
+        graph = OrganiseHelpers.summariseDependencies(json);
+    }
+}
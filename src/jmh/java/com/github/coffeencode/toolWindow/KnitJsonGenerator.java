@@ -0,0 +1,209 @@
+package com.github.coffeencode.toolWindow;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * writes synthetic knit.json files that look like the ones knit produces for a real project:
+ * classes spread over modules and packages, each with a parent, providers with parameters,
+ * composites, nested injections and generic types like java.util.List<out a.B>.
+ * The dependencies mostly point to classes with a slightly higher index (a DAG), cycleDensity is the
+ * chance of a dependency pointing a little back instead, which is what creates the cycles.
+ * Like in real code the cycles stay local, a higher density merges them into bigger tangles.
+ * The same arguments always give the same file.
+ */
+public class KnitJsonGenerator {
+    // how far ahead (or back) a dependency may point, keeps the graph deep instead of flat
+    private static final int WINDOW = 40;
+    private static final int CLASSES_PER_MODULE = 500;
+    private static final int PACKAGES_PER_MODULE = 8;
+
+    private final int classCount;
+    private final long seed;
+    // drawn from again while writing, reset by every write so each one gives the same file
+    private Random random;
+    // dependencies[c] are the classes c depends on, decided up front so nested injections agree with them
+    private final int[][] dependencies;
+
+    /**
+     * @param classCount how many top-level class entries the file has
+     * @param cycleDensity chance of every dependency pointing back to an earlier class, between 0 and 1
+     * @param seed the same seed gives the same file
+     */
+    public KnitJsonGenerator(int classCount, double cycleDensity, long seed) {
+        this.classCount = classCount;
+        this.seed = seed;
+        this.random = new Random(seed);
+        this.dependencies = new int[classCount][];
+        for (int c = 0; c < classCount; c++) {
+            int count = 1 + random.nextInt(4);
+            int[] targets = new int[count];
+            int found = 0;
+            for (int i = 0; i < count; i++) {
+                int target;
+                if (c > 0 && random.nextDouble() < cycleDensity) {
+                    target = Math.max(0, c - 1 - random.nextInt(WINDOW));
+                } else {
+                    target = c + 1 + random.nextInt(WINDOW);
+                }
+                if (target < classCount && target != c) {
+                    targets[found++] = target;
+                }
+            }
+            dependencies[c] = Arrays.copyOf(targets, found);
+        }
+    }
+
+    /**
+     * @return the whole file as one string, e.g. for summariseDependencies(String)
+     */
+    public String generate() {
+        StringBuilder out = new StringBuilder(classCount * 600);
+        try {
+            write(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // StringBuilder does not throw
+        }
+        return out.toString();
+    }
+
+    public void write(Path file) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            write(out);
+        }
+    }
+
+    /**
+     * @return number of dependencies between classes, repeats counted, generic arguments not
+     */
+    public int dependencyCount() {
+        int count = 0;
+        for (int[] targets : dependencies) {
+            count += targets.length;
+        }
+        return count;
+    }
+
+    private void write(Appendable out) throws IOException {
+        random = new Random(seed + 1);
+        out.append("{\n");
+        for (int c = 0; c < classCount; c++) {
+            if (c > 0) {
+                out.append(",\n");
+            }
+            writeClass(out, c);
+        }
+        out.append("\n}\n");
+    }
+
+    private void writeClass(Appendable out, int c) throws IOException {
+        String name = name(c);
+        int[] targets = dependencies[c];
+        // knit writes the top-level keys in the / format
+        out.append("  \"").append(name.replace('.', '/')).append("\": {");
+        boolean first = true;
+
+        // every dependency goes into exactly one of parent, provider parameters, composite or injections
+        StringBuilder parameters = new StringBuilder();
+        StringBuilder composite = new StringBuilder();
+        StringBuilder injections = new StringBuilder();
+        for (int i = 0; i < targets.length; i++) {
+            int kind = i == 0 && random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(3);
+            if (kind == 0) {
+                out.append("\n    \"parent\": [\"").append(name(targets[i])).append("\"]");
+                first = false;
+            } else if (kind == 1) {
+                separate(parameters).append('"');
+                if (random.nextInt(10) == 0) {
+                    parameters.append("priority: ").append(1 + random.nextInt(3)).append(' ');
+                }
+                parameters.append(name(targets[i])).append('"');
+            } else if (kind == 2) {
+                separate(composite).append("\"field").append(i).append("\": \"").append(typeOf(targets[i])).append('"');
+            } else {
+                separate(injections).append("\"inject").append(i).append("\": ");
+                appendInjection(injections, targets[i], 1 + random.nextInt(3));
+            }
+        }
+
+        out.append(first ? "" : ",").append("\n    \"providers\": [\n      {\"provider\": \"")
+                .append(name).append(".<init> -> ").append(name).append('"');
+        if (parameters.length() > 0) {
+            out.append(", \"parameters\": [").append(parameters).append(']');
+        }
+        out.append('}');
+        // a factory method returning a generic type of the class itself, adds no class dependency
+        if (random.nextInt(4) == 0) {
+            out.append(",\n      {\"provider\": \"").append(name).append(".all -> java.util.List<out ")
+                    .append(name).append(">\"}");
+        }
+        out.append("\n    ]");
+        if (composite.length() > 0) {
+            out.append(",\n    \"composite\": {").append(composite).append('}');
+        }
+        if (injections.length() > 0) {
+            out.append(",\n    \"injections\": {").append(injections).append('}');
+        }
+        out.append("\n  }");
+    }
+
+    /**
+     * an injection of target, its parameters are injections of target's own dependencies, nested depth levels deep
+     */
+    private void appendInjection(StringBuilder out, int target, int depth) {
+        out.append("{\"methodId\": \"").append(name(target)).append(".<init> -> ").append(name(target)).append('"');
+        int[] inner = dependencies[target];
+        if (depth > 1 && inner.length > 0) {
+            out.append(", \"parameters\": [");
+            for (int i = 0; i < inner.length; i++) {
+                if (i > 0) {
+                    out.append(", ");
+                }
+                appendInjection(out, inner[i], depth - 1);
+            }
+            out.append(']');
+        }
+        out.append('}');
+    }
+
+    // the class as it is written in a composite, sometimes wrapped in a generic type
+    private String typeOf(int c) {
+        switch (random.nextInt(8)) {
+            case 0:
+                return "java.util.List<out " + name(c) + ">";
+            case 1:
+                return "java.util.Map<java.lang.String, " + name(c) + ">";
+            default:
+                return name(c);
+        }
+    }
+
+    private static StringBuilder separate(StringBuilder list) {
+        return list.length() > 0 ? list.append(", ") : list;
+    }
+
+    static String name(int c) {
+        int module = c / CLASSES_PER_MODULE;
+        int pkg = (c / 7) % PACKAGES_PER_MODULE;
+        return "com.example.module" + module + ".feature" + pkg + ".Class" + c;
+    }
+
+    /**
+     * write a file to look at or to feed the tool window with
+     * @param args classCount, cycleDensity, output file (knit.json if left out)
+     */
+    public static void main(String[] args) throws IOException {
+        int classCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        double cycleDensity = args.length > 1 ? Double.parseDouble(args[1]) : 0.01;
+        Path file = Paths.get(args.length > 2 ? args[2] : "knit.json");
+        KnitJsonGenerator generator = new KnitJsonGenerator(classCount, cycleDensity, 42);
+        generator.write(file);
+        System.out.println(classCount + " classes, " + generator.dependencyCount() + " dependencies written to " + file);
+    }
+}
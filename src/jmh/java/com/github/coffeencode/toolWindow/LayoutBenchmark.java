@@ -0,0 +1,81 @@
+package com.github.coffeencode.toolWindow;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the stages between the analysis and the screen, all headless.
+ * GraphVisualiser itself is a Swing panel of the IDE, what it spends its time on is measured
+ * here piece by piece: the package clusters, the layout and the scene built from it. Painting is in RenderBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LayoutBenchmark {
+    // about the size of a cell holding a class name
+    private static final double WIDTH = 140;
+    private static final double HEIGHT = 20;
+    // as many units as GraphVisualiser shows at first
+    private static final int INITIAL_VISIBLE_UNITS = 40;
+    private static final String STYLE = "fillColor=#EE9A92;fontColor=black;strokeColor=black";
+    private static final String EDGE_STYLE = "strokeColor=black;strokeWidth=1";
+
+    @State(Scope.Benchmark)
+    public static class LaidOut {
+        CondensedLayout layout;
+
+        @Setup(Level.Trial)
+        public void layout(GeneratedKnitJson knitJson) {
+            layout = new LayoutBenchmark().layout(knitJson);
+        }
+    }
+
+    @Benchmark
+    public List<Integer> packageClusters(GeneratedKnitJson knitJson) {
+        PackageClusters clusters = new PackageClusters();
+        for (int node = 0; node < knitJson.graph.nodeCount(); node++) {
+            clusters.addClass(knitJson.graph.name(node));
+        }
+        clusters.expandInitially(INITIAL_VISIBLE_UNITS);
+        return clusters.visibleUnits();
+    }
+
+    // every class laid out, as if all packages were open
+    @Benchmark
+    public CondensedLayout layout(GeneratedKnitJson knitJson) {
+        double[] width = new double[knitJson.graph.nodeCount()];
+        double[] height = new double[knitJson.graph.nodeCount()];
+        Arrays.fill(width, WIDTH);
+        Arrays.fill(height, HEIGHT);
+        CondensedLayout layout = new CondensedLayout(knitJson.graph, width, height, AnalysisProgress.NONE);
+        layout.execute();
+        return layout;
+    }
+
+    // the laid out classes handed to GraphCanvas: every box measured and put into the Quadtrees
+    @Benchmark
+    public GraphScene scene(GeneratedKnitJson knitJson, LaidOut laidOut) {
+        DependencyGraph graph = knitJson.graph;
+        GraphScene scene = new GraphScene();
+        scene.beginUpdate();
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            scene.addVertex(node, graph.name(node), laidOut.layout.x(node), laidOut.layout.y(node), STYLE);
+        }
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                scene.addEdge(((long) node << 32) | graph.target(edge), node, graph.target(edge), "", EDGE_STYLE);
+            }
+        }
+        scene.endUpdate();
+        return scene;
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.coffeencode.toolWindow;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * reading knit.json into a dependency graph, the first stage of the tool window
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParseBenchmark {
+
+    @Benchmark
+    public DependencyGraph summariseDependencies(GeneratedKnitJson knitJson) {
+        return OrganiseHelpers.summariseDependencies(knitJson.json);
+    }
+
+    // the path the tool window takes, streaming from the file instead of holding it as a string
+    @Benchmark
+    public DependencyGraph readStream(GeneratedKnitJson knitJson) throws IOException {
+        DependencyGraph.Builder dependenciesTable = new DependencyGraph.Builder();
+        KnitJsonReader.read(new ByteArrayInputStream(knitJson.bytes), dependenciesTable);
+        return dependenciesTable.build();
+    }
+
+    // per entry reading done by IncrementalAnalysis
+    @Benchmark
+    public Map<String, long[]> readEntries(GeneratedKnitJson knitJson) throws IOException {
+        return KnitJsonReader.readEntries(new ByteArrayInputStream(knitJson.bytes), new ClassNameTable());
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.coffeencode.toolWindow;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the reachability index behind DependencyPaths: building it, and answering queries between random pairs of classes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PathQueryBenchmark {
+    private static final int PAIRS = 1024;
+
+    @State(Scope.Benchmark)
+    public static class Queries {
+        DependencyPaths paths;
+        ReachabilityIndex index;
+        int[] sources = new int[PAIRS];
+        int[] targets = new int[PAIRS];
+        int next;
+
+        @Setup(Level.Trial)
+        public void build(GeneratedKnitJson knitJson) {
+            index = new ReachabilityIndex(knitJson.graph);
+            paths = new DependencyPaths(index);
+            Random random = new Random(42);
+            for (int i = 0; i < PAIRS; i++) {
+                sources[i] = random.nextInt(knitJson.graph.nodeCount());
+                targets[i] = random.nextInt(knitJson.graph.nodeCount());
+            }
+        }
+
+        int pair() {
+            next = (next + 1) % PAIRS;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public ReachabilityIndex buildIndex(GeneratedKnitJson knitJson) {
+        return new ReachabilityIndex(knitJson.graph);
+    }
+
+    @Benchmark
+    public boolean canReach(Queries queries) {
+        int pair = queries.pair();
+        return queries.index.canReach(queries.sources[pair], queries.targets[pair]);
+    }
+
+    @Benchmark
+    public List<String> shortestPath(GeneratedKnitJson knitJson, Queries queries) {
+        int pair = queries.pair();
+        return queries.paths.shortestPath(knitJson.graph.name(queries.sources[pair]),
+                knitJson.graph.name(queries.targets[pair]));
+    }
+
+    @Benchmark
+    public List<List<String>> paths(GeneratedKnitJson knitJson, Queries queries) {
+        int pair = queries.pair();
+        return queries.paths.paths(knitJson.graph.name(queries.sources[pair]),
+                knitJson.graph.name(queries.targets[pair]), 8, 20);
+    }
+}
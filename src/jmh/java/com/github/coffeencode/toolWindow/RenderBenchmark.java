@@ -0,0 +1,133 @@
+package com.github.coffeencode.toolWindow;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GraphCanvas painting a scene of every class into an image, headless: the whole graph zoomed out, a window of
+ * it at full size, and the small area a change repaints. Classes are placed on a grid, the layout is measured
+ * by LayoutBenchmark. Also finding the class under the mouse and moving one, both through the Quadtree
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RenderBenchmark {
+    // the size of the view in the tool window
+    private static final int WIDTH = 1200;
+    private static final int HEIGHT = 800;
+    private static final double SPACING_X = 240;
+    private static final double SPACING_Y = 60;
+    private static final String STYLE = "fillColor=#EE9A92;fontColor=black;strokeColor=black";
+    private static final String EDGE_STYLE = "strokeColor=black;strokeWidth=1";
+    private static final int POINTS = 1024;
+
+    @State(Scope.Benchmark)
+    public static class Canvas {
+        GraphScene scene;
+        GraphCanvas canvas;
+        BufferedImage image;
+        Graphics2D graphics;
+        int columns;
+        double[] pointX = new double[POINTS];
+        double[] pointY = new double[POINTS];
+        int next;
+
+        @Setup(Level.Trial)
+        public void build(GeneratedKnitJson knitJson) {
+            DependencyGraph graph = knitJson.graph;
+            scene = new GraphScene();
+            columns = (int) Math.ceil(Math.sqrt(graph.nodeCount()));
+            for (int node = 0; node < graph.nodeCount(); node++) {
+                scene.addVertex(node, graph.name(node), (node % columns) * SPACING_X, (node / columns) * SPACING_Y,
+                        STYLE);
+            }
+            for (int node = 0; node < graph.nodeCount(); node++) {
+                for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                    scene.addEdge(((long) node << 32) | graph.target(edge), node, graph.target(edge), "", EDGE_STYLE);
+                }
+            }
+            canvas = new GraphCanvas(scene);
+            canvas.setSize(WIDTH, HEIGHT);
+            image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+            graphics = image.createGraphics();
+            Random random = new Random(42);
+            for (int i = 0; i < POINTS; i++) {
+                pointX[i] = random.nextDouble() * columns * SPACING_X;
+                pointY[i] = random.nextDouble() * columns * SPACING_Y;
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void dispose() {
+            graphics.dispose();
+        }
+
+        // everything within the view, through the clip the way Swing paints a dirty region
+        void paint(int x, int y, int width, int height) {
+            graphics.setClip(x, y, width, height);
+            canvas.paintComponent(graphics);
+        }
+
+        int point() {
+            next = (next + 1) % POINTS;
+            return next;
+        }
+    }
+
+    // every class on screen, without labels or arrow heads
+    @Benchmark
+    public BufferedImage paintWholeGraph(Canvas canvas) {
+        canvas.canvas.fit();
+        canvas.paint(0, 0, WIDTH, HEIGHT);
+        return canvas.image;
+    }
+
+    // the middle of the graph at full size, everything drawn
+    @Benchmark
+    public BufferedImage paintFullSize(Canvas canvas) {
+        double middleX = canvas.columns * SPACING_X / 2;
+        double middleY = canvas.columns * SPACING_Y / 2;
+        canvas.canvas.setView(1, WIDTH / 2.0 - middleX, HEIGHT / 2.0 - middleY);
+        canvas.paint(0, 0, WIDTH, HEIGHT);
+        return canvas.image;
+    }
+
+    // a highlighted class repainted, the rest of the view stays as it is
+    @Benchmark
+    public BufferedImage paintDirtyRegion(Canvas canvas) {
+        double middleX = canvas.columns * SPACING_X / 2;
+        double middleY = canvas.columns * SPACING_Y / 2;
+        canvas.canvas.setView(1, WIDTH / 2.0 - middleX, HEIGHT / 2.0 - middleY);
+        canvas.paint(WIDTH / 2 - 100, HEIGHT / 2 - 20, 200, 40);
+        return canvas.image;
+    }
+
+    @Benchmark
+    public int vertexAt(Canvas canvas) {
+        int point = canvas.point();
+        return canvas.scene.vertexAt(canvas.pointX[point], canvas.pointY[point]);
+    }
+
+    // a class dragged somewhere, its box and edges move in the Quadtrees
+    @Benchmark
+    public double moveVertex(Canvas canvas) {
+        int point = canvas.point();
+        int vertex = point % canvas.scene.vertexIds().size();
+        double x = canvas.scene.x(vertex);
+        double y = canvas.scene.y(vertex);
+        canvas.scene.moveVertex(vertex, canvas.pointX[point], canvas.pointY[point]);
+        canvas.scene.moveVertex(vertex, x, y);
+        return canvas.scene.x(vertex);
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * runs the cycle, redundancy and impact analyses of one graph at the same time on a fork-join pool.
+ * Inside each analysis the per-node work is split across the same pool again (see parallelFor),
+ * so all cores are busy until the slowest analysis is done.
+ * The strongly connected components are computed once up front and shared by all three, and by the
+ * transitive closure, which is only worked out for the classes it is asked about.
+ */
+public class AnalysisExecutor {
+    // nodes (or components) below this are handled by one task, splitting further costs more than it gains
+    static final int GRAIN = 256;
+
+    private final ForkJoinPool pool;
+
+    public AnalysisExecutor() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool runs the analyses and their split work
+     */
+    public AnalysisExecutor(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * analyse every node of the graph
+     */
+    public Result analyse(DependencyGraph graph, AnalysisProgress progress) {
+        return analyse(graph, null, progress);
+    }
+
+    /**
+     * @param sources sources[n] is true if the results of node n are wanted, null for every node
+     * @param progress checked by the analyses from every worker, the first exception thrown
+     *                 (cancellation, time budget) is rethrown here
+     */
+    public Result analyse(DependencyGraph graph, boolean[] sources, AnalysisProgress progress) {
+        return analyse(graph, sources, true, progress);
+    }
+
+    /**
+     * @param measureImpact false to skip the impact analysis, for callers that only want the flags
+     *                      (see DependencyDiff). Result.impact is null then
+     */
+    Result analyse(DependencyGraph graph, boolean[] sources, boolean measureImpact, AnalysisProgress progress) {
+        StronglyConnectedComponents components = timed("Finding strongly connected components", progress,
+                () -> new StronglyConnectedComponents(graph, progress));
+        Cyclic cyclic = new Cyclic(components, progress);
+        Transitive transitive = new Transitive(components, progress);
+
+        ForkJoinTask<boolean[]> cycles = pool.submit(
+                () -> timed("Finding cyclic dependencies", progress, () -> cyclic.findCyclicEdges(sources)));
+        ForkJoinTask<boolean[]> redundant = pool.submit(
+                () -> timed("Finding redundant dependencies", progress, () -> transitive.findRedundantEdges(sources)));
+        // blast radii and dominators depend on the whole graph, so they are always measured for every class
+        ForkJoinTask<ImpactAnalysis> impact = measureImpact ? pool.submit(
+                () -> timed("Measuring impact", progress, () -> new ImpactAnalysis(components, progress))) : null;
+        try {
+            boolean[] cyclicEdges = cycles.join();
+            boolean[] redundantEdges = redundant.join();
+            byte[] edgeFlags = new byte[graph.edgeCount()];
+            for (int edge = 0; edge < edgeFlags.length; edge++) {
+                edgeFlags[edge] = (byte) AnalysisResult.flags(cyclicEdges[edge], redundantEdges[edge]);
+            }
+            return new Result(edgeFlags, transitive.closure(), impact == null ? null : impact.join());
+        } catch (RuntimeException e) {
+            // tasks that have not started yet are dropped, running ones stop at their next checkpoint
+            cycles.cancel(true);
+            redundant.cancel(true);
+            if (impact != null) {
+                impact.cancel(true);
+            }
+            throw e;
+        }
+    }
+
+    // the analyses overlap, so each is timed on its own and reported with progress.taskFinished and to JFR
+    private static <T> T timed(String name, AnalysisProgress progress, Supplier<T> analysis) {
+        PipelineStats.PhaseEvent event = new PipelineStats.PhaseEvent(name);
+        event.begin();
+        long start = System.nanoTime();
+        T result = analysis.get();
+        long nanos = System.nanoTime() - start;
+        event.commit();
+        progress.taskFinished(name, nanos);
+        return result;
+    }
+
+    /**
+     * run body for every index in [from, to), split into tasks of about GRAIN indices.
+     * Called from a worker of a pool the tasks go into that pool, otherwise into the common pool.
+     * body has to be safe to run on several threads, e.g. only write to slots of its own index
+     */
+    static void parallelFor(int from, int to, IntConsumer body) {
+        if (to - from <= GRAIN) {
+            for (int i = from; i < to; i++) {
+                body.accept(i);
+            }
+            return;
+        }
+        new RangeAction(from, to, body).invoke();
+    }
+
+    private static class RangeAction extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final IntConsumer body;
+
+        RangeAction(int from, int to, IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= GRAIN) {
+                for (int i = from; i < to; i++) {
+                    body.accept(i);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeAction(from, middle, body), new RangeAction(middle, to, body));
+        }
+    }
+
+    /**
+     * the analyses of one graph
+     */
+    public static class Result {
+        // AnalysisResult.CYCLIC and REDUNDANT by edge id, 0 for the edges of nodes that were not analysed
+        public final byte[] edgeFlags;
+        // over the whole graph, also when only some sources were analysed
+        public final TransitiveClosure transitiveClosure;
+        // over the whole graph as well, null if it was not measured
+        public final ImpactAnalysis impact;
+
+        public Result(byte[] edgeFlags, TransitiveClosure transitiveClosure, ImpactAnalysis impact) {
+            this.edgeFlags = edgeFlags;
+            this.transitiveClosure = transitiveClosure;
+            this.impact = impact;
+        }
+
+        /**
+         * @return the flags as an AnalysisResult, when every node was analysed
+         */
+        public AnalysisResult toAnalysisResult() {
+            return new AnalysisResult(transitiveClosure.graph(), edgeFlags);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.coffeencode.toolWindow;
+
+/**
+ * passed into the long running loops of the analyses so they can be cancelled,
+ * stopped after a time budget, and report which phase they are in.
+ * The base class only enforces the time budget, the tool window overrides the hooks
+ * to forward them to the IDE's progress indicator and to its PipelineStats.
+ */
+public class AnalysisProgress {
+    /** no time budget, no cancellation, no reporting */
+    public static final AnalysisProgress NONE = new AnalysisProgress(0);
+
+    private final long deadline;
+
+    /**
+     * @param timeBudgetMillis how long the whole analysis may take, 0 for no limit
+     */
+    public AnalysisProgress(long timeBudgetMillis) {
+        this.deadline = timeBudgetMillis <= 0 ? 0 : System.nanoTime() + timeBudgetMillis * 1_000_000L;
+    }
+
+    /**
+     * called regularly from traversal loops
+     * @throws TimeBudgetExceededException when the time budget is used up,
+     *         or whatever checkCancelled throws when the user cancelled
+     */
+    public void checkpoint() {
+        checkCancelled();
+        if (isOverBudget()) {
+            throw new TimeBudgetExceededException();
+        }
+    }
+
+    public boolean isOverBudget() {
+        return deadline != 0 && System.nanoTime() - deadline > 0;
+    }
+
+    /**
+     * throw an unchecked exception here if the work was cancelled
+     */
+    protected void checkCancelled() {
+    }
+
+    /**
+     * a new phase starts
+     * @param name readable description, e.g. "Finding cycles"
+     * @param fraction how much of the whole work is done when the phase starts, between 0 and 1
+     */
+    public void phase(String name, double fraction) {
+    }
+
+    /**
+     * a part of the current phase finished that ran alongside other parts, e.g. the cycle search
+     * next to the redundancy search. May be called from any thread
+     * @param nanos how long the part ran
+     */
+    public void taskFinished(String name, long nanos) {
+    }
+
+    public static class TimeBudgetExceededException extends RuntimeException {
+        public TimeBudgetExceededException() {
+            super("the dependency analysis ran out of its time budget");
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * what the analyses found about one version of the graph, in one place: a byte of flags per dependency,
+ * indexed by its edge id in the DependencyGraph, and counts per class worked out from the flags once.
+ * Whether a dependency is cyclic or redundant is an array read, no list has to be searched, so the view,
+ * the exporters and the snapshot all read from here.
+ * Immutable, may be shared between threads.
+ */
+public class AnalysisResult {
+    // both ends in one strongly connected component, see StronglyConnectedComponents.isCyclicEdge
+    public static final int CYCLIC = 1;
+    // the target is also reached through other dependencies (self-loops included), see Transitive.findRedundant
+    public static final int REDUNDANT = 2;
+
+    private final DependencyGraph graph;
+    private final byte[] edgeFlags;
+    // per class, over its own dependencies
+    private final int[] cyclicCount;
+    private final int[] redundantCount;
+    private final int cyclicEdges;
+    private final int redundantEdges;
+    private final int classesInCycles;
+
+    /**
+     * @param edgeFlags CYCLIC and REDUNDANT bits of every edge id of the graph, kept as it is (not copied)
+     */
+    public AnalysisResult(DependencyGraph graph, byte[] edgeFlags) {
+        if (edgeFlags.length != graph.edgeCount()) {
+            throw new IllegalArgumentException("one flag per edge expected, got " + edgeFlags.length
+                    + " for " + graph.edgeCount() + " edges");
+        }
+        this.graph = graph;
+        this.edgeFlags = edgeFlags;
+        cyclicCount = new int[graph.nodeCount()];
+        redundantCount = new int[graph.nodeCount()];
+        int cyclic = 0;
+        int redundant = 0;
+        int inCycles = 0;
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                if ((edgeFlags[edge] & CYCLIC) != 0) {
+                    cyclicCount[node]++;
+                }
+                if ((edgeFlags[edge] & REDUNDANT) != 0) {
+                    redundantCount[node]++;
+                }
+            }
+            cyclic += cyclicCount[node];
+            redundant += redundantCount[node];
+            if (cyclicCount[node] > 0) {
+                inCycles++;
+            }
+        }
+        cyclicEdges = cyclic;
+        redundantEdges = redundant;
+        classesInCycles = inCycles;
+    }
+
+    /**
+     * @return a result without any cyclic or redundant dependency, e.g. before anything was analysed
+     */
+    public static AnalysisResult empty(DependencyGraph graph) {
+        return new AnalysisResult(graph, new byte[graph.edgeCount()]);
+    }
+
+    public static int flags(boolean cyclic, boolean redundant) {
+        return (cyclic ? CYCLIC : 0) | (redundant ? REDUNDANT : 0);
+    }
+
+    public DependencyGraph graph() {
+        return graph;
+    }
+
+    /**
+     * @return CYCLIC and REDUNDANT bits of an edge id of graph()
+     */
+    public int flags(int edge) {
+        return edgeFlags[edge];
+    }
+
+    public boolean isCyclic(int edge) {
+        return (edgeFlags[edge] & CYCLIC) != 0;
+    }
+
+    public boolean isRedundant(int edge) {
+        return (edgeFlags[edge] & REDUNDANT) != 0;
+    }
+
+    /**
+     * by name, for callers that hold no edge ids, e.g. the patches handed to the view
+     * @return flags of source -> target, 0 if there is no such dependency
+     */
+    public int flags(String source, String target) {
+        int from = graph.id(source);
+        int to = graph.id(target);
+        int edge = from == -1 || to == -1 ? -1 : graph.edgeId(from, to);
+        return edge == -1 ? 0 : edgeFlags[edge];
+    }
+
+    /**
+     * @return how many of the class's own dependencies are cyclic
+     */
+    public int cyclicCount(int node) {
+        return cyclicCount[node];
+    }
+
+    /**
+     * @return how many of the class's own dependencies are redundant
+     */
+    public int redundantCount(int node) {
+        return redundantCount[node];
+    }
+
+    /**
+     * @return true if the class is on a cycle of at least two classes
+     */
+    public boolean isInCycle(int node) {
+        return cyclicCount[node] > 0;
+    }
+
+    public int cyclicEdgeCount() {
+        return cyclicEdges;
+    }
+
+    public int redundantEdgeCount() {
+        return redundantEdges;
+    }
+
+    public int classesInCycles() {
+        return classesInCycles;
+    }
+
+    /**
+     * @return the edges with a flag in the class -> dependencies shape that Cyclic.findCycles and
+     *         Transitive.findRedundant return, only classes with such an edge become keys
+     */
+    public Map<String, List<String>> toMap(int flag) {
+        Map<String, List<String>> map = new HashMap<>();
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            List<String> targets = null;
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                if ((edgeFlags[edge] & flag) != 0) {
+                    if (targets == null) {
+                        targets = new ArrayList<>();
+                        map.put(graph.name(node), targets);
+                    }
+                    targets.add(graph.name(graph.target(edge)));
+                }
+            }
+        }
+        return map;
+    }
+
+    // written as they are by AnalysisSnapshot
+    byte[] edgeFlags() {
+        return edgeFlags;
+    }
+}
@@ -0,0 +1,228 @@
+package com.github.coffeencode.toolWindow;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * binary snapshot of a finished IncrementalAnalysis, keyed by the SHA-256 of the knit.json it was made from
+ * (of every module's knit.json together for a multi-module project).
+ * Opening the tool window on an unchanged knit.json then only costs hashing the file and
+ * reading the snapshot in one go, no parsing and no analysis.
+ *
+ * Layout (big endian): magic, version, hash, class names, knit.json entries with their packed edges,
+ * graph edges with contribution counts, the AnalysisResult flags of every edge id.
+ * Transitive dependencies are not kept, TransitiveClosure works them out from the graph when asked.
+ */
+public class AnalysisSnapshot {
+    private static final int MAGIC = 0x4B4E4954; // "KNIT"
+    private static final int VERSION = 3;
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    /**
+     * hash the content of a file, streamed
+     */
+    public static byte[] hash(Path file) throws IOException {
+        try (DigestInputStream in = digest(Files.newInputStream(file))) {
+            return finish(in);
+        }
+    }
+
+    /**
+     * hash the content of every module's knit.json on its own
+     * @param files module name to knit.json
+     * @return module name to the hash of its file, see combine
+     */
+    public static Map<String, byte[]> hashes(Map<String, Path> files) throws IOException {
+        Map<String, byte[]> hashes = new HashMap<>();
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            hashes.put(file.getKey(), hash(file.getValue()));
+        }
+        return hashes;
+    }
+
+    /**
+     * hash several files together, e.g. the knit.json of every module, from the hash of every file's content.
+     * The path of every file goes in as well, so moving content between modules changes the hash
+     * @param files module name to knit.json, in the order they are hashed
+     * @param hashes module name to the hash of its file's content
+     */
+    public static byte[] combine(Map<String, Path> files, Map<String, byte[]> hashes) {
+        MessageDigest combined = newDigest();
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            combined.update(file.getValue().toString().getBytes(StandardCharsets.UTF_8));
+            combined.update(hashes.get(file.getKey()));
+        }
+        return combined.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(HASH_ALGORITHM + " is required by every Java platform", e);
+        }
+    }
+
+    /**
+     * wrap a stream so its content is hashed while it is being read, e.g. by KnitJsonReader
+     */
+    public static DigestInputStream digest(InputStream in) {
+        return new DigestInputStream(new BufferedInputStream(in), newDigest());
+    }
+
+    /**
+     * read what is left of the stream and return the hash of the whole content
+     */
+    public static byte[] finish(DigestInputStream in) throws IOException {
+        in.transferTo(OutputStream.nullOutputStream());
+        return in.getMessageDigest().digest();
+    }
+
+    /**
+     * @param snapshotFile where the snapshot was saved
+     * @param hash hash of the current knit.json
+     * @return the restored analysis, or null if there is no snapshot, it belongs to other content or is unreadable
+     */
+    public static IncrementalAnalysis load(Path snapshotFile, byte[] hash) {
+        try {
+            // read into the heap rather than mapping: the arrays are copied out anyway, and a mapping
+            // stays open until it is garbage collected, which keeps Windows from replacing the file in save
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotFile));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            byte[] savedHash = new byte[buffer.getInt()];
+            buffer.get(savedHash);
+            if (!Arrays.equals(savedHash, hash)) {
+                return null;
+            }
+            return read(buffer);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException
+                 | NegativeArraySizeException e) {
+            return null; // broken snapshot, it is simply made again
+        }
+    }
+
+    private static IncrementalAnalysis read(ByteBuffer buffer) {
+        ClassNameTable names = new ClassNameTable();
+        int nameCount = buffer.getInt();
+        for (int i = 0; i < nameCount; i++) {
+            names.intern(readString(buffer));
+        }
+
+        int entryCount = buffer.getInt();
+        Map<String, long[]> entries = new HashMap<>(entryCount * 2);
+        for (int i = 0; i < entryCount; i++) {
+            String key = readString(buffer);
+            entries.put(key, readLongs(buffer));
+        }
+
+        long[] edges = readLongs(buffer);
+        int[] contributions = readInts(buffer);
+        byte[] edgeFlags = readBytes(buffer);
+
+        return new IncrementalAnalysis(names, entries, edges, contributions, edgeFlags);
+    }
+
+    /**
+     * write the snapshot next to a temporary file first, so a crash never leaves half a snapshot behind
+     * @param snapshotFile where to save, parent directories are created
+     * @param hash hash of the knit.json the analysis was made from
+     */
+    public static void save(Path snapshotFile, byte[] hash, IncrementalAnalysis analysis) throws IOException {
+        Files.createDirectories(snapshotFile.getParent());
+        Path temporary = Files.createTempFile(snapshotFile.getParent(), snapshotFile.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                write(out, hash, analysis);
+            }
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void write(DataOutputStream out, byte[] hash, IncrementalAnalysis analysis) throws IOException {
+        ClassNameTable names = analysis.getGraph().names();
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(hash.length);
+        out.write(hash);
+
+        out.writeInt(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            writeString(out, names.name(i));
+        }
+
+        out.writeInt(analysis.getEntries().size());
+        for (Map.Entry<String, long[]> entry : analysis.getEntries().entrySet()) {
+            writeString(out, entry.getKey());
+            writeLongs(out, entry.getValue());
+        }
+
+        writeLongs(out, analysis.getEdges());
+        writeInts(out, analysis.getContributions());
+        byte[] edgeFlags = analysis.getResult().edgeFlags();
+        out.writeInt(edgeFlags.length);
+        out.write(edgeFlags);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    private static long[] readLongs(ByteBuffer buffer) {
+        long[] values = new long[buffer.getInt()];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Long.BYTES);
+        return values;
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] values = new byte[buffer.getInt()];
+        buffer.get(values);
+        return values;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer buffer) {
+        int[] values = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+        return values;
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.coffeencode.toolWindow;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBPanel;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * "what did my branch change": pick a baseline knit.json (saved from main, or the build output of an older
+ * checkout, a project directory takes the knit.json of every module) and the dependencies that were added or
+ * removed since, and those that became or stopped being cyclic or redundant, are laid over the graph.
+ * The baseline is read on a pooled thread, the comparison (see DependencyDiff) runs on the executor that also
+ * applies updates of knit.json, and is done again after every update as long as the baseline is kept
+ */
+public class BaselineDiffBar extends JBPanel<BaselineDiffBar> {
+    private final Project project;
+    private final GraphVisualiser visualiser;
+    private final IncrementalAnalysis analysis;
+    private final Executor executor;
+    private final JBLabel result = new JBLabel("");
+    // only touched on the executor, null while there is no baseline
+    private DependencyGraph baseline;
+    private String baselineName;
+
+    public BaselineDiffBar(Project project, GraphVisualiser visualiser, IncrementalAnalysis analysis,
+                           Executor executor) {
+        super(new FlowLayout(FlowLayout.LEFT));
+        this.project = project;
+        this.visualiser = visualiser;
+        this.analysis = analysis;
+        this.executor = executor;
+
+        JButton compare = new JButton("Compare with baseline...");
+        compare.addActionListener(e -> choose());
+        JButton clear = new JButton("Clear diff");
+        clear.addActionListener(e -> executor.execute(() -> {
+            baseline = null;
+            ApplicationManager.getApplication().invokeLater(() -> {
+                visualiser.showDiff(null);
+                result.setText("");
+            });
+        }));
+
+        add(compare);
+        add(clear);
+        add(result);
+    }
+
+    /**
+     * compare with the baseline again, e.g. after knit.json changed. Does nothing without a baseline
+     */
+    public void compareAgain() {
+        executor.execute(() -> {
+            if (baseline != null) {
+                compare(baseline, baselineName);
+            }
+        });
+    }
+
+    private void choose() {
+        VirtualFile chosen = FileChooser.chooseFile(
+                FileChooserDescriptorFactory.createSingleFileOrFolderDescriptor(), project, null);
+        if (chosen == null) {
+            return;
+        }
+        Path path = Paths.get(chosen.getPath());
+        result.setText("Reading " + chosen.getName() + "...");
+        AppExecutorUtil.getAppExecutorService().execute(() -> {
+            DependencyGraph graph;
+            try {
+                graph = OrganiseHelpers.summariseDependencies(knitJsonFiles(path), AnalysisProgress.NONE);
+            } catch (IOException e) {
+                ApplicationManager.getApplication().invokeLater(
+                        () -> result.setText("The baseline could not be read: " + e.getMessage()));
+                return;
+            }
+            executor.execute(() -> {
+                baseline = graph;
+                baselineName = chosen.getName();
+                compare(graph, baselineName);
+            });
+        });
+    }
+
+    // a file is the knit.json itself, a directory is searched for the knit.json of its modules
+    private static List<Path> knitJsonFiles(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        List<Path> files = new ArrayList<>(KnitJsonModules.discover(path).values());
+        if (files.isEmpty()) {
+            throw new IOException("no build/knit.json found in " + path);
+        }
+        return files;
+    }
+
+    // on the executor
+    private void compare(DependencyGraph graph, String name) {
+        DependencyDiff diff = DependencyDiff.compare(graph, analysis.getResult(), AnalysisProgress.NONE);
+        ApplicationManager.getApplication().invokeLater(() -> {
+            visualiser.showDiff(diff);
+            result.setText(describe(diff, name));
+        });
+    }
+
+    private static String describe(DependencyDiff diff, String name) {
+        if (diff.isEmpty()) {
+            return "No dependency changed since " + name + ".";
+        }
+        return "Since " + name + ": " + diff.addedCount() + " dependencies added, " + diff.removedCount()
+                + " removed, " + diff.cyclesAppeared() + " became cyclic and " + diff.cyclesDisappeared()
+                + " no longer are, " + diff.redundanciesAppeared() + " became redundant and "
+                + diff.redundanciesDisappeared() + " no longer are.";
+    }
+}
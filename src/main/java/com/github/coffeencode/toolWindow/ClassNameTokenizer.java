@@ -0,0 +1,221 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * turns the raw strings of knit.json ("priority: 1 a.B", "a.B.<init> -> a.B", "java.util.List<out a.B>")
+ * into class names by scanning them once with indices, no regex and no split arrays.
+ * The same signatures repeat thousands of times in knit.json, so the results are cached per raw string,
+ * a repeat then costs one hash lookup. Use one tokenizer per read, the cache grows with the distinct strings.
+ */
+public class ClassNameTokenizer {
+    private static final String[] NO_TYPE_ARGUMENTS = new String[0];
+
+    private final Map<String, ClassName> classNames = new HashMap<>();
+    private final Map<String, Dependency> dependencies = new HashMap<>();
+
+    /**
+     * cached version of tokenizeClassName
+     */
+    public ClassName className(String raw) {
+        ClassName className = classNames.get(raw);
+        if (className == null) {
+            className = tokenizeClassName(raw, 0, raw.length());
+            classNames.put(raw, className);
+        }
+        return className;
+    }
+
+    /**
+     * cached version of tokenizeDependency
+     */
+    public Dependency dependency(String raw) {
+        Dependency dependency = dependencies.get(raw);
+        if (dependency == null) {
+            dependency = tokenizeDependency(raw);
+            dependencies.put(raw, dependency);
+        }
+        return dependency;
+    }
+
+    /**
+     * clean a class name: drop the () part, the "priority: n" prefix, and collect generic type arguments
+     * @param text holds the class name between start and end
+     * @return the cleaned name, the only string allocated apart from the type arguments
+     */
+    public static ClassName tokenizeClassName(CharSequence text, int start, int end) {
+        // eliminate () part
+        int bracket = indexOf(text, '(', start, end);
+        if (bracket != -1) {
+            end = bracket;
+            while (start < end && text.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && text.charAt(end - 1) <= ' ') {
+                end--;
+            }
+        }
+
+        // eliminate those in "priority: no className" format and only keep the last word
+        if (startsWith(text, start, end, "priority:")) {
+            while (end > start && isWhitespace(text.charAt(end - 1))) {
+                end--;
+            }
+            int wordStart = end;
+            while (wordStart > start && !isWhitespace(text.charAt(wordStart - 1))) {
+                wordStart--;
+            }
+            start = wordStart;
+        }
+
+        String name = text.subSequence(start, end).toString();
+
+        // check if it is a generic type e.g. List<T> needs T
+        int smallerSign = name.lastIndexOf('<');
+        int lastDot = name.lastIndexOf('.');
+        if (smallerSign == -1 || lastDot == smallerSign - 1) { // dot immediately before <> is the init method
+            return new ClassName(name, NO_TYPE_ARGUMENTS);
+        }
+        int greaterSign = name.lastIndexOf('>');
+        if (greaterSign < smallerSign) {
+            greaterSign = name.length(); // unclosed, take the rest
+        }
+
+        // arguments are separated by ", ", Kotlin ones may carry in/out... e.g. <out T>, only the last word counts
+        List<String> typeArguments = new ArrayList<>(2);
+        int argumentStart = smallerSign + 1;
+        while (argumentStart <= greaterSign) {
+            int argumentEnd = name.indexOf(", ", argumentStart);
+            if (argumentEnd == -1 || argumentEnd > greaterSign) {
+                argumentEnd = greaterSign;
+            }
+            int wordEnd = argumentEnd;
+            while (wordEnd > argumentStart && name.charAt(wordEnd - 1) == ' ') {
+                wordEnd--;
+            }
+            int wordStart = name.lastIndexOf(' ', wordEnd - 1) + 1;
+            if (wordStart < argumentStart) {
+                wordStart = argumentStart;
+            }
+            if (wordStart < wordEnd) {
+                typeArguments.add(name.substring(wordStart, wordEnd));
+            }
+            argumentStart = argumentEnd + 2;
+        }
+        return new ClassName(name, typeArguments.toArray(NO_TYPE_ARGUMENTS));
+    }
+
+    /**
+     * split "method -> class" and clean both sides
+     * @param raw in the format "method -> class", without "->" the whole string is taken as the method
+     */
+    public static Dependency tokenizeDependency(String raw) {
+        int arrow = raw.indexOf("->");
+        int methodEnd = arrow == -1 ? raw.length() : arrow;
+        int methodStart = 0;
+        while (methodStart < methodEnd && raw.charAt(methodStart) <= ' ') {
+            methodStart++;
+        }
+        while (methodEnd > methodStart && raw.charAt(methodEnd - 1) <= ' ') {
+            methodEnd--;
+        }
+
+        // get only the class name, exclude the method name part
+        int lastDot = raw.lastIndexOf('.', methodEnd - 1);
+        ClassName child = tokenizeClassName(raw, methodStart, lastDot < methodStart ? methodEnd : lastDot);
+        if (arrow == -1) {
+            return new Dependency(child, null);
+        }
+
+        int parentStart = arrow + 2;
+        int parentEnd = raw.indexOf("->", parentStart);
+        if (parentEnd == -1) {
+            parentEnd = raw.length();
+        }
+        while (parentStart < parentEnd && raw.charAt(parentStart) <= ' ') {
+            parentStart++;
+        }
+        while (parentEnd > parentStart && raw.charAt(parentEnd - 1) <= ' ') {
+            parentEnd--;
+        }
+        ClassName parent = tokenizeClassName(raw, parentStart, parentEnd);
+        // if method and class belong to the same class there is no dependency
+        return new Dependency(child, child.name.equals(parent.name) ? null : parent);
+    }
+
+    private static int indexOf(CharSequence text, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(CharSequence text, int start, int end, String prefix) {
+        if (end - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(start + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // same characters as the regex \s
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * a cleaned class name and the type arguments it depends on
+     */
+    public static class ClassName {
+        public final String name;
+        public final String[] typeArguments;
+
+        ClassName(String name, String[] typeArguments) {
+            this.name = name;
+            this.typeArguments = typeArguments;
+        }
+
+        /**
+         * add the generic dependencies, e.g. List<T> depends on T
+         */
+        public void addTo(DependencyGraph.Builder dependenciesTable) {
+            for (String typeArgument : typeArguments) {
+                OrganiseHelpers.insertADependency(dependenciesTable, name, typeArgument);
+            }
+        }
+    }
+
+    /**
+     * "method -> class": the method's class depends on the returned class
+     */
+    public static class Dependency {
+        public final ClassName child;
+        // null if method and class belong to the same class
+        public final ClassName parent;
+
+        Dependency(ClassName child, ClassName parent) {
+            this.child = child;
+            this.parent = parent;
+        }
+
+        /**
+         * add child -> parent and the generic dependencies of both sides
+         */
+        public void addTo(DependencyGraph.Builder dependenciesTable) {
+            child.addTo(dependenciesTable);
+            if (parent != null) {
+                parent.addTo(dependenciesTable);
+                OrganiseHelpers.insertADependency(dependenciesTable, child.name, parent.name);
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.coffeencode.toolWindow;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBList;
+import com.intellij.ui.components.JBPanel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.components.JBTextField;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * find a class by name instead of scrolling around the graph: matches are listed while typing (see
+ * ClassSearchIndex for what a query may look like), choosing one highlights the class with what it depends on
+ * and what depends on it, directly or transitively.
+ * Searches run on the executor that also applies updates of knit.json, like the path queries, so they always
+ * see a whole version of the graph. They take well under a millisecond, so every keystroke gets its own
+ */
+public class ClassSearchBar extends JBPanel<ClassSearchBar> {
+    private static final int MAX_RESULTS = 50;
+
+    private final GraphVisualiser visualiser;
+    private final IncrementalAnalysis analysis;
+    private final Executor executor;
+    private final JBTextField query = new JBTextField(30);
+    private final DefaultListModel<String> results = new DefaultListModel<>();
+    private final JBList<String> resultList = new JBList<>(results);
+    private final JBScrollPane resultPane = new JBScrollPane(resultList);
+    private final JCheckBox transitive = new JCheckBox("transitively");
+    private final JBLabel status = new JBLabel("");
+
+    public ClassSearchBar(GraphVisualiser visualiser, IncrementalAnalysis analysis, Executor executor) {
+        super(new BorderLayout());
+        this.visualiser = visualiser;
+        this.analysis = analysis;
+        this.executor = executor;
+
+        query.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                search();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                search();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                search();
+            }
+        });
+        // enter takes the best match
+        query.addActionListener(e -> {
+            if (!results.isEmpty()) {
+                resultList.setSelectedIndex(0);
+            }
+        });
+        resultList.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting() && resultList.getSelectedValue() != null) {
+                highlight(resultList.getSelectedValue());
+            }
+        });
+        transitive.addActionListener(e -> {
+            if (resultList.getSelectedValue() != null) {
+                highlight(resultList.getSelectedValue());
+            }
+        });
+        JButton clear = new JButton("Clear");
+        clear.addActionListener(e -> {
+            query.setText("");
+            visualiser.highlightNeighbourhood(null);
+            status.setText("");
+        });
+        resultPane.setPreferredSize(new Dimension(400, 120));
+        resultPane.setVisible(false);
+
+        JBPanel<?> bar = new JBPanel<>(new FlowLayout(FlowLayout.LEFT));
+        bar.add(new JBLabel("Find class"));
+        bar.add(query);
+        bar.add(new JBLabel("with its neighbours"));
+        bar.add(transitive);
+        bar.add(clear);
+        bar.add(status);
+        add(bar, BorderLayout.NORTH);
+        add(resultPane, BorderLayout.CENTER);
+
+        // the index is built once per version of the graph, better before the first keystroke
+        executor.execute(analysis::getSearchIndex);
+    }
+
+    private void search() {
+        String text = query.getText();
+        executor.execute(() -> {
+            List<String> found = analysis.getSearchIndex().search(text, MAX_RESULTS);
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (text.equals(query.getText())) { // otherwise a newer search is on its way
+                    show(found);
+                }
+            });
+        });
+    }
+
+    private void show(List<String> found) {
+        results.clear();
+        for (String className : found) {
+            results.addElement(className);
+        }
+        resultPane.setVisible(!found.isEmpty());
+        status.setText(query.getText().isBlank() ? "" : found.isEmpty() ? "No class matches."
+                : found.size() == MAX_RESULTS ? "The first " + MAX_RESULTS + " matches." : "");
+        revalidate();
+    }
+
+    private void highlight(String className) {
+        boolean all = transitive.isSelected();
+        executor.execute(() -> {
+            DependencyPaths.Neighbourhood neighbourhood = analysis.getPaths().neighbourhood(className, all);
+            ApplicationManager.getApplication().invokeLater(() -> {
+                visualiser.highlightNeighbourhood(neighbourhood);
+                status.setText(neighbourhood == null
+                        ? className + " is no longer in the graph." : describe(neighbourhood));
+            });
+        });
+    }
+
+    private static String describe(DependencyPaths.Neighbourhood neighbourhood) {
+        String text = neighbourhood.className + " depends on " + neighbourhood.directDependencies + " and is used by "
+                + neighbourhood.directDependents + " classes directly";
+        if (neighbourhood.dependencies.size() == neighbourhood.directDependencies
+                && neighbourhood.dependents.size() == neighbourhood.directDependents) {
+            return text + ".";
+        }
+        return text + ", " + neighbourhood.dependencies.size() + " and " + neighbourhood.dependents.size()
+                + " transitively.";
+    }
+}
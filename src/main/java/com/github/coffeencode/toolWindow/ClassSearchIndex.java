@@ -0,0 +1,399 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * finds classes of a graph by name while the user types. Queries the way the IDE's "go to class" takes them:
+ * - "Memory" or "filesys": a prefix of the simple name or of any of its humps (MemoryFileSystem has the humps
+ *   Memory, File and System), case ignored
+ * - "MFS" or "MemFiSys": every capital starts a new hump, each matching the start of a later hump of the name,
+ *   or going on right where the previous one stopped (so "HTTPServer" still finds HTTPServer)
+ * - "k.demo.Mem", "knit.demo.": package segments before the last dot, each a prefix of consecutive segments of
+ *   the class's package. Nothing after the dot lists the classes of the matching packages
+ *
+ * The humps of every simple name go into one array sorted by the rest of the name from the hump on, so the
+ * candidates of a query's first hump are one binary search away. Packages are few, they are matched one by one.
+ * Results come as exact simple names first, then names starting with the query, then the rest.
+ * Build once per version of the graph; searches are synchronized, they share the stamps marking what was seen.
+ */
+public class ClassSearchIndex {
+    // a hump entry is node << 16 | offset of the hump in the class name, humps further in are not indexed
+    private static final int MAX_OFFSET = 0xFFFF;
+
+    private final DependencyGraph graph;
+    // the simple name of every class: after the last dot of the package, before any type arguments
+    private final int[] simpleStart;
+    private final int[] simpleEnd;
+    // every distinct package and its classes, packageMembers[packageStart[p] .. packageStart[p + 1]]
+    private final String[] packageNames;
+    private final int[] packageOf;
+    private final int[] packageStart;
+    private final int[] packageMembers;
+    // one entry per hump of every simple name, sorted case-insensitively by the rest of the simple name
+    private final long[] humps;
+
+    // a class or package is seen / matched by the current search if its slot holds the search's stamp
+    private final int[] seen;
+    private final int[] packageMatched;
+    private int stamp;
+
+    public ClassSearchIndex(DependencyGraph graph) {
+        this.graph = graph;
+        int n = graph.nodeCount();
+        simpleStart = new int[n];
+        simpleEnd = new int[n];
+        packageOf = new int[n];
+        Map<String, Integer> packageIds = new HashMap<>();
+        List<String> packages = new ArrayList<>();
+        int[] packageSize = new int[n + 1];
+        int humpCount = 0;
+        for (int node = 0; node < n; node++) {
+            String name = graph.name(node);
+            int generic = name.indexOf('<');
+            int end = generic == -1 ? name.length() : generic;
+            int dot = name.lastIndexOf('.', end - 1);
+            simpleStart[node] = dot + 1;
+            simpleEnd[node] = end;
+            String packageName = dot == -1 ? "" : name.substring(0, dot);
+            Integer id = packageIds.get(packageName);
+            if (id == null) {
+                id = packages.size();
+                packageIds.put(packageName, id);
+                packages.add(packageName);
+            }
+            packageOf[node] = id;
+            packageSize[id]++;
+            for (int i = dot + 1; i < end && i <= MAX_OFFSET; i++) {
+                if (isHumpStart(name, dot + 1, i)) {
+                    humpCount++;
+                }
+            }
+        }
+        packageNames = packages.toArray(new String[0]);
+
+        // classes by package, counted first and then placed
+        packageStart = new int[packageNames.length + 1];
+        for (int p = 0; p < packageNames.length; p++) {
+            packageStart[p + 1] = packageStart[p] + packageSize[p];
+        }
+        packageMembers = new int[n];
+        int[] next = new int[packageNames.length];
+        System.arraycopy(packageStart, 0, next, 0, packageNames.length);
+        for (int node = 0; node < n; node++) {
+            packageMembers[next[packageOf[node]]++] = node;
+        }
+
+        humps = new long[humpCount];
+        int h = 0;
+        for (int node = 0; node < n; node++) {
+            String name = graph.name(node);
+            for (int i = simpleStart[node]; i < simpleEnd[node] && i <= MAX_OFFSET; i++) {
+                if (isHumpStart(name, simpleStart[node], i)) {
+                    humps[h++] = (long) node << 16 | i;
+                }
+            }
+        }
+        sortHumps();
+
+        seen = new int[n];
+        packageMatched = new int[packageNames.length];
+    }
+
+    public DependencyGraph graph() {
+        return graph;
+    }
+
+    /**
+     * @param query see the class comment, blank finds nothing
+     * @param limit at most this many names are returned
+     * @return names of the matching classes, best first
+     */
+    public synchronized List<String> search(String query, int limit) {
+        query = query.trim();
+        int dot = query.lastIndexOf('.');
+        String classPart = query.substring(dot + 1);
+        List<String> found = new ArrayList<>();
+        if (query.isEmpty() || limit <= 0) {
+            return found;
+        }
+        String[] queryHumps = splitHumps(classPart);
+        stamp++;
+
+        // packages first: they are few, and they decide whether the hump candidates or the members are searched
+        int packageClasses = -1;
+        if (dot != -1) {
+            String[] segments = query.substring(0, dot).split("\\.", -1);
+            packageClasses = 0;
+            for (int p = 0; p < packageNames.length; p++) {
+                if (packageMatches(packageNames[p], segments)) {
+                    packageMatched[p] = stamp;
+                    packageClasses += packageStart[p + 1] - packageStart[p];
+                }
+            }
+        }
+
+        // 0: the simple name is the query, 1: it starts with it, 2: one of its later humps does
+        List<List<Integer>> tiers = List.of(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        if (queryHumps.length == 0) {
+            // "knit.demo.": the classes of the matching packages, in package order
+            for (int p = 0; p < packageNames.length && tiers.get(1).size() < limit; p++) {
+                if (packageMatched[p] == stamp) {
+                    for (int m = packageStart[p]; m < packageStart[p + 1] && tiers.get(1).size() < limit; m++) {
+                        tiers.get(1).add(packageMembers[m]);
+                    }
+                }
+            }
+        } else {
+            int from = bound(queryHumps[0], false);
+            int to = bound(queryHumps[0], true);
+            if (packageClasses != -1 && packageClasses < to - from) {
+                // few classes in the matching packages: check each of them, until enough start with the query
+                for (int p = 0; p < packageNames.length && tiers.get(0).size() + tiers.get(1).size() < limit; p++) {
+                    if (packageMatched[p] != stamp) {
+                        continue;
+                    }
+                    for (int m = packageStart[p]; m < packageStart[p + 1]; m++) {
+                        int node = packageMembers[m];
+                        String name = graph.name(node);
+                        for (int i = simpleStart[node]; i < simpleEnd[node]; i++) {
+                            if (isHumpStart(name, simpleStart[node], i)
+                                    && startsWithIgnoreCase(name, i, simpleEnd[node], queryHumps[0])
+                                    && add(node, i, queryHumps, tiers, limit)) {
+                                break;
+                            }
+                        }
+                    }
+                }
+            } else {
+                // the classes with a hump starting like the query, sorted, so an exact name comes first
+                for (int e = from; e < to && tiers.get(0).size() + tiers.get(1).size() < limit; e++) {
+                    int node = (int) (humps[e] >>> 16);
+                    if ((packageClasses == -1 || packageMatched[packageOf[node]] == stamp) && seen[node] != stamp) {
+                        add(node, (int) (humps[e] & MAX_OFFSET), queryHumps, tiers, limit);
+                    }
+                }
+            }
+        }
+
+        for (List<Integer> tier : tiers) {
+            for (int node : tier) {
+                if (found.size() == limit) {
+                    return found;
+                }
+                found.add(graph.name(node));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * the query's first hump matched the class at offset, check the others and sort the class into its tier.
+     * A class found through a later hump may match from the start of its name as well, which ranks it higher
+     * @return true if the class matched
+     */
+    private boolean add(int node, int offset, String[] queryHumps, List<List<Integer>> tiers, int limit) {
+        String name = graph.name(node);
+        int start = simpleStart[node];
+        int end = simpleEnd[node];
+        int position = -1;
+        if (offset != start && startsWithIgnoreCase(name, start, end, queryHumps[0])) {
+            position = matchRest(name, start, end, start, queryHumps);
+        }
+        if (position != -1) {
+            offset = start;
+        } else {
+            position = matchRest(name, start, end, offset, queryHumps);
+        }
+        if (position == -1) {
+            return false;
+        }
+        seen[node] = stamp;
+        int tier = offset != start ? 2 : position == end ? 0 : 1;
+        if (tiers.get(tier).size() < limit) {
+            tiers.get(tier).add(node);
+        }
+        return true;
+    }
+
+    // the humps after the first, which matched at offset
+    private static int matchRest(String name, int start, int end, int offset, String[] queryHumps) {
+        int position = offset + queryHumps[0].length();
+        for (int q = 1; q < queryHumps.length && position != -1; q++) {
+            position = matchHump(name, start, end, position, queryHumps[q]);
+        }
+        return position;
+    }
+
+    /**
+     * a later query hump goes on where the last one stopped, or matches the start of a later hump of the name
+     * @return where the name goes on after the hump, -1 if it matches nowhere
+     */
+    private static int matchHump(String name, int start, int end, int position, String hump) {
+        if (startsWithIgnoreCase(name, position, end, hump)) {
+            return position + hump.length();
+        }
+        for (int i = position + 1; i < end; i++) {
+            if (isHumpStart(name, start, i) && startsWithIgnoreCase(name, i, end, hump)) {
+                return i + hump.length();
+            }
+        }
+        return -1;
+    }
+
+    // "MemFS" -> Mem, F, S. A lowercase query is one hump
+    private static String[] splitHumps(String query) {
+        List<String> humps = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= query.length(); i++) {
+            if (i == query.length() || Character.isUpperCase(query.charAt(i))) {
+                humps.add(query.substring(start, i));
+                start = i;
+            }
+        }
+        if (query.isEmpty()) {
+            humps.clear();
+        }
+        return humps.toArray(new String[0]);
+    }
+
+    /**
+     * @param segments the query's package segments, each has to start a segment of the package, in a row
+     */
+    private static boolean packageMatches(String packageName, String[] segments) {
+        // try every segment of the package as the one the query's first segment goes to
+        for (int start = 0; ; ) {
+            if (segmentsMatch(packageName, start, segments)) {
+                return true;
+            }
+            int dot = packageName.indexOf('.', start);
+            if (dot == -1) {
+                return false;
+            }
+            start = dot + 1;
+        }
+    }
+
+    private static boolean segmentsMatch(String packageName, int position, String[] segments) {
+        for (String segment : segments) {
+            if (position > packageName.length()) {
+                return false; // the package has fewer segments left than the query
+            }
+            int end = packageName.indexOf('.', position);
+            if (end == -1) {
+                end = packageName.length();
+            }
+            if (!startsWithIgnoreCase(packageName, position, end, segment)) {
+                return false;
+            }
+            position = end + 1;
+        }
+        return true;
+    }
+
+    /**
+     * a hump starts the simple name, at a capital after a small letter or digit, at the last capital of a run
+     * followed by a small letter (HTTPServer: HTTP, Server), and at a letter or digit after anything else (a_b, a$b)
+     */
+    private static boolean isHumpStart(String name, int start, int i) {
+        if (i == start) {
+            return true;
+        }
+        char c = name.charAt(i);
+        char previous = name.charAt(i - 1);
+        if (!Character.isLetterOrDigit(previous)) {
+            return Character.isLetterOrDigit(c);
+        }
+        if (!Character.isUpperCase(c)) {
+            return false;
+        }
+        return !Character.isUpperCase(previous)
+                || (i + 1 < name.length() && Character.isLowerCase(name.charAt(i + 1)));
+    }
+
+    private static boolean startsWithIgnoreCase(String name, int position, int end, String prefix) {
+        return end - position >= prefix.length() && name.regionMatches(true, position, prefix, 0, prefix.length());
+    }
+
+    // ---- the sorted humps ----
+
+    /**
+     * @param after false for the first entry whose name from the hump on starts with prefix or sorts after it,
+     *              true for the first one that sorts after every name starting with prefix
+     */
+    private int bound(String prefix, boolean after) {
+        int low = 0;
+        int high = humps.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int c = comparePrefix(humps[middle], prefix);
+            if (c < 0 || (after && c == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // the entry's name from its hump on, cut to the length of prefix, against prefix
+    private int comparePrefix(long entry, String prefix) {
+        int node = (int) (entry >>> 16);
+        String name = graph.name(node);
+        int i = (int) (entry & MAX_OFFSET);
+        int end = simpleEnd[node];
+        for (int k = 0; k < prefix.length(); k++, i++) {
+            if (i == end) {
+                return -1;
+            }
+            int c = Character.compare(Character.toLowerCase(name.charAt(i)), Character.toLowerCase(prefix.charAt(k)));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private int compare(long a, long b) {
+        int nodeA = (int) (a >>> 16);
+        int nodeB = (int) (b >>> 16);
+        String nameA = graph.name(nodeA);
+        String nameB = graph.name(nodeB);
+        int i = (int) (a & MAX_OFFSET);
+        int j = (int) (b & MAX_OFFSET);
+        int endA = simpleEnd[nodeA];
+        int endB = simpleEnd[nodeB];
+        for (; i < endA && j < endB; i++, j++) {
+            int c = Character.compare(Character.toLowerCase(nameA.charAt(i)), Character.toLowerCase(nameB.charAt(j)));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(endA - i, endB - j);
+    }
+
+    // bottom up merge sort, the entries are longs compared through the names they point to
+    private void sortHumps() {
+        long[] from = humps;
+        long[] to = new long[humps.length];
+        for (int width = 1; width < humps.length; width *= 2) {
+            for (int low = 0; low < humps.length; low += 2 * width) {
+                int middle = Math.min(low + width, humps.length);
+                int high = Math.min(low + 2 * width, humps.length);
+                int i = low;
+                int j = middle;
+                for (int k = low; k < high; k++) {
+                    to[k] = j == high || (i < middle && compare(from[i], from[j]) <= 0) ? from[i++] : from[j++];
+                }
+            }
+            long[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != humps) {
+            System.arraycopy(from, 0, humps, 0, humps.length);
+        }
+    }
+}
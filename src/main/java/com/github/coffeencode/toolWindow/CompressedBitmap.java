@@ -0,0 +1,222 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * immutable set of dense ids (e.g. component numbers) as a word-aligned run-length compressed bitmap (EWAH).
+ * The bits are cut into 64 bit words, and the words are stored as a sequence of markers, each followed by
+ * its literal words: a marker says how many all-zero or all-one words come first (bit 63 which of the two,
+ * bits 32-62 how many), then how many words follow as they are (bits 0-31).
+ * Long stretches of ids that are all in or all out (what reachability sets mostly are) cost one marker,
+ * a scattered set costs one word per 64 ids like a plain bitmap, plus one marker now and then.
+ */
+public class CompressedBitmap {
+    public static final CompressedBitmap EMPTY = new CompressedBitmap(new long[0], new int[0], new int[0], 0);
+
+    private static final long ONES = -1L;
+    private static final int MAX_RUN = Integer.MAX_VALUE;
+
+    private final long[] buffer;
+    // position of every marker in buffer and the number of the first word it stands for, for contains
+    private final int[] markerPosition;
+    private final int[] markerWord;
+    private final int cardinality;
+
+    private CompressedBitmap(long[] buffer, int[] markerPosition, int[] markerWord, int cardinality) {
+        this.buffer = buffer;
+        this.markerPosition = markerPosition;
+        this.markerWord = markerWord;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * compress a plain bitmap, e.g. a scratch array that is reused afterwards
+     * @param words bit i of the set is bit i % 64 of words[i / 64]
+     * @param wordCount how many words of the array are used
+     */
+    public static CompressedBitmap of(long[] words, int wordCount) {
+        while (wordCount > 0 && words[wordCount - 1] == 0) {
+            wordCount--; // trailing zeros need no marker
+        }
+        if (wordCount == 0) {
+            return EMPTY;
+        }
+        long[] out = new long[8];
+        int size = 0;
+        int[] positions = new int[4];
+        int[] firstWords = new int[4];
+        int markers = 0;
+        int cardinality = 0;
+        int i = 0;
+        while (i < wordCount) {
+            int first = i;
+            long fill = words[i];
+            int run = 0;
+            if (fill == 0 || fill == ONES) {
+                while (i < wordCount && words[i] == fill && run < MAX_RUN) {
+                    run++;
+                    i++;
+                }
+            }
+            int literalStart = i;
+            while (i < wordCount && words[i] != 0 && words[i] != ONES) {
+                i++;
+            }
+            int literals = i - literalStart;
+
+            if (markers == positions.length) {
+                positions = Arrays.copyOf(positions, markers * 2);
+                firstWords = Arrays.copyOf(firstWords, markers * 2);
+            }
+            positions[markers] = size;
+            firstWords[markers++] = first;
+            if (size + 1 + literals > out.length) {
+                out = Arrays.copyOf(out, Math.max(out.length * 2, size + 1 + literals));
+            }
+            out[size++] = marker(fill == ONES && run > 0, run, literals);
+            if (fill == ONES && run > 0) {
+                cardinality += run * 64;
+            }
+            for (int l = literalStart; l < i; l++) {
+                out[size++] = words[l];
+                cardinality += Long.bitCount(words[l]);
+            }
+        }
+        return new CompressedBitmap(Arrays.copyOf(out, size), Arrays.copyOf(positions, markers),
+                Arrays.copyOf(firstWords, markers), cardinality);
+    }
+
+    private static long marker(boolean ones, int run, int literals) {
+        return (ones ? Long.MIN_VALUE : 0) | ((long) run << 32) | (literals & 0xFFFFFFFFL);
+    }
+
+    private static boolean isOnes(long marker) {
+        return marker < 0;
+    }
+
+    private static int run(long marker) {
+        return (int) ((marker >>> 32) & MAX_RUN);
+    }
+
+    private static int literals(long marker) {
+        return (int) marker;
+    }
+
+    /**
+     * @return how many ids are in the set, without decompressing it
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * binary search for the marker covering the id, then one word
+     */
+    public boolean contains(int id) {
+        if (id < 0 || markerWord.length == 0) {
+            return false;
+        }
+        int word = id >>> 6;
+        int m = Arrays.binarySearch(markerWord, word);
+        if (m < 0) {
+            m = -m - 2; // the marker before the insertion point covers the word, if any does
+        }
+        long marker = buffer[markerPosition[m]];
+        int offset = word - markerWord[m];
+        if (offset < run(marker)) {
+            return isOnes(marker);
+        }
+        offset -= run(marker);
+        if (offset >= literals(marker)) {
+            return false; // past the last word
+        }
+        return (buffer[markerPosition[m] + 1 + offset] & (1L << id)) != 0;
+    }
+
+    /**
+     * add the set to a plain bitmap word by word, e.g. to union several sets before compressing the result
+     * @param words large enough for the highest id of the set
+     */
+    public void orInto(long[] words) {
+        int word = 0;
+        int position = 0;
+        while (position < buffer.length) {
+            long marker = buffer[position++];
+            int run = run(marker);
+            if (isOnes(marker)) {
+                Arrays.fill(words, word, word + run, ONES);
+            }
+            word += run;
+            for (int l = literals(marker); l > 0; l--) {
+                words[word++] |= buffer[position++];
+            }
+        }
+    }
+
+    /**
+     * @return the ids in increasing order, decompressed one word at a time
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            // position of the next marker, and what is left of the current one
+            private int position;
+            private int word;
+            private int fillLeft;
+            private boolean ones;
+            private int literalsLeft;
+            private long current;
+            private int currentWord = -1;
+
+            @Override
+            public boolean hasNext() {
+                while (current == 0) {
+                    if (fillLeft > 0) {
+                        if (ones) {
+                            current = ONES;
+                            currentWord = word++;
+                            fillLeft--;
+                            return true;
+                        }
+                        word += fillLeft; // all-zero words have nothing to give
+                        fillLeft = 0;
+                    } else if (literalsLeft > 0) {
+                        current = buffer[position++];
+                        currentWord = word++;
+                        literalsLeft--;
+                    } else if (position < buffer.length) {
+                        long marker = buffer[position++];
+                        ones = isOnes(marker);
+                        fillLeft = run(marker);
+                        literalsLeft = literals(marker);
+                    } else {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int bit = Long.numberOfTrailingZeros(current);
+                current &= current - 1;
+                return (currentWord << 6) + bit;
+            }
+        };
+    }
+
+    /**
+     * @return memory taken by the compressed words, what the set costs compared to (highest id / 8) bytes
+     */
+    public long sizeInBytes() {
+        return buffer.length * 8L + markerPosition.length * 8L;
+    }
+}
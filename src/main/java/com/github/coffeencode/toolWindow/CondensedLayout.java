@@ -0,0 +1,560 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * layout for dependency graphs of thousands of classes.
+ * 1. every strongly connected component (a cycle, or a single class) is laid out on its own
+ *    with a force model, where repulsion is approximated with a Barnes-Hut quadtree (O(n log n)
+ *    per iteration instead of O(n^2)), nodes are moved in parallel, and iterations stop once nothing moves.
+ * 2. the components form a DAG (the condensation), which is laid out in layers: dependents above
+ *    their dependencies, each layer ordered by the barycenter of its neighbours to keep crossings low.
+ * Positions are top-left corners of the boxes, the way GraphScene places its vertices.
+ */
+public class CondensedLayout {
+    private static final double IDEAL_DISTANCE = 150; // spring length between connected classes
+    private static final double MIN_DISTANCE = 50; // closer nodes push as if they were this far apart
+    private static final double THETA = 0.8; // Barnes-Hut: cells smaller than THETA * distance count as one body
+    private static final int MAX_ITERATIONS = 300;
+    private static final double CONVERGED = 0.5; // pixels, the largest move of an iteration below this ends it
+    private static final double COOLING = 0.95;
+    private static final double COMPONENT_GAP = 60;
+    private static final double LAYER_GAP = 120;
+    private static final int ORDERING_SWEEPS = 4;
+
+    private final DependencyGraph graph;
+    private final StronglyConnectedComponents components;
+    private final double[] width;
+    private final double[] height;
+    private final AnalysisProgress progress;
+
+    // node centres inside their component's box, then the final top-left corners
+    private final double[] localX;
+    private final double[] localY;
+    private final double[] x;
+    private final double[] y;
+    private final double[] componentWidth;
+    private final double[] componentHeight;
+
+    /**
+     * @param width width of every node's cell, by node id
+     * @param height height of every node's cell, by node id
+     * @param progress checked once per iteration, when over budget the force layout keeps what it has
+     */
+    public CondensedLayout(DependencyGraph graph, double[] width, double[] height, AnalysisProgress progress) {
+        this.graph = graph;
+        this.components = new StronglyConnectedComponents(graph, progress);
+        this.width = width;
+        this.height = height;
+        this.progress = progress;
+        int n = graph.nodeCount();
+        localX = new double[n];
+        localY = new double[n];
+        x = new double[n];
+        y = new double[n];
+        componentWidth = new double[components.componentCount()];
+        componentHeight = new double[components.componentCount()];
+    }
+
+    public void execute() {
+        // components are independent of each other, big ones split their own work again
+        AnalysisExecutor.parallelFor(0, components.componentCount(), this::layoutComponent);
+        double[][] origins = layoutCondensation();
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            int c = components.componentOf(node);
+            x[node] = origins[0][c] + localX[node] - width[node] / 2;
+            y[node] = origins[1][c] + localY[node] - height[node] / 2;
+        }
+    }
+
+    public double x(int node) {
+        return x[node];
+    }
+
+    public double y(int node) {
+        return y[node];
+    }
+
+    /**
+     * force layout of the members of component c, only edges inside c pull.
+     * results go into localX/localY of the members, so components never write the same slots
+     */
+    private void layoutComponent(int c) {
+        int start = components.memberStart(c);
+        int end = components.memberEnd(c);
+        if (end - start == 1) {
+            int node = components.member(start);
+            localX[node] = width[node] / 2;
+            localY[node] = height[node] / 2;
+            componentWidth[c] = width[node];
+            componentHeight[c] = height[node];
+            return;
+        }
+
+        // start on a circle with a little jitter, seeded so the same graph always looks the same
+        int size = end - start;
+        int[] members = new int[size];
+        Random random = new Random(c);
+        double radius = IDEAL_DISTANCE * Math.sqrt(size);
+        for (int m = start; m < end; m++) {
+            int node = components.member(m);
+            members[m - start] = node;
+            double angle = 2 * Math.PI * (m - start) / size;
+            localX[node] = radius * Math.cos(angle) + random.nextDouble() * 10;
+            localY[node] = radius * Math.sin(angle) + random.nextDouble() * 10;
+        }
+
+        relax(members, other -> components.componentOf(other) == c, null, radius, MAX_ITERATIONS);
+
+        // shift the members so the component's box starts at 0, 0
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int node : members) {
+            minX = Math.min(minX, localX[node] - width[node] / 2);
+            minY = Math.min(minY, localY[node] - height[node] / 2);
+            maxX = Math.max(maxX, localX[node] + width[node] / 2);
+            maxY = Math.max(maxY, localY[node] + height[node] / 2);
+        }
+        for (int node : members) {
+            localX[node] -= minX;
+            localY[node] -= minY;
+        }
+        componentWidth[c] = maxX - minX;
+        componentHeight[c] = maxY - minY;
+    }
+
+    /**
+     * place only the nodes that have no position yet, every other node stays where it is
+     * but still pushes and pulls. New nodes start next to their placed neighbours.
+     * Used when a graph that was laid out before changes, so the picture stays familiar
+     * @param startX top-left x of every node. For nodes that are not pinned it is only where they start,
+     *               NaN to start next to their placed neighbours
+     * @param startY top-left y of every node, like startX
+     * @param pinned pinned[n] is true if node n keeps its position
+     */
+    public void executeIncremental(double[] startX, double[] startY, boolean[] pinned) {
+        int n = graph.nodeCount();
+        int[] nodes = new int[n];
+        double bottom = 0;
+        for (int node = 0; node < n; node++) {
+            nodes[node] = node;
+            if (pinned[node]) {
+                localX[node] = startX[node] + width[node] / 2;
+                localY[node] = startY[node] + height[node] / 2;
+                bottom = Math.max(bottom, startY[node] + height[node]);
+            }
+        }
+        Random random = new Random(n);
+        int loose = 0;
+        for (int node = 0; node < n; node++) {
+            if (pinned[node]) {
+                continue;
+            }
+            if (!Double.isNaN(startX[node])) {
+                localX[node] = startX[node] + width[node] / 2;
+                localY[node] = startY[node] + height[node] / 2;
+                continue;
+            }
+            // centre of the placed neighbours, or a free spot below the drawing
+            double sumX = 0;
+            double sumY = 0;
+            int placed = 0;
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                int other = graph.target(edge);
+                if (pinned[other]) {
+                    sumX += localX[other];
+                    sumY += localY[other];
+                    placed++;
+                }
+            }
+            for (int position = graph.dependentStart(node); position < graph.dependentEnd(node); position++) {
+                int other = graph.dependent(position);
+                if (pinned[other]) {
+                    sumX += localX[other];
+                    sumY += localY[other];
+                    placed++;
+                }
+            }
+            if (placed > 0) {
+                localX[node] = sumX / placed + (random.nextDouble() - 0.5) * IDEAL_DISTANCE;
+                localY[node] = sumY / placed + (random.nextDouble() - 0.5) * IDEAL_DISTANCE;
+            } else {
+                localX[node] = (loose % 10) * 220 + width[node] / 2;
+                localY[node] = bottom + LAYER_GAP + (loose / 10) * 60;
+                loose++;
+            }
+        }
+
+        relax(nodes, other -> true, pinned, IDEAL_DISTANCE, MAX_ITERATIONS / 3);
+        for (int node = 0; node < n; node++) {
+            x[node] = localX[node] - width[node] / 2;
+            y[node] = localY[node] - height[node] / 2;
+        }
+    }
+
+    /**
+     * Fruchterman-Reingold iterations over some nodes, positions are read from and written to localX/localY
+     * @param attracts whether an edge to the other node pulls
+     * @param pinned nodes that never move, null if all may
+     * @param temperature how far a node may move in the first iteration
+     */
+    private void relax(int[] nodes, IntPredicate attracts, boolean[] pinned, double temperature, int maxIterations) {
+        double[] forceX = new double[nodes.length];
+        double[] forceY = new double[nodes.length];
+        BarnesHutTree tree = new BarnesHutTree(nodes.length);
+        ThreadLocal<int[]> stacks = ThreadLocal.withInitial(() -> new int[4 * BarnesHutTree.MAX_DEPTH + 4]);
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            if (progress.isOverBudget()) {
+                break; // a partly converged layout is still better than none
+            }
+            progress.checkpoint();
+
+            tree.build(nodes);
+            // every node only writes its own force, the tree is read only meanwhile
+            AnalysisExecutor.parallelFor(0, nodes.length, i -> {
+                int node = nodes[i];
+                if (pinned != null && pinned[node]) {
+                    return;
+                }
+                double[] force = tree.repulsion(node, localX[node], localY[node], stacks.get());
+                double fx = force[0];
+                double fy = force[1];
+                // springs along edges, in both directions
+                for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                    int other = graph.target(edge);
+                    if (other != node && attracts.test(other)) {
+                        fx += attraction(localX[other] - localX[node], localY[other] - localY[node], true);
+                        fy += attraction(localX[other] - localX[node], localY[other] - localY[node], false);
+                    }
+                }
+                for (int position = graph.dependentStart(node); position < graph.dependentEnd(node); position++) {
+                    int other = graph.dependent(position);
+                    if (other != node && attracts.test(other)) {
+                        fx += attraction(localX[other] - localX[node], localY[other] - localY[node], true);
+                        fy += attraction(localX[other] - localX[node], localY[other] - localY[node], false);
+                    }
+                }
+                forceX[i] = fx;
+                forceY[i] = fy;
+            });
+
+            // move at most temperature pixels
+            double largestMove = 0;
+            for (int i = 0; i < nodes.length; i++) {
+                int node = nodes[i];
+                double length = Math.sqrt(forceX[i] * forceX[i] + forceY[i] * forceY[i]);
+                if (length == 0 || (pinned != null && pinned[node])) {
+                    continue;
+                }
+                double move = Math.min(length, temperature);
+                localX[node] += forceX[i] / length * move;
+                localY[node] += forceY[i] / length * move;
+                largestMove = Math.max(largestMove, move);
+            }
+            temperature *= COOLING;
+            if (largestMove < CONVERGED) {
+                break;
+            }
+        }
+    }
+
+    // Fruchterman-Reingold spring force d^2 / k, one axis of it
+    private static double attraction(double dx, double dy, boolean xAxis) {
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        if (distance == 0) {
+            return 0;
+        }
+        double strength = distance / IDEAL_DISTANCE; // (d^2 / k) / d, times the unit vector component
+        return (xAxis ? dx : dy) * strength;
+    }
+
+    /**
+     * place the component boxes in layers, a component is at least one layer below everything depending on it.
+     * a layer wider than the whole drawing should be wraps into several rows
+     * @return x and y of every component's box
+     */
+    private double[][] layoutCondensation() {
+        int count = components.componentCount();
+        int[][] successors = components.condensedSuccessors();
+        int[][] predecessors = StronglyConnectedComponents.invert(successors);
+
+        // components are numbered sinks first, so walking downwards sees every predecessor before its successors
+        int[] layer = new int[count];
+        int layerCount = 0;
+        for (int c = count - 1; c >= 0; c--) {
+            for (int successor : successors[c]) {
+                layer[successor] = Math.max(layer[successor], layer[c] + 1);
+            }
+            layerCount = Math.max(layerCount, layer[c] + 1);
+        }
+        int[][] layers = group(layer, layerCount);
+
+        // barycenter ordering, alternately against the layer above and the layer below
+        int[] position = new int[count];
+        for (int[] members : layers) {
+            for (int i = 0; i < members.length; i++) {
+                position[members[i]] = i;
+            }
+        }
+        for (int sweep = 0; sweep < ORDERING_SWEEPS; sweep++) {
+            boolean down = sweep % 2 == 0;
+            for (int l = 0; l < layerCount; l++) {
+                int[] members = layers[down ? l : layerCount - 1 - l];
+                orderByBarycenter(members, down ? predecessors : successors, position);
+            }
+        }
+
+        // rows no wider than a square drawing of all boxes would be
+        double area = 0;
+        double widest = 0;
+        for (int c = 0; c < count; c++) {
+            area += (componentWidth[c] + COMPONENT_GAP) * (componentHeight[c] + COMPONENT_GAP);
+            widest = Math.max(widest, componentWidth[c]);
+        }
+        double rowLimit = Math.max(Math.sqrt(area) * 1.5, widest);
+
+        double[] originX = new double[count];
+        double[] originY = new double[count];
+        double top = 0;
+        for (int[] members : layers) {
+            int rowStart = 0;
+            while (rowStart < members.length) {
+                // take boxes until the row is full, then centre the row
+                int rowEnd = rowStart;
+                double rowWidth = 0;
+                double rowHeight = 0;
+                while (rowEnd < members.length
+                        && (rowEnd == rowStart || rowWidth + componentWidth[members[rowEnd]] <= rowLimit)) {
+                    rowWidth += componentWidth[members[rowEnd]] + COMPONENT_GAP;
+                    rowHeight = Math.max(rowHeight, componentHeight[members[rowEnd]]);
+                    rowEnd++;
+                }
+                double left = (rowLimit - rowWidth) / 2;
+                for (int i = rowStart; i < rowEnd; i++) {
+                    int c = members[i];
+                    originX[c] = Math.max(0, left);
+                    originY[c] = top + (rowHeight - componentHeight[c]) / 2;
+                    left += componentWidth[c] + COMPONENT_GAP;
+                }
+                top += rowHeight + COMPONENT_GAP;
+                rowStart = rowEnd;
+            }
+            top += LAYER_GAP - COMPONENT_GAP;
+        }
+        return new double[][]{originX, originY};
+    }
+
+    // sort the members of a layer by the average position of their neighbours in the neighbouring layer
+    private static void orderByBarycenter(int[] members, int[][] neighbours, int[] position) {
+        long[] keyed = new long[members.length];
+        for (int i = 0; i < members.length; i++) {
+            int c = members[i];
+            double barycenter = position[c];
+            if (neighbours[c].length > 0) {
+                double sum = 0;
+                for (int neighbour : neighbours[c]) {
+                    sum += position[neighbour];
+                }
+                barycenter = sum / neighbours[c].length;
+            }
+            // barycenter in the high bits (scaled to keep fractions), old index as tie breaker
+            keyed[i] = ((long) (barycenter * 1024) << 20) | i;
+        }
+        Arrays.sort(keyed);
+        int[] sorted = new int[members.length];
+        for (int i = 0; i < keyed.length; i++) {
+            sorted[i] = members[(int) (keyed[i] & ((1 << 20) - 1))];
+        }
+        for (int i = 0; i < sorted.length; i++) {
+            members[i] = sorted[i];
+            position[sorted[i]] = i;
+        }
+    }
+
+    private static int[][] group(int[] layer, int layerCount) {
+        int[] sizes = new int[layerCount];
+        for (int l : layer) {
+            sizes[l]++;
+        }
+        int[][] layers = new int[layerCount][];
+        for (int l = 0; l < layerCount; l++) {
+            layers[l] = new int[sizes[l]];
+            sizes[l] = 0;
+        }
+        // walking upwards keeps dependencies left of what depends on them in the first ordering
+        for (int c = 0; c < layer.length; c++) {
+            layers[layer[c]][sizes[layer[c]]++] = c;
+        }
+        return layers;
+    }
+
+    /**
+     * quadtree over the nodes being laid out, each cell keeps the total mass and the centre of mass
+     * of the nodes below it. Kept in flat arrays and rebuilt in place every iteration
+     */
+    private class BarnesHutTree {
+        static final int MAX_DEPTH = 40; // nodes closer than this allows share a leaf
+
+        private double[] centreX; // centre of mass
+        private double[] centreY;
+        private double[] mass;
+        private double[] boxX; // middle of the cell
+        private double[] boxY;
+        private double[] half; // half the side of the cell
+        private int[] firstChild; // 4 consecutive cells, -1 for a leaf
+        private int[] body; // the node of a leaf, -1 if empty
+        private int cellCount;
+
+        BarnesHutTree(int size) {
+            allocate(4 * size + 1);
+        }
+
+        private void allocate(int capacity) {
+            centreX = new double[capacity];
+            centreY = new double[capacity];
+            mass = new double[capacity];
+            boxX = new double[capacity];
+            boxY = new double[capacity];
+            half = new double[capacity];
+            firstChild = new int[capacity];
+            body = new int[capacity];
+        }
+
+        private void grow() {
+            int capacity = centreX.length * 2;
+            centreX = Arrays.copyOf(centreX, capacity);
+            centreY = Arrays.copyOf(centreY, capacity);
+            mass = Arrays.copyOf(mass, capacity);
+            boxX = Arrays.copyOf(boxX, capacity);
+            boxY = Arrays.copyOf(boxY, capacity);
+            half = Arrays.copyOf(half, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            body = Arrays.copyOf(body, capacity);
+        }
+
+        void build(int[] nodes) {
+            double minX = Double.MAX_VALUE;
+            double minY = Double.MAX_VALUE;
+            double maxX = -Double.MAX_VALUE;
+            double maxY = -Double.MAX_VALUE;
+            for (int node : nodes) {
+                minX = Math.min(minX, localX[node]);
+                minY = Math.min(minY, localY[node]);
+                maxX = Math.max(maxX, localX[node]);
+                maxY = Math.max(maxY, localY[node]);
+            }
+            cellCount = 0;
+            int root = newCell((minX + maxX) / 2, (minY + maxY) / 2, Math.max(maxX - minX, maxY - minY) / 2 + 1);
+            for (int node : nodes) {
+                insert(root, node, localX[node], localY[node]);
+            }
+        }
+
+        private int newCell(double middleX, double middleY, double halfSide) {
+            if (cellCount == centreX.length) {
+                grow();
+            }
+            int cell = cellCount++;
+            centreX[cell] = 0;
+            centreY[cell] = 0;
+            mass[cell] = 0;
+            boxX[cell] = middleX;
+            boxY[cell] = middleY;
+            half[cell] = halfSide;
+            firstChild[cell] = -1;
+            body[cell] = -1;
+            return cell;
+        }
+
+        private void insert(int cell, int node, double px, double py) {
+            for (int depth = 0; ; depth++) {
+                // every cell on the way down gains the node's mass
+                centreX[cell] = (centreX[cell] * mass[cell] + px) / (mass[cell] + 1);
+                centreY[cell] = (centreY[cell] * mass[cell] + py) / (mass[cell] + 1);
+                mass[cell]++;
+                if (firstChild[cell] == -1) {
+                    if (mass[cell] == 1) {
+                        body[cell] = node; // was empty
+                        return;
+                    }
+                    if (depth >= MAX_DEPTH) {
+                        return; // practically the same spot, the leaf just holds more mass
+                    }
+                    // split the leaf and push its old body one level down
+                    int old = body[cell];
+                    body[cell] = -1;
+                    split(cell);
+                    int oldChild = quadrant(cell, localX[old], localY[old]);
+                    centreX[oldChild] = localX[old];
+                    centreY[oldChild] = localY[old];
+                    mass[oldChild] = 1;
+                    body[oldChild] = old;
+                }
+                cell = quadrant(cell, px, py);
+            }
+        }
+
+        private void split(int cell) {
+            double quarter = half[cell] / 2;
+            int first = newCell(boxX[cell] - quarter, boxY[cell] - quarter, quarter);
+            newCell(boxX[cell] + quarter, boxY[cell] - quarter, quarter);
+            newCell(boxX[cell] - quarter, boxY[cell] + quarter, quarter);
+            newCell(boxX[cell] + quarter, boxY[cell] + quarter, quarter);
+            firstChild[cell] = first;
+        }
+
+        private int quadrant(int cell, double px, double py) {
+            return firstChild[cell] + (px < boxX[cell] ? 0 : 1) + (py < boxY[cell] ? 0 : 2);
+        }
+
+        /**
+         * Fruchterman-Reingold repulsion k^2 / d from every other node, far cells taken as one body
+         * @param stack scratch of the calling thread
+         * @return force on x and y
+         */
+        double[] repulsion(int node, double px, double py, int[] stack) {
+            double fx = 0;
+            double fy = 0;
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int cell = stack[--top];
+                double cellMass = mass[cell];
+                if (cellMass == 0) {
+                    continue;
+                }
+                boolean leaf = firstChild[cell] == -1;
+                if (leaf && body[cell] == node) {
+                    cellMass--; // itself, or itself and others on the same spot
+                    if (cellMass == 0) {
+                        continue;
+                    }
+                }
+                double dx = px - centreX[cell];
+                double dy = py - centreY[cell];
+                double distance = Math.sqrt(dx * dx + dy * dy);
+                if (leaf || 2 * half[cell] < THETA * distance) {
+                    if (distance == 0) {
+                        // on the same spot, push apart in a direction that differs per node
+                        dx = Math.cos(node);
+                        dy = Math.sin(node);
+                        distance = 1;
+                    }
+                    double strength = cellMass * IDEAL_DISTANCE * IDEAL_DISTANCE
+                            / (Math.max(distance, MIN_DISTANCE) * distance);
+                    fx += dx * strength;
+                    fy += dy * strength;
+                } else {
+                    for (int child = 0; child < 4; child++) {
+                        stack[top++] = firstChild[cell] + child;
+                    }
+                }
+            }
+            return new double[]{fx, fy};
+        }
+    }
+}
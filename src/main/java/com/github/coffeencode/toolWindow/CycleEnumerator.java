@@ -0,0 +1,240 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * the elementary cycles of a graph one at a time, shortest first, so the worst offenders come out
+ * before the search gets lost in the (possibly millions of) long ones.
+ * Cycles are searched length by length (2, 3, ...), for every start class of a strongly connected component,
+ * with an iterative depth first search that only goes through classes of the start's component with a
+ * larger id, and only as deep as a way back to the start still fits in the length (distances back to the
+ * start are found with a breadth first search first). A cycle is therefore only found from its smallest
+ * class, which is also where it is written from, so no rotation of a cycle ever comes out twice.
+ * Stops at a number of cycles, a length, or when the progress runs out of its time budget; nothing is
+ * kept besides the current search, the cycles are handed out as they are found.
+ * Self-loops are left out, like Cyclic.findCycles does.
+ * Not thread safe, one enumerator is read by one thread.
+ */
+public class CycleEnumerator implements Iterator<List<String>> {
+    /**
+     * why the enumeration ended, NONE while it goes on
+     */
+    public enum Stop {
+        NONE,
+        // every cycle was listed
+        COMPLETE,
+        // every cycle up to maxLength was listed, longer ones may exist
+        MAX_LENGTH,
+        MAX_CYCLES,
+        TIME_BUDGET
+    }
+
+    private final DependencyGraph graph;
+    private final StronglyConnectedComponents components;
+    private final int maxCycles;
+    private final int maxLength;
+    private final AnalysisProgress progress;
+    // no component is larger, so no elementary cycle is longer
+    private final int longestPossible;
+
+    // length searched now, and the start class of the current search (-1 before the first)
+    private int length = 2;
+    private int start = -1;
+    private boolean searching;
+    // the current chain, and how far every class of it got through its edges
+    private final int[] chain;
+    private final int[] nextEdge;
+    private int depth = -1;
+    private final boolean[] onChain;
+    // dependencies from a class back to the start, valid where distanceStamp equals the current start + 1
+    private final int[] distance;
+    private final int[] distanceStamp;
+    private final int[] queue;
+
+    private List<String> next;
+    private int found;
+    // search steps so far, the budget is checked every 1024 of them, also across cycles found quickly
+    private long steps;
+    private Stop stop = Stop.NONE;
+
+    /**
+     * @param maxCycles stops after this many, 0 for no limit
+     * @param maxLength longest cycle searched (in dependencies), 0 for no limit
+     * @param progress the time budget ends the enumeration (no exception), cancellation throws like everywhere else
+     */
+    public CycleEnumerator(StronglyConnectedComponents components, int maxCycles, int maxLength,
+                           AnalysisProgress progress) {
+        this.graph = components.graph();
+        this.components = components;
+        this.maxCycles = maxCycles;
+        this.progress = progress;
+        int largest = 0;
+        for (int c = 0; c < components.componentCount(); c++) {
+            largest = Math.max(largest, components.componentSize(c));
+        }
+        longestPossible = largest;
+        this.maxLength = maxLength <= 0 ? largest : maxLength;
+        int n = graph.nodeCount();
+        chain = new int[largest + 1];
+        nextEdge = new int[largest + 1];
+        onChain = new boolean[n];
+        distance = new int[n];
+        distanceStamp = new int[n];
+        queue = new int[n];
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && stop == Stop.NONE) {
+            next = search();
+        }
+        return next != null;
+    }
+
+    @Override
+    public List<String> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<String> cycle = next;
+        next = null;
+        return cycle;
+    }
+
+    /**
+     * @return why the enumeration ended, NONE as long as hasNext was not false yet
+     */
+    public Stop stop() {
+        return stop;
+    }
+
+    /**
+     * @return length of the cycles searched at the moment, every shorter one has been handed out
+     */
+    public int length() {
+        return length;
+    }
+
+    // runs until the next cycle or the end, then stops right where it is
+    private List<String> search() {
+        if (maxCycles > 0 && found >= maxCycles) {
+            stop = Stop.MAX_CYCLES;
+            return null;
+        }
+        while (true) {
+            if ((++steps & 0x3FF) == 0) {
+                if (progress.isOverBudget()) {
+                    stop = Stop.TIME_BUDGET;
+                    return null;
+                }
+                progress.checkpoint();
+            }
+            if (!searching && !nextStart()) {
+                return null;
+            }
+            List<String> cycle = step();
+            if (cycle != null) {
+                found++;
+                return cycle;
+            }
+        }
+    }
+
+    // move on to the next start class, and to the next length after the last one
+    private boolean nextStart() {
+        while (true) {
+            start++;
+            if (start == graph.nodeCount()) {
+                start = 0;
+                length++;
+                if (length > maxLength) {
+                    stop = maxLength < longestPossible ? Stop.MAX_LENGTH : Stop.COMPLETE;
+                    return false;
+                }
+            }
+            if (components.componentSize(components.componentOf(start)) >= length && distancesBack(start)) {
+                depth = 0;
+                chain[0] = start;
+                nextEdge[0] = graph.edgeStart(start);
+                onChain[start] = true;
+                searching = true;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * breadth first search backwards from the start, through its component's classes with a larger id,
+     * no further than length - 1
+     * @return false if no class can get back to the start, then there is nothing to search
+     */
+    private boolean distancesBack(int from) {
+        int stamp = from + 1;
+        int component = components.componentOf(from);
+        int head = 0;
+        int tail = 0;
+        boolean any = false;
+        distance[from] = 0;
+        distanceStamp[from] = stamp;
+        queue[tail++] = from;
+        while (head < tail) {
+            int node = queue[head++];
+            if (distance[node] + 1 >= length) {
+                continue; // one more step and the start could not be reached from there in time
+            }
+            for (int position = graph.dependentStart(node); position < graph.dependentEnd(node); position++) {
+                int dependent = graph.dependent(position);
+                if (dependent > from && distanceStamp[dependent] != stamp
+                        && components.componentOf(dependent) == component) {
+                    distanceStamp[dependent] = stamp;
+                    distance[dependent] = distance[node] + 1;
+                    queue[tail++] = dependent;
+                    any = true;
+                }
+            }
+        }
+        return any;
+    }
+
+    /**
+     * one step of the depth first search
+     * @return a cycle of exactly the current length if this step closed one
+     */
+    private List<String> step() {
+        if (depth < 0) {
+            searching = false;
+            return null;
+        }
+        int node = chain[depth];
+        if (nextEdge[depth] == graph.edgeEnd(node)) {
+            onChain[node] = false;
+            depth--;
+            return null;
+        }
+        int child = graph.target(nextEdge[depth]++);
+        if (child == start) {
+            return depth + 1 == length ? cycle() : null;
+        }
+        // a larger id of the start's component, not on the chain yet, and close enough to get back in time
+        if (child > start && !onChain[child] && distanceStamp[child] == start + 1
+                && depth + 1 + distance[child] <= length) {
+            depth++;
+            chain[depth] = child;
+            nextEdge[depth] = graph.edgeStart(child);
+            onChain[child] = true;
+        }
+        return null;
+    }
+
+    private List<String> cycle() {
+        List<String> cycle = new ArrayList<>(depth + 2);
+        for (int i = 0; i <= depth; i++) {
+            cycle.add(graph.name(chain[i]));
+        }
+        cycle.add(graph.name(start));
+        return cycle;
+    }
+}
@@ -0,0 +1,183 @@
+package com.github.coffeencode.toolWindow;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.ui.SimpleListCellRenderer;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBList;
+import com.intellij.ui.components.JBPanel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+
+/**
+ * the individual cycles of the graph, listed while they are being found, shortest first (see CycleEnumerator).
+ * Selecting one highlights it in the view. The search stops at a number of cycles, a length, a time limit,
+ * or when the user stops it, whatever comes first; the list says which.
+ * The graph is taken on the executor that applies updates of knit.json, the search itself runs on the IDE's
+ * pool so a long search never holds updates back
+ */
+public class CycleListPanel extends JBPanel<CycleListPanel> {
+    private static final int MAX_CYCLES = 10_000;
+    private static final long MAX_MILLIS = 10_000;
+    private static final int DEFAULT_MAX_LENGTH = 10;
+    // found cycles go to the list in batches, not one invokeLater per cycle
+    private static final int BATCH_SIZE = 200;
+    private static final long BATCH_NANOS = 100_000_000L;
+
+    private final GraphVisualiser visualiser;
+    private final IncrementalAnalysis analysis;
+    private final Executor executor;
+    private final DefaultListModel<List<String>> cycles = new DefaultListModel<>();
+    private final JSpinner maxLength = new JSpinner(new SpinnerNumberModel(DEFAULT_MAX_LENGTH, 2, 100, 1));
+    private final JButton list = new JButton("List cycles");
+    private final JButton stop = new JButton("Stop");
+    private final JBLabel status = new JBLabel("");
+    // the search running now, set to stopped by the stop button or by a new search
+    private volatile Search search;
+
+    public CycleListPanel(GraphVisualiser visualiser, IncrementalAnalysis analysis, Executor executor) {
+        super(new BorderLayout());
+        this.visualiser = visualiser;
+        this.analysis = analysis;
+        this.executor = executor;
+
+        list.addActionListener(e -> start());
+        stop.addActionListener(e -> cancel());
+        stop.setEnabled(false);
+
+        JBList<List<String>> view = new JBList<>(cycles);
+        view.setCellRenderer(SimpleListCellRenderer.create("",
+                cycle -> (cycle.size() - 1) + ": " + String.join(" \u2192 ", cycle)));
+        view.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                List<String> selected = view.getSelectedValue();
+                visualiser.highlightPaths(selected == null ? List.of() : List.of(selected));
+            }
+        });
+        JBScrollPane scrollPane = new JBScrollPane(view);
+        scrollPane.setPreferredSize(new Dimension(400, 120));
+
+        JBPanel<?> bar = new JBPanel<>(new FlowLayout(FlowLayout.LEFT));
+        bar.add(list);
+        bar.add(new JBLabel("up to"));
+        bar.add(maxLength);
+        bar.add(new JBLabel("dependencies"));
+        bar.add(stop);
+        bar.add(status);
+        add(bar, BorderLayout.NORTH);
+        add(scrollPane, BorderLayout.CENTER);
+    }
+
+    private void start() {
+        cancel();
+        cycles.clear();
+        visualiser.highlightPaths(List.of());
+        Search current = new Search();
+        search = current;
+        int length = (Integer) maxLength.getValue();
+        list.setEnabled(false);
+        stop.setEnabled(true);
+        status.setText("Searching...");
+        // the graph of the version of the analysis applied last, it is never changed afterwards
+        executor.execute(() -> {
+            DependencyGraph graph = analysis.getGraph();
+            AppExecutorUtil.getAppExecutorService().execute(() -> run(current, graph, length));
+        });
+    }
+
+    private void cancel() {
+        Search current = search;
+        if (current != null) {
+            current.stopped = true;
+        }
+    }
+
+    private void run(Search current, DependencyGraph graph, int length) {
+        AnalysisProgress progress = new AnalysisProgress(0) {
+            @Override
+            protected void checkCancelled() {
+                if (current.stopped) {
+                    throw new CancellationException();
+                }
+            }
+        };
+        CycleEnumerator.Stop reason;
+        int count = 0;
+        List<List<String>> batch = new ArrayList<>();
+        long lastFlush = System.nanoTime();
+        try {
+            CycleEnumerator enumerator = new Cyclic(graph, progress).cycles(MAX_CYCLES, length, MAX_MILLIS);
+            while (enumerator.hasNext()) {
+                batch.add(enumerator.next());
+                count++;
+                if (batch.size() == BATCH_SIZE || System.nanoTime() - lastFlush > BATCH_NANOS) {
+                    flush(current, batch, count);
+                    batch = new ArrayList<>();
+                    lastFlush = System.nanoTime();
+                }
+            }
+            reason = enumerator.stop();
+        } catch (CancellationException e) {
+            reason = null;
+        }
+        flush(current, batch, count);
+        CycleEnumerator.Stop finalReason = reason;
+        int finalCount = count;
+        ApplicationManager.getApplication().invokeLater(() -> finish(current, finalReason, finalCount, length));
+    }
+
+    // add a batch on the UI thread, unless a newer search took over the list
+    private void flush(Search current, List<List<String>> batch, int count) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        ApplicationManager.getApplication().invokeLater(() -> {
+            if (search != current) {
+                return;
+            }
+            for (List<String> cycle : batch) {
+                cycles.addElement(cycle);
+            }
+            status.setText(count + " cycles so far...");
+        });
+    }
+
+    // reason null when stopped by the user
+    private void finish(Search current, CycleEnumerator.Stop reason, int count, int length) {
+        if (search != current) {
+            return;
+        }
+        search = null;
+        list.setEnabled(true);
+        stop.setEnabled(false);
+        String end;
+        if (reason == null) {
+            end = "stopped";
+        } else {
+            switch (reason) {
+                case MAX_LENGTH:
+                    end = "no longer ones were searched than " + length + " dependencies";
+                    break;
+                case MAX_CYCLES:
+                    end = "only the first " + MAX_CYCLES + " are listed";
+                    break;
+                case TIME_BUDGET:
+                    end = "the search was stopped after " + MAX_MILLIS / 1000 + " seconds";
+                    break;
+                default:
+                    end = "that is all of them";
+            }
+        }
+        status.setText(count + " cycles, " + end + ".");
+    }
+
+    private static class Search {
+        volatile boolean stopped;
+    }
+}
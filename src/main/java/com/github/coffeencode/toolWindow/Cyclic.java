@@ -1,66 +1,260 @@
 package com.github.coffeencode.toolWindow;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 public class Cyclic {
-    private Map<String, List<String>> graph;
+    private final DependencyGraph graph;
+    private final AnalysisProgress progress;
+    private final StronglyConnectedComponents components;
 
     public Cyclic(Map<String, List<String>> graph) {
-        this.graph = graph;
+        this(DependencyGraph.fromMap(graph));
     }
 
+    public Cyclic(DependencyGraph graph) {
+        this(graph, AnalysisProgress.NONE);
+    }
+
+    /**
+     * @param progress checked in the traversal loops, may cancel the search by throwing
+     */
+    public Cyclic(DependencyGraph graph, AnalysisProgress progress) {
+        this(new StronglyConnectedComponents(graph, progress), progress);
+    }
+
+    /**
+     * @param components already computed, e.g. shared with Transitive by AnalysisExecutor
+     */
+    public Cyclic(StronglyConnectedComponents components, AnalysisProgress progress) {
+        this.graph = components.graph();
+        this.progress = progress;
+        this.components = components;
+    }
+
+    /**
+     * find every edge that takes part in at least one cycle.
+     * an edge A -> B is cyclic exactly when A and B are in the same strongly connected
+     * component, so one pass of Tarjan (O(V+E)) is enough, no cycle has to be enumerated.
+     * @return a Map where each key is a node on a cycle, and the corresponding value is
+     *         the list of its dependencies that close a cycle back to it
+     * Example output:
+     * {A=[B], B=[C], C=[A], D=[A]} when A -> D -> A also exists
+     */
     public Map<String, List<String>> findCycles() {
-        List<List<String>> cycles = new ArrayList<>();
+        return findCycles(null);
+    }
+
+    /**
+     * same as findCycles(), restricted to the edges leaving some nodes.
+     * @param sources sources[n] is true if the edges of node n are wanted, null for every node
+     */
+    public Map<String, List<String>> findCycles(boolean[] sources) {
+        boolean[] cyclic = findCyclicEdges(sources);
         Map<String, List<String>> map = new HashMap<>();
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                if (cyclic[edge]) {
+                    map.computeIfAbsent(graph.name(node), key -> new ArrayList<>()).add(graph.name(graph.target(edge)));
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * the cyclic edges by edge id, the shape AnalysisResult keeps them in.
+     * nodes are checked in parallel, see AnalysisExecutor.parallelFor
+     * @param sources sources[n] is true if the edges of node n are wanted, null for every node
+     * @return cyclic[edge] for every edge id of the graph, false for edges of nodes that were not wanted
+     */
+    public boolean[] findCyclicEdges(boolean[] sources) {
+        // every node writes only the slots of its own edges
+        boolean[] cyclic = new boolean[graph.edgeCount()];
+        AnalysisExecutor.parallelFor(0, graph.nodeCount(), node -> {
+            if (sources != null && !sources[node]) {
+                return;
+            }
+            progress.checkpoint();
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                cyclic[edge] = components.isCyclicEdge(node, graph.target(edge));
+            }
+        });
+        return cyclic;
+    }
+
+    /**
+     * elementary cycles one at a time, shortest first, without collecting them, see CycleEnumerator.
+     * Unlike findElementaryCycles, any number of cycles can be gone through, e.g. into a list on screen
+     * @param maxCycles stops after this many, 0 for no limit
+     * @param maxLength longest cycle (in dependencies), 0 for no limit
+     * @param maxMillis stops after this long, 0 for no limit. Cancelling the progress still throws
+     */
+    public CycleEnumerator cycles(int maxCycles, int maxLength, long maxMillis) {
+        AnalysisProgress budget = new AnalysisProgress(maxMillis) {
+            @Override
+            protected void checkCancelled() {
+                progress.checkpoint();
+            }
+        };
+        return new CycleEnumerator(components, maxCycles, maxLength, budget);
+    }
+
+    /**
+     * same as cycles, every cycle is handed to onCycle as soon as it is found
+     * @return why the enumeration ended
+     */
+    public CycleEnumerator.Stop enumerateCycles(int maxCycles, int maxLength, long maxMillis,
+                                                Consumer<List<String>> onCycle) {
+        CycleEnumerator cycles = cycles(maxCycles, maxLength, maxMillis);
+        cycles.forEachRemaining(onCycle);
+        return cycles.stop();
+    }
 
-        for (String node: graph.keySet()) {
-            Set<String> visited = new HashSet<>();
-            Deque<String> path = new ArrayDeque<>();
-            dfs(node, node, visited, path, cycles);
+    /**
+     * list individual elementary cycles (Johnson's algorithm), searched inside each
+     * strongly connected component only. Dense components can hold an exponential number
+     * of cycles, so the search stops after maxCycles have been found.
+     * The search keeps its own stack, so long chains of classes cannot overflow the call stack, and the blocked
+     * classes are NodeMarks, so starting over from the next class costs nothing
+     * @param maxCycles upper bound of cycles to return
+     * @return cycles in the format [A, B, C, A]
+     */
+    public List<List<String>> findElementaryCycles(int maxCycles) {
+        List<List<String>> cycles = new ArrayList<>();
+        int n = graph.nodeCount();
+        Johnson search = new Johnson(n);
+        for (int start = 0; start < n && cycles.size() < maxCycles; start++) {
+            if (components.componentSize(components.componentOf(start)) < 2) {
+                continue; // single node components have no cycle (self-loops are ignored)
+            }
+            search.circuits(start, cycles, maxCycles);
         }
+        return cycles;
+    }
+
+    // only nodes of the start's component with a larger id take part, smaller ids were already used as start
+    private boolean inScope(int node, int start) {
+        return node >= start && components.componentOf(node) == components.componentOf(start);
+    }
 
-        for (int i = 0; i < cycles.size(); i++) {
-            List<String> cycle = cycles.get(i);
-            for (int j = 0; j < cycle.size(); j++) {
-                List<String> list;
-                list = map.getOrDefault(cycle.get(j), new ArrayList<>());
+    /**
+     * the state of Johnson's search, reused for every start: blocked classes, for every blocked class the
+     * classes to unblock with it (linked lists in arrays, valid while the class is in waitingFor), the path
+     * as a stack with how far each class got through its edges and whether a cycle was found below it
+     */
+    private class Johnson {
+        private final NodeMarks blocked;
+        private final NodeMarks waitingFor;
+        private final int[] waitingHead;
+        private int[] waitingNode = new int[16];
+        private int[] waitingNext = new int[16];
+        private int waitingCount;
+        private final int[] path;
+        private final int[] nextEdge;
+        private final boolean[] found;
+        private final int[] unblockStack;
 
-                if (j + 1 < cycle.size()) {
-                    if (!list.contains(cycle.get(j + 1))) {
-                        list.add(cycle.get(j + 1));
-                        map.put(cycle.get(j), list);
+        Johnson(int n) {
+            blocked = new NodeMarks(n);
+            waitingFor = new NodeMarks(n);
+            waitingHead = new int[n];
+            path = new int[n];
+            nextEdge = new int[n];
+            found = new boolean[n];
+            unblockStack = new int[n];
+        }
+
+        // every elementary cycle through start, among the classes in scope
+        void circuits(int start, List<List<String>> cycles, int maxCycles) {
+            blocked.clear();
+            waitingFor.clear();
+            waitingCount = 0;
+            int top = 0;
+            enter(0, start);
+            while (top >= 0) {
+                int curr = path[top];
+                if (nextEdge[top] < graph.edgeEnd(curr) && cycles.size() < maxCycles) {
+                    int child = graph.target(nextEdge[top]++);
+                    if (!inScope(child, start)) {
+                        continue;
+                    }
+                    if (child == start) {
+                        if (top > 0) {
+                            List<String> cycle = new ArrayList<>(top + 2);
+                            for (int i = 0; i <= top; i++) {
+                                cycle.add(graph.name(path[i]));
+                            }
+                            cycle.add(graph.name(start));
+                            cycles.add(cycle);
+                            found[top] = true;
+                        }
+                    } else if (!blocked.isMarked(child)) {
+                        enter(++top, child);
                     }
+                    continue;
+                }
+
+                // every edge of curr is done: free it if a cycle went through it, otherwise it stays blocked
+                // until one of its successors is freed
+                if (found[top]) {
+                    unblock(curr);
                 } else {
-                    if (!list.contains(cycle.get(0))) {
-                        map.put(cycle.get(j), list);
+                    for (int edge = graph.edgeStart(curr); edge < graph.edgeEnd(curr); edge++) {
+                        int child = graph.target(edge);
+                        if (inScope(child, start)) {
+                            waitFor(child, curr);
+                        }
                     }
                 }
+                if (--top >= 0 && found[top + 1]) {
+                    found[top] = true;
+                }
             }
         }
-        return map;
-    }
 
-    private void dfs(String curr, String start, Set<String> visited,
-                     Deque<String> path, List<List<String>> cycles) {
-        visited.add(curr);
-        path.push(curr);
-        List<String> children = graph.getOrDefault(curr, Collections.emptyList());
-        for (int i = 0; i < children.size(); i++) {
-            String child = children.get(i);
-            if (child.equals(start) && path.size() > 1) {
-                List<String> cycle = new ArrayList<>(path);
-                Collections.reverse(cycle);
-                cycle.add(start);
-                cycles.add(cycle);
-            }
+        private void enter(int top, int node) {
+            progress.checkpoint();
+            path[top] = node;
+            nextEdge[top] = graph.edgeStart(node);
+            found[top] = false;
+            blocked.mark(node);
+        }
 
-            if (!visited.contains(child)) {
-                dfs(child, start, visited, path, cycles);
+        // node is unblocked together with child
+        private void waitFor(int child, int node) {
+            if (waitingFor.mark(child)) {
+                waitingHead[child] = -1;
+            }
+            if (waitingCount == waitingNode.length) {
+                waitingNode = Arrays.copyOf(waitingNode, waitingCount * 2);
+                waitingNext = Arrays.copyOf(waitingNext, waitingCount * 2);
             }
+            waitingNode[waitingCount] = node;
+            waitingNext[waitingCount] = waitingHead[child];
+            waitingHead[child] = waitingCount++;
         }
 
-        path.pop();
-        visited.remove(curr);
+        // unblock node and, transitively, every blocked class waiting for it
+        private void unblock(int node) {
+            blocked.unmark(node);
+            int top = 0;
+            unblockStack[0] = node;
+            while (top >= 0) {
+                int freed = unblockStack[top--];
+                if (!waitingFor.isMarked(freed)) {
+                    continue;
+                }
+                for (int entry = waitingHead[freed]; entry != -1; entry = waitingNext[entry]) {
+                    int other = waitingNode[entry];
+                    if (blocked.isMarked(other)) {
+                        blocked.unmark(other);
+                        unblockStack[++top] = other;
+                    }
+                }
+                waitingFor.unmark(freed);
+            }
+        }
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,247 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * what changed between a baseline knit.json (a saved file, the build output of another branch) and the current
+ * analysis: dependencies added and removed, and dependencies whose cyclic or redundant status changed.
+ *
+ * Both graphs go into one name table, the current classes first so their ids stay the same, and the edges of
+ * both as sorted packed arrays (source << 32 | target, the baseline's sorted once after renaming), which one
+ * merge walks in linear time. The baseline is then analysed like an update of knit.json is (see
+ * IncrementalAnalysis.update): only classes that reach a changed dependency in either graph can have different
+ * results, those are analysed again, every other class keeps the flags of the current analysis.
+ * Immutable, may be shared between threads.
+ */
+public class DependencyDiff {
+    // flags of a dependency in a graph that does not have it
+    public static final int ABSENT = -1;
+
+    private final List<EdgeDiff> edges;
+    private final int added;
+    private final int removed;
+    private final int cyclesAppeared;
+    private final int cyclesDisappeared;
+    private final int redundanciesAppeared;
+    private final int redundanciesDisappeared;
+
+    private DependencyDiff(List<EdgeDiff> edges) {
+        this.edges = Collections.unmodifiableList(edges);
+        int addedCount = 0;
+        int removedCount = 0;
+        int cyclic = 0;
+        int acyclic = 0;
+        int redundant = 0;
+        int necessary = 0;
+        for (EdgeDiff edge : edges) {
+            if (edge.isAdded()) {
+                addedCount++;
+            } else if (edge.isRemoved()) {
+                removedCount++;
+            }
+            if (edge.appeared(AnalysisResult.CYCLIC)) {
+                cyclic++;
+            } else if (edge.disappeared(AnalysisResult.CYCLIC)) {
+                acyclic++;
+            }
+            if (edge.appeared(AnalysisResult.REDUNDANT)) {
+                redundant++;
+            } else if (edge.disappeared(AnalysisResult.REDUNDANT)) {
+                necessary++;
+            }
+        }
+        added = addedCount;
+        removed = removedCount;
+        cyclesAppeared = cyclic;
+        cyclesDisappeared = acyclic;
+        redundanciesAppeared = redundant;
+        redundanciesDisappeared = necessary;
+    }
+
+    /**
+     * @param baseline e.g. from OrganiseHelpers.summariseDependencies, with a name table of its own
+     * @param current the analysis the baseline is compared with
+     * @param progress checked by the analysis of the baseline, may cancel it by throwing
+     */
+    public static DependencyDiff compare(DependencyGraph baseline, AnalysisResult current, AnalysisProgress progress) {
+        DependencyGraph graph = current.graph();
+        ClassNameTable names = new ClassNameTable();
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            names.intern(graph.name(node));
+        }
+        int[] renamed = new int[baseline.nodeCount()];
+        for (int node = 0; node < baseline.nodeCount(); node++) {
+            renamed[node] = names.intern(baseline.name(node));
+        }
+
+        // the current edges come sorted out of the graph, the baseline's have to be sorted after renaming
+        long[] currentEdges = new long[graph.edgeCount()];
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                currentEdges[edge] = pack(node, graph.target(edge));
+            }
+        }
+        long[] baselineEdges = new long[baseline.edgeCount()];
+        for (int node = 0; node < baseline.nodeCount(); node++) {
+            for (int edge = baseline.edgeStart(node); edge < baseline.edgeEnd(node); edge++) {
+                baselineEdges[edge] = pack(renamed[node], renamed[baseline.target(edge)]);
+            }
+        }
+        Arrays.sort(baselineEdges);
+
+        List<Long> addedEdges = new ArrayList<>();
+        List<Long> removedEdges = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < baselineEdges.length || j < currentEdges.length) {
+            if (j == currentEdges.length || (i < baselineEdges.length && baselineEdges[i] < currentEdges[j])) {
+                removedEdges.add(baselineEdges[i++]);
+            } else if (i == baselineEdges.length || currentEdges[j] < baselineEdges[i]) {
+                addedEdges.add(currentEdges[j++]);
+            } else {
+                i++;
+                j++;
+            }
+        }
+        if (addedEdges.isEmpty() && removedEdges.isEmpty()) {
+            return new DependencyDiff(new ArrayList<>());
+        }
+
+        // only classes that reach a changed edge in either graph can have other results in the baseline
+        DependencyGraph before = DependencyGraph.fromEdges(names, names.size(), baselineEdges);
+        boolean[] affected = new boolean[before.nodeCount()];
+        List<Integer> changedSources = new ArrayList<>();
+        for (long edge : addedEdges) {
+            changedSources.add(source(edge));
+        }
+        for (long edge : removedEdges) {
+            changedSources.add(source(edge));
+        }
+        IncrementalAnalysis.markDependents(graph, changedSources, affected);
+        IncrementalAnalysis.markDependents(before, changedSources, affected);
+        byte[] beforeFlags = new AnalysisExecutor().analyse(before, affected, false, progress).edgeFlags;
+
+        List<EdgeDiff> changes = new ArrayList<>();
+        for (long edge : addedEdges) {
+            int id = graph.edgeId(source(edge), target(edge));
+            changes.add(new EdgeDiff(graph.name(source(edge)), graph.name(target(edge)), ABSENT, current.flags(id)));
+        }
+        for (long edge : removedEdges) {
+            int id = before.edgeId(source(edge), target(edge));
+            changes.add(new EdgeDiff(names.name(source(edge)), names.name(target(edge)), beforeFlags[id], ABSENT));
+        }
+        // the edges in both graphs whose status may have changed: those of the affected classes
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            if (!affected[node]) {
+                continue;
+            }
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                int id = before.edgeId(node, graph.target(edge));
+                if (id != -1 && beforeFlags[id] != current.flags(edge)) {
+                    changes.add(new EdgeDiff(graph.name(node), graph.name(graph.target(edge)),
+                            beforeFlags[id], current.flags(edge)));
+                }
+            }
+        }
+        changes.sort(Comparator.comparing((EdgeDiff edge) -> edge.source).thenComparing(edge -> edge.target));
+        return new DependencyDiff(changes);
+    }
+
+    /**
+     * @return every dependency that was added, removed or changed status, by source and target name
+     */
+    public List<EdgeDiff> edges() {
+        return edges;
+    }
+
+    public boolean isEmpty() {
+        return edges.isEmpty();
+    }
+
+    public int addedCount() {
+        return added;
+    }
+
+    public int removedCount() {
+        return removed;
+    }
+
+    /**
+     * @return dependencies that are cyclic now and were not, or did not exist
+     */
+    public int cyclesAppeared() {
+        return cyclesAppeared;
+    }
+
+    /**
+     * @return dependencies that were cyclic and are not, or are gone
+     */
+    public int cyclesDisappeared() {
+        return cyclesDisappeared;
+    }
+
+    public int redundanciesAppeared() {
+        return redundanciesAppeared;
+    }
+
+    public int redundanciesDisappeared() {
+        return redundanciesDisappeared;
+    }
+
+    private static long pack(int source, int target) {
+        return ((long) source << 32) | target;
+    }
+
+    private static int source(long edge) {
+        return (int) (edge >>> 32);
+    }
+
+    private static int target(long edge) {
+        return (int) edge;
+    }
+
+    /**
+     * one dependency that differs between the baseline and now
+     */
+    public static class EdgeDiff {
+        public final String source;
+        public final String target;
+        // AnalysisResult.CYCLIC and REDUNDANT in the baseline and now, ABSENT where the dependency does not exist
+        public final int before;
+        public final int after;
+
+        public EdgeDiff(String source, String target, int before, int after) {
+            this.source = source;
+            this.target = target;
+            this.before = before;
+            this.after = after;
+        }
+
+        public boolean isAdded() {
+            return before == ABSENT;
+        }
+
+        public boolean isRemoved() {
+            return after == ABSENT;
+        }
+
+        /**
+         * @param flag AnalysisResult.CYCLIC or REDUNDANT
+         * @return true if the dependency has the flag now but had not in the baseline, or did not exist
+         */
+        public boolean appeared(int flag) {
+            return after != ABSENT && (after & flag) != 0 && (before == ABSENT || (before & flag) == 0);
+        }
+
+        /**
+         * @return true if the dependency had the flag in the baseline but has not now, or is gone
+         */
+        public boolean disappeared(int flag) {
+            return before != ABSENT && (before & flag) != 0 && (after == ABSENT || (after & flag) == 0);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.*;
+
+/**
+ * immutable dependency graph over dense class ids.
+ * forward and reverse adjacency are stored in compressed-sparse-row form: the dependencies of
+ * node n are forwardTargets[forwardOffsets[n] .. forwardOffsets[n + 1]), sorted by id and free of
+ * duplicates. The position of an edge in forwardTargets is its edge id.
+ */
+public class DependencyGraph {
+    private final ClassNameTable names;
+    private final int nodeCount;
+    private final int[] forwardOffsets;
+    private final int[] forwardTargets;
+    private final int[] reverseOffsets;
+    private final int[] reverseSources;
+
+    private DependencyGraph(ClassNameTable names, int nodeCount, int[] forwardOffsets, int[] forwardTargets) {
+        this.names = names;
+        this.nodeCount = nodeCount;
+        this.forwardOffsets = forwardOffsets;
+        this.forwardTargets = forwardTargets;
+
+        // reverse adjacency by counting sort over the targets, sources come out sorted as well
+        reverseOffsets = new int[nodeCount + 1];
+        for (int target : forwardTargets) {
+            reverseOffsets[target + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            reverseOffsets[node + 1] += reverseOffsets[node];
+        }
+        reverseSources = new int[forwardTargets.length];
+        int[] fill = Arrays.copyOf(reverseOffsets, nodeCount);
+        for (int source = 0; source < nodeCount; source++) {
+            for (int edge = forwardOffsets[source]; edge < forwardOffsets[source + 1]; edge++) {
+                reverseSources[fill[forwardTargets[edge]]++] = source;
+            }
+        }
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int edgeCount() {
+        return forwardTargets.length;
+    }
+
+    public ClassNameTable names() {
+        return names;
+    }
+
+    public String name(int node) {
+        return names.name(node);
+    }
+
+    /**
+     * @return id of the class, or -1 if it is not part of the graph
+     */
+    public int id(String name) {
+        int id = names.find(name);
+        return id < nodeCount ? id : -1;
+    }
+
+    /** first edge id of the node's dependencies */
+    public int edgeStart(int node) {
+        return forwardOffsets[node];
+    }
+
+    /** edge id after the node's last dependency */
+    public int edgeEnd(int node) {
+        return forwardOffsets[node + 1];
+    }
+
+    public int target(int edge) {
+        return forwardTargets[edge];
+    }
+
+    public int outDegree(int node) {
+        return forwardOffsets[node + 1] - forwardOffsets[node];
+    }
+
+    /** first position of the node's dependents, read them with dependent(position) */
+    public int dependentStart(int node) {
+        return reverseOffsets[node];
+    }
+
+    public int dependentEnd(int node) {
+        return reverseOffsets[node + 1];
+    }
+
+    public int dependent(int position) {
+        return reverseSources[position];
+    }
+
+    public int inDegree(int node) {
+        return reverseOffsets[node + 1] - reverseOffsets[node];
+    }
+
+    /**
+     * @return source node of an edge, found by binary search over the offsets
+     */
+    public int source(int edge) {
+        int low = 0;
+        int high = nodeCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (forwardOffsets[mid] <= edge) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return edge id of source -> target, or -1 if there is no such edge
+     */
+    public int edgeId(int source, int target) {
+        int index = Arrays.binarySearch(forwardTargets, forwardOffsets[source], forwardOffsets[source + 1], target);
+        return index >= 0 ? index : -1;
+    }
+
+    public boolean hasEdge(int source, int target) {
+        return edgeId(source, target) != -1;
+    }
+
+    /**
+     * @return the graph in the class -> dependencies shape, only classes with dependencies become keys
+     */
+    public Map<String, List<String>> toMap() {
+        Map<String, List<String>> map = new HashMap<>();
+        for (int node = 0; node < nodeCount; node++) {
+            if (outDegree(node) == 0) {
+                continue;
+            }
+            List<String> dependencies = new ArrayList<>(outDegree(node));
+            for (int edge = edgeStart(node); edge < edgeEnd(node); edge++) {
+                dependencies.add(name(forwardTargets[edge]));
+            }
+            map.put(name(node), dependencies);
+        }
+        return map;
+    }
+
+    public static DependencyGraph fromMap(Map<String, List<String>> graph) {
+        Builder builder = new Builder();
+        for (Map.Entry<String, List<String>> entry : graph.entrySet()) {
+            int source = builder.addNode(entry.getKey());
+            for (String dependency : entry.getValue()) {
+                builder.addEdge(source, builder.addNode(dependency));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * collects edges as packed longs (source in the high half, target in the low half).
+     * Repeated edges are only removed once, in build(), by sorting.
+     */
+    public static class Builder {
+        private final ClassNameTable names;
+        private long[] edges = new long[256];
+        private int edgeCount;
+
+        public Builder() {
+            this(new ClassNameTable());
+        }
+
+        /**
+         * @param names table to intern into, can be shared between builders so ids stay comparable
+         */
+        public Builder(ClassNameTable names) {
+            this.names = names;
+        }
+
+        public ClassNameTable names() {
+            return names;
+        }
+
+        public int addNode(String name) {
+            return names.intern(name);
+        }
+
+        public void addEdge(String source, String target) {
+            addEdge(names.intern(source), names.intern(target));
+        }
+
+        public void addEdge(int source, int target) {
+            if (edgeCount == edges.length) {
+                edges = Arrays.copyOf(edges, edgeCount * 2);
+            }
+            edges[edgeCount++] = ((long) source << 32) | target;
+        }
+
+        /**
+         * @return the collected edges sorted and without repeats, in the packed form
+         */
+        public long[] edges() {
+            Arrays.sort(edges, 0, edgeCount);
+            int unique = 0;
+            for (int i = 0; i < edgeCount; i++) {
+                if (unique == 0 || edges[unique - 1] != edges[i]) {
+                    edges[unique++] = edges[i];
+                }
+            }
+            edgeCount = unique;
+            return Arrays.copyOf(edges, edgeCount);
+        }
+
+        public DependencyGraph build() {
+            return fromEdges(names, names.size(), edges());
+        }
+    }
+
+    /**
+     * @param names table the ids come from
+     * @param nodeCount number of nodes, at least every id used in edges plus one
+     * @param edges sorted, repeat-free packed edges
+     */
+    public static DependencyGraph fromEdges(ClassNameTable names, int nodeCount, long[] edges) {
+        int[] offsets = new int[nodeCount + 1];
+        int[] targets = new int[edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            offsets[(int) (edges[i] >>> 32) + 1]++;
+            targets[i] = (int) edges[i];
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+        return new DependencyGraph(names, nodeCount, offsets, targets);
+    }
+}
@@ -0,0 +1,267 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * answers "why does A depend on B": the chains of dependencies that lead from one class to another.
+ * A ReachabilityIndex turns negative answers away before anything is searched, and its intervals keep the
+ * searches of positive answers to classes that may lie on such a chain.
+ * The searches share two Traversals and the marks of the chain being followed, created with the first query,
+ * so a query allocates nothing in proportion to the graph. Queries may run on any thread, one at a time.
+ */
+public class DependencyPaths {
+    private final DependencyGraph graph;
+    private final ReachabilityIndex index;
+    // scratch space of the queries, along dependencies and along dependents
+    private Traversal forward;
+    private Traversal backward;
+    private NodeMarks onChain;
+
+    public DependencyPaths(DependencyGraph graph) {
+        this(new ReachabilityIndex(graph));
+    }
+
+    public DependencyPaths(ReachabilityIndex index) {
+        this.graph = index.components().graph();
+        this.index = index;
+    }
+
+    public DependencyGraph graph() {
+        return graph;
+    }
+
+    /**
+     * @return true if source depends on target directly or transitively. A class only depends on itself
+     *         inside a cycle (or through a self-loop)
+     */
+    public boolean dependsOn(String source, String target) {
+        return !shortestPath(source, target).isEmpty();
+    }
+
+    /**
+     * breadth first search from both ends at once, always growing the smaller side by one level. Classes the
+     * index rules out are never entered: forwards only classes that may reach the target, backwards only
+     * classes the source may reach
+     * @return the classes of a shortest chain of dependencies, source first and target last,
+     *         empty if source does not depend on target or one of them is unknown
+     */
+    public synchronized List<String> shortestPath(String source, String target) {
+        int from = graph.id(source);
+        int to = graph.id(target);
+        if (from == -1 || to == -1 || !index.canReach(from, to)) {
+            return List.of(); // answered by the index alone
+        }
+        if (from == to) {
+            return shortestCycle(from);
+        }
+
+        // parent towards the source (forwards) or towards the target (backwards), and the distance from that end
+        prepare();
+        forward.clear();
+        backward.clear();
+        forward.start(from);
+        backward.start(to);
+        IntPredicate towardsTarget = node -> index.mayReach(node, to);
+        IntPredicate fromSource = node -> index.mayReach(from, node);
+        int forwardLevel = 1;
+        int backwardLevel = 1;
+        while (forwardLevel > 0 && backwardLevel > 0) {
+            // the whole level is grown before a meeting is taken, the one closest to the other end wins
+            int meeting;
+            if (forwardLevel <= backwardLevel) {
+                int first = forward.count();
+                forwardLevel = forward.nextLevel(true, towardsTarget);
+                meeting = meeting(forward, first, backward);
+            } else {
+                int first = backward.count();
+                backwardLevel = backward.nextLevel(false, fromSource);
+                meeting = meeting(backward, first, forward);
+            }
+            if (meeting != -1) {
+                return path(meeting);
+            }
+        }
+        return List.of();
+    }
+
+    // the class of the level just grown that the other side reached closest to its end, -1 if they did not meet
+    private static int meeting(Traversal grown, int first, Traversal other) {
+        int meeting = -1;
+        for (int i = first; i < grown.count(); i++) {
+            int node = grown.node(i);
+            if (other.isReached(node) && (meeting == -1 || other.depth(node) < other.depth(meeting))) {
+                meeting = node;
+            }
+        }
+        return meeting;
+    }
+
+    private List<String> path(int meeting) {
+        LinkedList<String> path = new LinkedList<>();
+        for (int node = meeting; node != -1; node = forward.parent(node)) {
+            path.addFirst(graph.name(node));
+        }
+        for (int node = backward.parent(meeting); node != -1; node = backward.parent(node)) {
+            path.addLast(graph.name(node));
+        }
+        return new ArrayList<>(path);
+    }
+
+    // every class of a cycle through node is in the node's component, nothing else needs to be looked at.
+    // node is not reached to begin with, so the search reaches it again through the shortest cycle
+    private List<String> shortestCycle(int node) {
+        StronglyConnectedComponents components = index.components();
+        int component = components.componentOf(node);
+        IntPredicate inComponent = child -> components.componentOf(child) == component;
+        prepare();
+        forward.clear();
+        forward.expand(node, true, inComponent);
+        if (!forward.breadthFirst(true, Integer.MAX_VALUE, inComponent, node)) {
+            return List.of(); // a component of its own without a self-loop
+        }
+        LinkedList<String> cycle = new LinkedList<>();
+        cycle.add(graph.name(node));
+        for (int step = forward.parent(node); step != node; step = forward.parent(step)) {
+            cycle.addFirst(graph.name(step));
+        }
+        cycle.addFirst(graph.name(node));
+        return new ArrayList<>(cycle);
+    }
+
+    // the scratch space, once per instance
+    private void prepare() {
+        if (forward == null) {
+            forward = new Traversal(graph);
+            backward = new Traversal(graph);
+            onChain = new NodeMarks(graph.nodeCount());
+        }
+    }
+
+    /**
+     * every chain of dependencies from source to target with at most maxLength dependencies, no class
+     * visited twice (apart from source and target being the same class when asking for cycles).
+     * How far every class is from the target is found first (backwards, only through classes the index
+     * does not rule out),
+     * so the search never follows a dependency that cannot reach the target in time
+     * @param maxPaths the search stops once this many are found
+     * @return shortest first, then by name
+     */
+    public synchronized List<List<String>> paths(String source, String target, int maxLength, int maxPaths) {
+        int from = graph.id(source);
+        int to = graph.id(target);
+        if (from == -1 || to == -1 || maxLength < 1 || maxPaths < 1 || !index.canReach(from, to)) {
+            return List.of();
+        }
+        prepare();
+        distancesTo(from, to, maxLength);
+
+        List<List<String>> paths = new ArrayList<>();
+        // iterative depth first search: the classes of the current chain, and how far each got through its edges
+        int[] chain = new int[maxLength + 1];
+        int[] nextEdge = new int[maxLength + 1];
+        onChain.clear();
+        int depth = 0;
+        chain[0] = from;
+        nextEdge[0] = graph.edgeStart(from);
+        onChain.mark(from);
+        while (depth >= 0 && paths.size() < maxPaths) {
+            int node = chain[depth];
+            if (nextEdge[depth] == graph.edgeEnd(node)) {
+                onChain.unmark(node);
+                depth--;
+                continue;
+            }
+            int child = graph.target(nextEdge[depth]++);
+            if (child == to) {
+                List<String> path = new ArrayList<>(depth + 2);
+                for (int i = 0; i <= depth; i++) {
+                    path.add(graph.name(chain[i]));
+                }
+                path.add(graph.name(to));
+                paths.add(path);
+                continue;
+            }
+            if (backward.isReached(child) && depth + 1 + backward.depth(child) <= maxLength
+                    && !onChain.isMarked(child)) {
+                depth++;
+                chain[depth] = child;
+                nextEdge[depth] = graph.edgeStart(child);
+                onChain.mark(child);
+            }
+        }
+
+        paths.sort(Comparator.<List<String>>comparingInt(List::size).thenComparing(String::valueOf));
+        return paths;
+    }
+
+    /**
+     * what one class depends on and what depends on it, breadth first in both directions
+     * @param transitive false for the direct dependencies and dependents only
+     * @return nearest first, null if the class is unknown
+     */
+    public synchronized Neighbourhood neighbourhood(String className, boolean transitive) {
+        int node = graph.id(className);
+        if (node == -1) {
+            return null;
+        }
+        prepare();
+        int directDependencies = reach(forward, node, true, transitive);
+        int directDependents = reach(backward, node, false, transitive);
+        return new Neighbourhood(className, names(forward), directDependencies, names(backward), directDependents);
+    }
+
+    /**
+     * breadth first from node, which is only reached itself if it is on a cycle
+     * @return how many classes are one dependency away, they are reached first
+     */
+    private static int reach(Traversal traversal, int node, boolean forwards, boolean transitive) {
+        traversal.clear();
+        int direct = traversal.expand(node, forwards, null);
+        if (transitive) {
+            traversal.breadthFirst(forwards, Integer.MAX_VALUE, null, -1);
+        }
+        return direct;
+    }
+
+    private List<String> names(Traversal traversal) {
+        List<String> names = new ArrayList<>(traversal.count());
+        for (int i = 0; i < traversal.count(); i++) {
+            names.add(graph.name(traversal.node(i)));
+        }
+        return names;
+    }
+
+    /**
+     * the classes around one class, the direct ones first
+     */
+    public static class Neighbourhood {
+        public final String className;
+        public final List<String> dependencies;
+        public final int directDependencies;
+        public final List<String> dependents;
+        public final int directDependents;
+
+        public Neighbourhood(String className, List<String> dependencies, int directDependencies,
+                             List<String> dependents, int directDependents) {
+            this.className = className;
+            this.dependencies = dependencies;
+            this.directDependencies = directDependencies;
+            this.dependents = dependents;
+            this.directDependents = directDependents;
+        }
+    }
+
+    /**
+     * breadth first search backwards from target into the backward traversal, at most maxLength deep, only
+     * through classes the source may reach. The depth of every class reached is its distance to target,
+     * the source is left out
+     */
+    private void distancesTo(int from, int to, int maxLength) {
+        backward.clear();
+        backward.start(to);
+        // the source still needs one dependency to get to a class, so classes maxLength - 1 away are not expanded
+        backward.breadthFirst(false, maxLength - 1,
+                dependent -> dependent != from && index.mayReach(from, dependent), -1);
+    }
+}
@@ -0,0 +1,482 @@
+package com.github.coffeencode.toolWindow;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.*;
+import java.util.*;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.LongConsumer;
+
+/**
+ * paints a GraphScene with plain Java2D: only the vertices and edges the Quadtrees of the scene find inside the
+ * area being painted are drawn, so a frame costs what is on screen and not what is in the graph. When zoomed out,
+ * detail nobody could read is left out: labels once their text would be a few pixels high, arrow heads, borders
+ * and antialiasing further out, and a crowded area gets its edges without antialiasing. A change to the scene
+ * only repaints the area it touched.
+ * Dragging the background pans, the mouse wheel zooms around the cursor, dragging a vertex moves it and every
+ * other selected one, a click selects (ctrl or shift adds and removes), a double click on the background fits
+ * the whole graph into the view.
+ */
+public class GraphCanvas extends JComponent {
+    private static final double MIN_SCALE = 0.02;
+    private static final double MAX_SCALE = 4;
+    private static final double ZOOM_STEP = 1.1;
+    // below these scales (screen pixels per scene unit) the detail is not drawn
+    private static final double LABEL_PIXELS = 5; // smallest readable label height
+    private static final double EDGE_LABEL_SCALE = 0.75;
+    private static final double ARROW_SCALE = 0.3;
+    private static final double BORDER_SCALE = 0.15;
+    private static final double ANTIALIAS_SCALE = 0.3;
+    // more edges in the area than this are drawn without antialiasing, smooth lines cost ten times as much
+    private static final int SMOOTH_EDGES = 500;
+    private static final double ARROW_LENGTH = 8;
+    private static final double ARROW_WIDTH = 3;
+    private static final double ARC = 10;
+    private static final Color SELECTION_COLOR = new Color(0x2196F3);
+    private static final Color EDGE_LABEL_COLOR = Color.BLACK;
+
+    private final GraphScene scene;
+    // screen = scene * scale + offset
+    private double scale = 1;
+    private double offsetX;
+    private double offsetY;
+    private boolean fitted;
+    private final Set<Integer> selection = new LinkedHashSet<>();
+    private IntConsumer onDoubleClick = vertex -> {
+    };
+    private Runnable onVerticesMoved = () -> {
+    };
+    private IntFunction<String> toolTips = vertex -> null;
+    private LongConsumer onFirstPaint;
+    // what the last paint found, kept to not allocate per frame
+    private final List<GraphScene.Vertex> visibleVertices = new ArrayList<>();
+    private final List<GraphScene.Edge> visibleEdges = new ArrayList<>();
+    // the area being painted, in scene coordinates
+    private final Rectangle2D.Double area = new Rectangle2D.Double();
+    private final Rectangle2D.Double box = new Rectangle2D.Double();
+    private final RoundRectangle2D.Double roundBox = new RoundRectangle2D.Double();
+    private final Line2D.Double line = new Line2D.Double();
+    private final Path2D.Double arrow = new Path2D.Double();
+
+    public GraphCanvas(GraphScene scene) {
+        this.scene = scene;
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        setPreferredSize(new Dimension(1200, 800));
+        setToolTipText(""); // registers with the tool tip manager, the text is asked for per position
+        scene.setOnDirty(this::repaintScene);
+        MouseAdapter mouse = new Mouse();
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    public GraphScene getScene() {
+        return scene;
+    }
+
+    /**
+     * @param onDoubleClick gets the vertex double-clicked
+     */
+    public void setOnDoubleClick(IntConsumer onDoubleClick) {
+        this.onDoubleClick = onDoubleClick;
+    }
+
+    /**
+     * @param onVerticesMoved runs once vertices were dragged somewhere else and the mouse was released
+     */
+    public void setOnVerticesMoved(Runnable onVerticesMoved) {
+        this.onVerticesMoved = onVerticesMoved;
+    }
+
+    /**
+     * @param toolTips the text for the vertex under the mouse, null for none
+     */
+    public void setToolTips(IntFunction<String> toolTips) {
+        this.toolTips = toolTips;
+    }
+
+    /**
+     * @param onFirstPaint told how long the first paint took, in nanoseconds
+     */
+    public void setOnFirstPaint(LongConsumer onFirstPaint) {
+        this.onFirstPaint = onFirstPaint;
+    }
+
+    /**
+     * @return the selected vertices that still exist, in the order they were selected
+     */
+    public List<Integer> getSelection() {
+        selection.removeIf(vertex -> !scene.hasVertex(vertex));
+        return new ArrayList<>(selection);
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * show the scene at this scale, the scene point (0, 0) at (offsetX, offsetY) of the component
+     */
+    public void setView(double scale, double offsetX, double offsetY) {
+        this.scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale));
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        fitted = true;
+        repaint();
+    }
+
+    /**
+     * zoom so the whole scene fits, but never in beyond its real size
+     */
+    public void fit() {
+        Rectangle2D bounds = scene.bounds();
+        if (bounds == null || getWidth() == 0 || getHeight() == 0) {
+            return;
+        }
+        double margin = 20;
+        double fit = Math.min((getWidth() - 2 * margin) / Math.max(1, bounds.getWidth()),
+                (getHeight() - 2 * margin) / Math.max(1, bounds.getHeight()));
+        double fitScale = Math.max(MIN_SCALE, Math.min(1, fit));
+        setView(fitScale, (getWidth() - bounds.getWidth() * fitScale) / 2 - bounds.getX() * fitScale,
+                (getHeight() - bounds.getHeight() * fitScale) / 2 - bounds.getY() * fitScale);
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent event) {
+        int vertex = scene.vertexAt(sceneX(event.getX()), sceneY(event.getY()));
+        return vertex == -1 ? null : toolTips.apply(vertex);
+    }
+
+    private double sceneX(double screenX) {
+        return (screenX - offsetX) / scale;
+    }
+
+    private double sceneY(double screenY) {
+        return (screenY - offsetY) / scale;
+    }
+
+    // an area of the scene changed, the pixels over it are painted again (with room for strokes and arrow heads)
+    private void repaintScene(double x, double y, double width, double height) {
+        int left = (int) Math.floor(x * scale + offsetX) - 4;
+        int top = (int) Math.floor(y * scale + offsetY) - 4;
+        int right = (int) Math.ceil((x + width) * scale + offsetX) + 4;
+        int bottom = (int) Math.ceil((y + height) * scale + offsetY) + 4;
+        if (right >= 0 && bottom >= 0 && left <= getWidth() && top <= getHeight()) {
+            repaint(left, top, right - left, bottom - top);
+        }
+    }
+
+    private void repaintVertex(int vertex) {
+        if (scene.hasVertex(vertex)) {
+            repaintScene(scene.x(vertex), scene.y(vertex), scene.width(vertex), scene.height(vertex));
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        long start = System.nanoTime();
+        if (!fitted) {
+            fit(); // the size is known by the first paint
+            fitted = true;
+        }
+        Rectangle clip = graphics.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        Graphics2D g = (Graphics2D) graphics.create();
+        // without the scale, hairlines are drawn as pixels there
+        Graphics2D screen = (Graphics2D) graphics.create();
+        try {
+            g.setColor(getBackground());
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+            boolean smooth = scale >= ANTIALIAS_SCALE;
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                    smooth ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+            g.translate(offsetX, offsetY);
+            g.scale(scale, scale);
+
+            // everything that reaches into the clip, in scene coordinates
+            double x = sceneX(clip.x);
+            double y = sceneY(clip.y);
+            double width = clip.width / scale;
+            double height = clip.height / scale;
+            // a little more for the arrow heads and the width of the lines
+            area.setRect(x - ARROW_LENGTH, y - ARROW_LENGTH, width + 2 * ARROW_LENGTH, height + 2 * ARROW_LENGTH);
+            visibleEdges.clear();
+            scene.visibleEdges(x, y, width, height, visibleEdges);
+            boolean smoothEdges = smooth && visibleEdges.size() <= SMOOTH_EDGES;
+            antialias(g, smoothEdges);
+            antialias(screen, false);
+            for (GraphScene.Edge edge : visibleEdges) {
+                paintEdge(g, edge, smoothEdges ? null : screen);
+            }
+            antialias(g, smooth);
+            visibleVertices.clear();
+            scene.visibleVertices(x, y, width, height, visibleVertices);
+            boolean labels = GraphScene.FONT.getSize2D() * scale >= LABEL_PIXELS;
+            for (GraphScene.Vertex vertex : visibleVertices) {
+                paintVertex(g, vertex, labels);
+            }
+            paintSelection(g);
+        } finally {
+            g.dispose();
+            screen.dispose();
+        }
+        if (onFirstPaint != null) {
+            LongConsumer report = onFirstPaint;
+            onFirstPaint = null;
+            report.accept(System.nanoTime() - start);
+        }
+    }
+
+    private static void antialias(Graphics2D g, boolean on) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                on ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+    }
+
+    // a straight line from border to border of the two boxes, the arrow head at the target.
+    // a long edge is found by its bounding box, only the part of the line inside the area is drawn
+    // @param screen to draw solid lines of at most a pixel as pixels, null to draw them as shapes
+    private void paintEdge(Graphics2D g, GraphScene.Edge edge, Graphics2D screen) {
+        GraphScene.Vertex source = edge.source;
+        GraphScene.Vertex target = edge.target;
+        double x1 = source.x + source.width / 2;
+        double y1 = source.y + source.height / 2;
+        double x2 = target.x + target.width / 2;
+        double y2 = target.y + target.height / 2;
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        if (dx == 0 && dy == 0) {
+            return; // on top of each other
+        }
+        double fromSource = border(source, dx, dy);
+        double toTarget = border(target, dx, dy);
+        if (fromSource + toTarget >= 1) {
+            return; // the boxes overlap, the line would be inside them
+        }
+        double endX = x2 - dx * toTarget;
+        double endY = y2 - dy * toTarget;
+        if (!clipLine(x1 + dx * fromSource, y1 + dy * fromSource, endX, endY)) {
+            return;
+        }
+        GraphScene.Style style = edge.parsed;
+        if (screen != null && !style.dashed && style.strokeWidth * scale < 1.5) {
+            screen.setColor(style.stroke);
+            screen.drawLine((int) (line.x1 * scale + offsetX), (int) (line.y1 * scale + offsetY),
+                    (int) (line.x2 * scale + offsetX), (int) (line.y2 * scale + offsetY));
+        } else {
+            g.setColor(style.stroke);
+            g.setStroke(style.stroke());
+            g.draw(line);
+        }
+        g.setColor(style.stroke);
+        if (scale >= ARROW_SCALE && area.contains(endX, endY)) {
+            double length = Math.sqrt(dx * dx + dy * dy);
+            double ux = dx / length;
+            double uy = dy / length;
+            double baseX = endX - ux * ARROW_LENGTH;
+            double baseY = endY - uy * ARROW_LENGTH;
+            arrow.reset();
+            arrow.moveTo(endX, endY);
+            arrow.lineTo(baseX - uy * ARROW_WIDTH, baseY + ux * ARROW_WIDTH);
+            arrow.lineTo(baseX + uy * ARROW_WIDTH, baseY - ux * ARROW_WIDTH);
+            arrow.closePath();
+            g.fill(arrow);
+        }
+        if (scale >= EDGE_LABEL_SCALE && !edge.label.isEmpty()) {
+            g.setFont(GraphScene.FONT);
+            g.setColor(EDGE_LABEL_COLOR);
+            FontMetrics metrics = g.getFontMetrics();
+            g.drawString(edge.label, (float) ((x1 + x2) / 2 - metrics.stringWidth(edge.label) / 2.0),
+                    (float) ((y1 + y2) / 2 - 2));
+        }
+    }
+
+    /**
+     * the part of the line inside area into line (Liang-Barsky), Java2D would otherwise stroke all of a line
+     * across the graph to draw the few pixels of it on screen
+     * @return false if no part is inside
+     */
+    private boolean clipLine(double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {x1 - area.x, area.x + area.width - x1, y1 - area.y, area.y + area.height - y1};
+        double from = 0;
+        double to = 1;
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0) {
+                if (q[i] < 0) {
+                    return false; // parallel to this side and outside of it
+                }
+            } else {
+                double t = q[i] / p[i];
+                if (p[i] < 0) {
+                    from = Math.max(from, t);
+                } else {
+                    to = Math.min(to, t);
+                }
+            }
+        }
+        if (from > to) {
+            return false;
+        }
+        line.setLine(x1 + dx * from, y1 + dy * from, x1 + dx * to, y1 + dy * to);
+        return true;
+    }
+
+    // the part of (dx, dy) from the centre of the box to its border
+    private static double border(GraphScene.Vertex vertex, double dx, double dy) {
+        double toSide = dx == 0 ? Double.MAX_VALUE : vertex.width / 2 / Math.abs(dx);
+        double toTop = dy == 0 ? Double.MAX_VALUE : vertex.height / 2 / Math.abs(dy);
+        return Math.min(toSide, toTop);
+    }
+
+    private void paintVertex(Graphics2D g, GraphScene.Vertex vertex, boolean labels) {
+        GraphScene.Style style = vertex.parsed;
+        Shape shape;
+        if (style.rounded) {
+            roundBox.setRoundRect(vertex.x, vertex.y, vertex.width, vertex.height, ARC, ARC);
+            shape = roundBox;
+        } else {
+            box.setRect(vertex.x, vertex.y, vertex.width, vertex.height);
+            shape = box;
+        }
+        g.setColor(style.fill);
+        g.fill(shape);
+        if (scale >= BORDER_SCALE) {
+            g.setColor(style.stroke);
+            g.setStroke(style.stroke());
+            g.draw(shape);
+        }
+        if (labels) {
+            Font font = style.bold ? GraphScene.BOLD_FONT : GraphScene.FONT;
+            g.setFont(font);
+            g.setColor(style.font);
+            FontMetrics metrics = g.getFontMetrics();
+            float textX = (float) (vertex.x + (vertex.width - metrics.stringWidth(vertex.label)) / 2);
+            float textY = (float) (vertex.y + (vertex.height - metrics.getHeight()) / 2 + metrics.getAscent());
+            g.drawString(vertex.label, textX, textY);
+        }
+    }
+
+    // two pixels around every selected vertex, whatever the scale
+    private void paintSelection(Graphics2D g) {
+        if (selection.isEmpty()) {
+            return;
+        }
+        g.setColor(SELECTION_COLOR);
+        g.setStroke(new BasicStroke((float) (2 / scale)));
+        double gap = 3 / scale;
+        for (int id : selection) {
+            GraphScene.Vertex vertex = scene.vertex(id);
+            if (vertex != null) {
+                box.setRect(vertex.x - gap, vertex.y - gap, vertex.width + 2 * gap, vertex.height + 2 * gap);
+                g.draw(box);
+            }
+        }
+    }
+
+    private void select(int vertex, boolean toggle) {
+        if (!toggle) {
+            for (int selected : selection) {
+                repaintVertex(selected);
+            }
+            selection.clear();
+        }
+        if (vertex != -1 && !selection.remove(vertex)) {
+            selection.add(vertex);
+        }
+        repaintVertex(vertex);
+    }
+
+    private class Mouse extends MouseAdapter {
+        private int lastX;
+        private int lastY;
+        // what is dragged: the selected vertices, or the view
+        private boolean draggingVertices;
+        private boolean moved;
+
+        @Override
+        public void mousePressed(MouseEvent e) {
+            lastX = e.getX();
+            lastY = e.getY();
+            moved = false;
+            boolean toggle = (e.getModifiersEx() & (InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK
+                    | InputEvent.META_DOWN_MASK)) != 0;
+            int vertex = scene.vertexAt(sceneX(e.getX()), sceneY(e.getY()));
+            if (vertex == -1) {
+                if (!toggle) {
+                    select(-1, false);
+                }
+            } else if (toggle || !selection.contains(vertex)) {
+                select(vertex, toggle);
+            }
+            draggingVertices = vertex != -1 && selection.contains(vertex);
+        }
+
+        @Override
+        public void mouseDragged(MouseEvent e) {
+            if (!SwingUtilities.isLeftMouseButton(e)) {
+                return;
+            }
+            int dx = e.getX() - lastX;
+            int dy = e.getY() - lastY;
+            lastX = e.getX();
+            lastY = e.getY();
+            if (draggingVertices) {
+                scene.beginUpdate();
+                try {
+                    for (int vertex : getSelection()) {
+                        scene.moveVertex(vertex, scene.x(vertex) + dx / scale, scene.y(vertex) + dy / scale);
+                    }
+                } finally {
+                    scene.endUpdate();
+                }
+                moved = true;
+            } else {
+                offsetX += dx;
+                offsetY += dy;
+                repaint();
+            }
+        }
+
+        @Override
+        public void mouseReleased(MouseEvent e) {
+            if (moved) {
+                moved = false;
+                onVerticesMoved.run();
+            }
+        }
+
+        @Override
+        public void mouseClicked(MouseEvent e) {
+            if (e.getClickCount() != 2 || !SwingUtilities.isLeftMouseButton(e)) {
+                return;
+            }
+            int vertex = scene.vertexAt(sceneX(e.getX()), sceneY(e.getY()));
+            if (vertex == -1) {
+                fit();
+            } else {
+                onDoubleClick.accept(vertex);
+            }
+        }
+
+        // the scene point under the cursor stays where it is
+        @Override
+        public void mouseWheelMoved(MouseWheelEvent e) {
+            double zoomed = scale * Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation());
+            zoomed = Math.max(MIN_SCALE, Math.min(MAX_SCALE, zoomed));
+            double x = sceneX(e.getX());
+            double y = sceneY(e.getY());
+            setView(zoomed, e.getX() - x * zoomed, e.getY() - y * zoomed);
+        }
+    }
+}
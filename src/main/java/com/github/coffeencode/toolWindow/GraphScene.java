@@ -0,0 +1,490 @@
+package com.github.coffeencode.toolWindow;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.util.*;
+import java.util.List;
+
+/**
+ * what GraphCanvas draws: boxes (vertices) with a label and a style, and arrows (edges) between them, each by
+ * the key the caller gives it. Styles are key=value;... strings, e.g.
+ * "rounded=1;fillColor=#E5574B;fontColor=white;strokeColor=black;fontStyle=1", parsed once per distinct string.
+ * Vertices and edges are kept in a Quadtree each, so the canvas only looks at what is inside the viewport and
+ * finds what is under the mouse without going through everything.
+ * Every change reports the area it touched to the listener, once per beginUpdate / endUpdate, so only that
+ * area is painted again. No Swing component is involved, the scene can be built on a background thread
+ * and handed to the UI thread afterwards; from then on it must only be changed there.
+ */
+public class GraphScene {
+    static final Font FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 11);
+    static final Font BOLD_FONT = FONT.deriveFont(Font.BOLD);
+    // space around a label inside its box
+    private static final double PADDING_X = 8;
+    private static final double PADDING_Y = 5;
+    // room around an edge's line for the arrow head, its width and its label
+    private static final double EDGE_MARGIN = 12;
+    private static final FontRenderContext MEASURE = new FontRenderContext(null, true, true);
+
+    private final Map<Integer, Vertex> vertices = new LinkedHashMap<>();
+    private final Map<Long, Edge> edges = new LinkedHashMap<>();
+    // the Quadtrees are keyed by slot, dense and reused, so what a query finds is an index into a list and not a
+    // lookup by id (packed edge ids collide a lot in a HashMap). Free slots are reused
+    private final List<Vertex> vertexSlots = new ArrayList<>();
+    private final List<Edge> edgeSlots = new ArrayList<>();
+    private final Deque<Integer> freeVertexSlots = new ArrayDeque<>();
+    private final Deque<Integer> freeEdgeSlots = new ArrayDeque<>();
+    private final Quadtree vertexIndex = new Quadtree();
+    private final Quadtree edgeIndex = new Quadtree();
+    private final Map<String, Style> styles = new HashMap<>();
+    // the order of the last vertex added
+    private int nextOrder;
+
+    private DirtyListener onDirty = (x, y, width, height) -> {
+    };
+    private int updateDepth;
+    private Rectangle2D dirty;
+
+    /**
+     * told about every area that has to be painted again, in scene coordinates
+     */
+    public interface DirtyListener {
+        void dirty(double x, double y, double width, double height);
+    }
+
+    public void setOnDirty(DirtyListener onDirty) {
+        this.onDirty = onDirty;
+    }
+
+    /**
+     * collect the areas of the changes until the matching endUpdate, they are reported as one
+     */
+    public void beginUpdate() {
+        updateDepth++;
+    }
+
+    public void endUpdate() {
+        if (--updateDepth == 0 && dirty != null) {
+            Rectangle2D area = dirty;
+            dirty = null;
+            onDirty.dirty(area.getX(), area.getY(), area.getWidth(), area.getHeight());
+        }
+    }
+
+    // ---- vertices ----
+
+    /**
+     * a box just big enough for its label
+     * @param x left edge
+     * @param y top edge
+     */
+    public void addVertex(int id, String label, double x, double y, String style) {
+        Vertex vertex = new Vertex(id, label, x, y, style(style));
+        vertex.style = style;
+        vertex.order = ++nextOrder;
+        vertex.slot = take(vertexSlots, freeVertexSlots, vertex);
+        size(vertex);
+        vertices.put(id, vertex);
+        vertexIndex.put(vertex.slot, vertex.x, vertex.y, vertex.width, vertex.height);
+        dirty(vertex.x, vertex.y, vertex.width, vertex.height);
+    }
+
+    /**
+     * remove a vertex and every edge at it
+     */
+    public void removeVertex(int id) {
+        Vertex vertex = vertices.remove(id);
+        if (vertex == null) {
+            return;
+        }
+        for (Edge edge : new ArrayList<>(vertex.edges)) {
+            removeEdge(edge.id);
+        }
+        vertexIndex.remove(vertex.slot);
+        release(vertexSlots, freeVertexSlots, vertex.slot);
+        dirty(vertex.x, vertex.y, vertex.width, vertex.height);
+    }
+
+    public boolean hasVertex(int id) {
+        return vertices.containsKey(id);
+    }
+
+    /**
+     * @return every vertex, in the order they were added
+     */
+    public Set<Integer> vertexIds() {
+        return Collections.unmodifiableSet(vertices.keySet());
+    }
+
+    public String vertexLabel(int id) {
+        return vertices.get(id).label;
+    }
+
+    public String vertexStyle(int id) {
+        return vertices.get(id).style;
+    }
+
+    public double x(int id) {
+        return vertices.get(id).x;
+    }
+
+    public double y(int id) {
+        return vertices.get(id).y;
+    }
+
+    public double width(int id) {
+        return vertices.get(id).width;
+    }
+
+    public double height(int id) {
+        return vertices.get(id).height;
+    }
+
+    public void setVertexStyle(int id, String style) {
+        Vertex vertex = vertices.get(id);
+        if (vertex.style.equals(style)) {
+            return;
+        }
+        boolean resize = vertex.parsed.bold != style(style).bold;
+        vertex.style = style;
+        vertex.parsed = style(style);
+        if (resize) {
+            relabel(vertex, vertex.label);
+        } else {
+            dirty(vertex.x, vertex.y, vertex.width, vertex.height);
+        }
+    }
+
+    /**
+     * a new label, the box grows or shrinks with it and keeps its top left corner
+     */
+    public void setVertexLabel(int id, String label) {
+        Vertex vertex = vertices.get(id);
+        if (!vertex.label.equals(label)) {
+            relabel(vertex, label);
+        }
+    }
+
+    public void moveVertex(int id, double x, double y) {
+        Vertex vertex = vertices.get(id);
+        if (vertex.x == x && vertex.y == y) {
+            return;
+        }
+        dirty(vertex.x, vertex.y, vertex.width, vertex.height);
+        vertex.x = x;
+        vertex.y = y;
+        placeVertex(vertex);
+    }
+
+    /**
+     * @return the topmost vertex whose box holds the point, -1 if there is none
+     */
+    public int vertexAt(double x, double y) {
+        int[] found = {-1};
+        int[] order = {-1};
+        vertexIndex.query(x, y, 0, 0, key -> {
+            // later vertices are painted over earlier ones
+            Vertex vertex = vertexSlots.get((int) key);
+            if (vertex.order > order[0]) {
+                order[0] = vertex.order;
+                found[0] = vertex.id;
+            }
+        });
+        return found[0];
+    }
+
+    /**
+     * @return left, top, right and bottom of all vertices, null if there are none
+     */
+    public Rectangle2D bounds() {
+        Rectangle2D bounds = null;
+        for (Vertex vertex : vertices.values()) {
+            Rectangle2D box = new Rectangle2D.Double(vertex.x, vertex.y, vertex.width, vertex.height);
+            if (bounds == null) {
+                bounds = box;
+            } else {
+                bounds.add(box);
+            }
+        }
+        return bounds;
+    }
+
+    // ---- edges ----
+
+    /**
+     * an arrow from the centre of source to the border of target, both have to exist
+     */
+    public void addEdge(long id, int source, int target, String label, String style) {
+        Edge edge = new Edge(id, vertices.get(source), vertices.get(target), label, style(style));
+        edge.style = style;
+        edge.slot = take(edgeSlots, freeEdgeSlots, edge);
+        edges.put(id, edge);
+        edge.source.edges.add(edge);
+        if (edge.target != edge.source) {
+            edge.target.edges.add(edge);
+        }
+        placeEdge(edge);
+    }
+
+    public void removeEdge(long id) {
+        Edge edge = edges.remove(id);
+        if (edge == null) {
+            return;
+        }
+        edge.source.edges.remove(edge);
+        edge.target.edges.remove(edge);
+        edgeIndex.remove(edge.slot);
+        release(edgeSlots, freeEdgeSlots, edge.slot);
+        dirty(edge.bounds);
+    }
+
+    public boolean hasEdge(long id) {
+        return edges.containsKey(id);
+    }
+
+    public Set<Long> edgeIds() {
+        return Collections.unmodifiableSet(edges.keySet());
+    }
+
+    public String edgeStyle(long id) {
+        return edges.get(id).style;
+    }
+
+    public String edgeLabel(long id) {
+        return edges.get(id).label;
+    }
+
+    public void setEdgeStyle(long id, String style) {
+        Edge edge = edges.get(id);
+        if (!edge.style.equals(style)) {
+            edge.style = style;
+            edge.parsed = style(style);
+            dirty(edge.bounds);
+        }
+    }
+
+    public void setEdgeLabel(long id, String label) {
+        Edge edge = edges.get(id);
+        if (!edge.label.equals(label)) {
+            edge.label = label;
+            placeEdge(edge); // the label may be wider
+        }
+    }
+
+    // ---- what the canvas paints ----
+
+    /**
+     * every vertex overlapping the area, the earliest added first so later ones are painted over them
+     */
+    void visibleVertices(double x, double y, double width, double height, List<Vertex> out) {
+        vertexIndex.query(x, y, width, height, key -> out.add(vertexSlots.get((int) key)));
+        out.sort(Comparator.comparingInt(vertex -> vertex.order));
+    }
+
+    void visibleEdges(double x, double y, double width, double height, List<Edge> out) {
+        edgeIndex.query(x, y, width, height, key -> out.add(edgeSlots.get((int) key)));
+    }
+
+    Vertex vertex(int id) {
+        return vertices.get(id);
+    }
+
+    // ---- inside ----
+
+    private static <T> int take(List<T> slots, Deque<Integer> free, T item) {
+        if (free.isEmpty()) {
+            slots.add(item);
+            return slots.size() - 1;
+        }
+        int slot = free.pop();
+        slots.set(slot, item);
+        return slot;
+    }
+
+    private static <T> void release(List<T> slots, Deque<Integer> free, int slot) {
+        slots.set(slot, null);
+        free.push(slot);
+    }
+
+    private void relabel(Vertex vertex, String label) {
+        dirty(vertex.x, vertex.y, vertex.width, vertex.height);
+        vertex.label = label;
+        size(vertex);
+        placeVertex(vertex);
+    }
+
+    // the box and the edges at it have moved or changed size
+    private void placeVertex(Vertex vertex) {
+        vertexIndex.put(vertex.slot, vertex.x, vertex.y, vertex.width, vertex.height);
+        dirty(vertex.x, vertex.y, vertex.width, vertex.height);
+        for (Edge edge : vertex.edges) {
+            placeEdge(edge);
+        }
+    }
+
+    // the rectangle around the line, with room for the arrow head and the label at its middle
+    private void placeEdge(Edge edge) {
+        if (edge.bounds != null) {
+            dirty(edge.bounds);
+        }
+        Vertex source = edge.source;
+        Vertex target = edge.target;
+        double x1 = source.x + source.width / 2;
+        double y1 = source.y + source.height / 2;
+        double x2 = target.x + target.width / 2;
+        double y2 = target.y + target.height / 2;
+        double margin = EDGE_MARGIN + (edge.label.isEmpty() ? 0 : measure(edge.label, false) / 2);
+        edge.bounds = new Rectangle2D.Double(Math.min(x1, x2) - margin, Math.min(y1, y2) - margin,
+                Math.abs(x2 - x1) + 2 * margin, Math.abs(y2 - y1) + 2 * margin);
+        edgeIndex.put(edge.slot, edge.bounds.getX(), edge.bounds.getY(), edge.bounds.getWidth(), edge.bounds.getHeight());
+        dirty(edge.bounds);
+    }
+
+    private void size(Vertex vertex) {
+        vertex.width = Math.ceil(measure(vertex.label, vertex.parsed.bold) + 2 * PADDING_X);
+        vertex.height = Math.ceil(FONT.getSize2D() * 1.3 + 2 * PADDING_Y);
+    }
+
+    private static double measure(String text, boolean bold) {
+        return (bold ? BOLD_FONT : FONT).getStringBounds(text, MEASURE).getWidth();
+    }
+
+    private void dirty(Rectangle2D area) {
+        dirty(area.getX(), area.getY(), area.getWidth(), area.getHeight());
+    }
+
+    private void dirty(double x, double y, double width, double height) {
+        Rectangle2D area = new Rectangle2D.Double(x, y, width, height);
+        if (updateDepth > 0) {
+            if (dirty == null) {
+                dirty = area;
+            } else {
+                dirty.add(area);
+            }
+            return;
+        }
+        onDirty.dirty(x, y, width, height);
+    }
+
+    Style style(String style) {
+        return styles.computeIfAbsent(style, Style::parse);
+    }
+
+    static class Vertex {
+        final int id;
+        String label;
+        double x;
+        double y;
+        double width;
+        double height;
+        String style;
+        Style parsed;
+        // when it was added, later ones are painted on top
+        int order;
+        int slot;
+        // the edges starting or ending here, to follow the vertex when it moves
+        final List<Edge> edges = new ArrayList<>(4);
+
+        Vertex(int id, String label, double x, double y, Style parsed) {
+            this.id = id;
+            this.label = label;
+            this.x = x;
+            this.y = y;
+            this.parsed = parsed;
+        }
+    }
+
+    static class Edge {
+        final long id;
+        final Vertex source;
+        final Vertex target;
+        String label;
+        String style;
+        Style parsed;
+        Rectangle2D bounds;
+        int slot;
+
+        Edge(long id, Vertex source, Vertex target, String label, Style parsed) {
+            this.id = id;
+            this.source = source;
+            this.target = target;
+            this.label = label;
+            this.parsed = parsed;
+        }
+    }
+
+    /**
+     * the keys of a style string the canvas knows, anything else is ignored
+     */
+    static class Style {
+        Color fill = Color.WHITE;
+        Color stroke = Color.BLACK;
+        Color font = Color.BLACK;
+        float strokeWidth = 1;
+        boolean dashed;
+        boolean rounded;
+        boolean bold;
+        private BasicStroke line;
+
+        BasicStroke stroke() {
+            if (line == null) {
+                line = dashed ? new BasicStroke(strokeWidth, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10,
+                        new float[]{3 * strokeWidth, 3 * strokeWidth}, 0) : new BasicStroke(strokeWidth);
+            }
+            return line;
+        }
+
+        static Style parse(String style) {
+            Style parsed = new Style();
+            for (String entry : style.split(";")) {
+                int equals = entry.indexOf('=');
+                if (equals == -1) {
+                    continue;
+                }
+                String value = entry.substring(equals + 1);
+                switch (entry.substring(0, equals)) {
+                    case "fillColor":
+                        parsed.fill = color(value);
+                        break;
+                    case "strokeColor":
+                        parsed.stroke = color(value);
+                        break;
+                    case "fontColor":
+                        parsed.font = color(value);
+                        break;
+                    case "strokeWidth":
+                        parsed.strokeWidth = Float.parseFloat(value);
+                        break;
+                    case "dashed":
+                        parsed.dashed = value.equals("1");
+                        break;
+                    case "rounded":
+                        parsed.rounded = value.equals("1");
+                        break;
+                    case "fontStyle":
+                        parsed.bold = (Integer.parseInt(value) & 1) != 0;
+                        break;
+                    default:
+                }
+            }
+            return parsed;
+        }
+
+        // #RRGGBB or the few names the styles use
+        private static Color color(String value) {
+            if (value.startsWith("#")) {
+                return Color.decode(value);
+            }
+            switch (value) {
+                case "white":
+                    return Color.WHITE;
+                case "orange":
+                    return Color.ORANGE;
+                case "blue":
+                    return Color.BLUE;
+                default:
+                    return Color.BLACK;
+            }
+        }
+    }
+}
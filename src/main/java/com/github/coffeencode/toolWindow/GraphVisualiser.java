@@ -1,81 +1,323 @@
 package com.github.coffeencode.toolWindow;
 
 import com.intellij.ui.components.JBPanel;
-import com.mxgraph.layout.mxFastOrganicLayout;
-import com.mxgraph.swing.mxGraphComponent;
-import org.jgrapht.ext.JGraphXAdapter;
-import org.jgrapht.graph.DefaultDirectedGraph;
-import org.jgrapht.graph.DefaultEdge;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.*;
 import java.util.List;
-import java.util.Map;
+import java.util.function.LongConsumer;
 
+/**
+ * graph view of the dependencies. Classes are grouped into package clusters (see PackageClusters),
+ * only the units that are visible are vertices of the GraphScene, and the edges between them are
+ * the class dependencies added up, labelled with how many there are. GraphCanvas draws the scene.
+ * Double-clicking a cluster opens it in place.
+ * Classes are coloured by how many classes depend on them (see ImpactAnalysis), on a log scale from light to
+ * dark red, and a package takes the colour of its hottest class.
+ * A diff against a baseline knit.json (see DependencyDiff) can be laid over the dependencies, removed ones are
+ * drawn between the classes that are still there.
+ */
 public class GraphVisualiser {
+    // by heat level, from few to many dependents
+    private static final String[] HEAT_COLORS = {"#F4C7C3", "#EE9A92", "#E5574B", "#C62828", "#7F0000"};
+    private static final String[] HEAT_FONT_COLORS = {"black", "black", "white", "white", "white"};
+    private static final String[] NODE_STYLES = new String[HEAT_COLORS.length];
+    private static final String[] CLUSTER_STYLES = new String[HEAT_COLORS.length];
+    static {
+        for (int level = 0; level < HEAT_COLORS.length; level++) {
+            String colors = "fillColor=" + HEAT_COLORS[level] + ";fontColor=" + HEAT_FONT_COLORS[level];
+            NODE_STYLES[level] = colors + ";strokeColor=black";
+            CLUSTER_STYLES[level] = "rounded=1;" + colors + ";strokeColor=black;fontStyle=1";
+        }
+    }
+    private static final String CYCLIC_EDGE_STYLE = "strokeColor=orange;strokeWidth=2";
+    private static final String REDUNDANT_EDGE_STYLE = "strokeColor=blue;strokeWidth=2";
+    private static final String NORMAL_EDGE_STYLE = "strokeColor=black;strokeWidth=1";
+    // classes and dependencies of the chains a path query found, see highlightPaths
+    private static final String PATH_NODE_STYLE = "fillColor=#008000;fontColor=white;strokeColor=black;strokeWidth=2";
+    private static final String PATH_CLUSTER_STYLE = "rounded=1;fillColor=#004000;fontColor=white;strokeColor=black;strokeWidth=2;fontStyle=1";
+    private static final String PATH_EDGE_STYLE = "strokeColor=#008000;strokeWidth=3";
+    // a searched class, its direct and its transitive neighbours, see highlightNeighbourhood
+    private static final String[] NEIGHBOUR_NODE_STYLES = {
+            "fillColor=#4A148C;fontColor=white;strokeColor=black;strokeWidth=3",
+            "fillColor=#8E24AA;fontColor=white;strokeColor=black;strokeWidth=2",
+            "fillColor=#E1BEE7;fontColor=black;strokeColor=#4A148C;strokeWidth=2"};
+    private static final String[] NEIGHBOUR_CLUSTER_STYLES = {
+            "rounded=1;fillColor=#4A148C;fontColor=white;strokeColor=black;strokeWidth=3;fontStyle=1",
+            "rounded=1;fillColor=#8E24AA;fontColor=white;strokeColor=black;strokeWidth=2;fontStyle=1",
+            "rounded=1;fillColor=#E1BEE7;fontColor=black;strokeColor=#4A148C;strokeWidth=2;fontStyle=1"};
+    private static final String NEIGHBOUR_EDGE_STYLE = "strokeColor=#8E24AA;strokeWidth=3";
+    // dependencies that changed since a baseline, see showDiff
+    private static final String DIFF_WORSE_EDGE_STYLE = "strokeColor=#D50000;strokeWidth=3";
+    private static final String DIFF_ADDED_EDGE_STYLE = "strokeColor=#00B8D4;strokeWidth=3";
+    private static final String DIFF_REMOVED_EDGE_STYLE = "strokeColor=#9E9E9E;strokeWidth=2;dashed=1";
+    private static final String DIFF_BETTER_EDGE_STYLE = "strokeColor=#64DD17;strokeWidth=2;dashed=1";
+    private static final int DIFF_WORSE = 1;
+    private static final int DIFF_ADDED = 2;
+    private static final int DIFF_REMOVED = 4;
+    private static final int DIFF_BETTER = 8;
+    private static final int SEARCHED = 0;
+    private static final int DIRECT = 1;
+    private static final int TRANSITIVE = 2;
+    // the first view opens packages until about this many units are shown
+    private static final int INITIAL_VISIBLE_UNITS = 40;
+    private static final int CYCLIC = AnalysisResult.CYCLIC;
+    private static final int REDUNDANT = AnalysisResult.REDUNDANT;
 
-    public static JBPanel visualise(
-        DefaultDirectedGraph<String, DefaultEdge> graph,
-        Map<String, List<String>> cyclicDependencies,
-        Map<String, List<String>> redundantDependencies) {
+    // the visible units by unit, and the aggregated edges by packed source and target unit
+    private final GraphScene scene = new GraphScene();
+    private final PackageClusters clusters = new PackageClusters();
+    // class id of PackageClusters -> heat level, dependents, 1 if that count is exact, dominated classes
+    private final Map<Integer, int[]> classImpact = new HashMap<>();
+    // the analysis shown, the CYCLIC / REDUNDANT flags of a dependency are read from it by edge id,
+    // and the class id of PackageClusters of every node of its graph
+    private AnalysisResult result;
+    private int[] classOf;
+    // highlighted class dependencies (packed class ids) and classes, kept while packages open and close
+    private final Set<Long> pathEdges = new HashSet<>();
+    private final Set<Integer> pathClasses = new HashSet<>();
+    // the searched class and its neighbours (class id -> SEARCHED, DIRECT or TRANSITIVE), and the dependencies
+    // between the class and its direct neighbours (packed class ids)
+    private final Map<Integer, Integer> neighbourClasses = new HashMap<>();
+    private final Set<Long> neighbourEdges = new HashSet<>();
+    // the diff shown, and its dependencies between classes that exist now (packed class ids -> DIFF_ bits)
+    private DependencyDiff diff;
+    private final Map<Long, Integer> diffEdges = new HashMap<>();
+    // what the styles of the visible units were worked out from, kept so a highlight can restyle only the ones
+    // it changes: units on a path, heat and neighbourhood level by unit, edge counts by packed units
+    // (count, cyclic, redundant, on a path, in the neighbourhood, DIFF_ bits)
+    private Set<Integer> pathUnits = new HashSet<>();
+    private Map<Integer, Integer> unitHeat = new HashMap<>();
+    private Map<Integer, Integer> neighbourUnits = new HashMap<>();
+    private Map<Long, int[]> edgeCounts = new HashMap<>();
+    // positions of every unit placed so far, also of those hidden now, and where they are saved to
+    private final NodePositions positions;
+    private Runnable onPositionsChanged = () -> {
+    };
+    // told how long the first paint of the graph took, see PipelineStats
+    private LongConsumer onFirstPaint = nanos -> {
+    };
+    private GraphCanvas canvas;
+    private JBPanel panel;
 
-        JGraphXAdapter<String, DefaultEdge> graphAdapter = new JGraphXAdapter<>(graph);
+    public static JBPanel visualise(AnalysisResult result) {
+        return new GraphVisualiser(result, new ImpactAnalysis(result.graph()), AnalysisProgress.NONE).getPanel();
+    }
+
+    /**
+     * build the styled scene of the first visible level and lay it out. No Swing component is created here,
+     * so this can run on a background thread; getPanel() must then be called on the UI thread
+     * @param progress checked once per layout iteration, the layout stops early when the time budget is used up
+     */
+    public GraphVisualiser(AnalysisResult result, ImpactAnalysis impact, AnalysisProgress progress) {
+        this(result, impact, new NodePositions(), progress);
+    }
 
+    /**
+     * @param impact of the same graph, colours the classes
+     * @param saved positions of an earlier session: units found in there keep their place and are not laid
+     *              out again, only the others are placed around them. Empty to lay out everything
+     */
+    public GraphVisualiser(AnalysisResult result, ImpactAnalysis impact, NodePositions saved,
+                           AnalysisProgress progress) {
+        positions = saved;
 
-        // Style nodes (red nodes)
-        for (String vertex : graph.vertexSet()) {
-            Object cell = graphAdapter.getVertexToCellMap().get(vertex);
-            graphAdapter.getModel().setStyle(cell, "fillColor=red;fontColor=white;strokeColor=black");
+        // every class gets its id of PackageClusters, the flags stay in result
+        this.result = result;
+        DependencyGraph graph = result.graph();
+        classOf = new int[graph.nodeCount()];
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            classOf[node] = clusters.addClass(graph.name(node));
+        }
+        rateImpact(impact);
+        if (saved.expandedPackages().isEmpty()) {
+            clusters.expandInitially(INITIAL_VISIBLE_UNITS);
+        } else {
+            for (String packageName : saved.expandedPackages()) {
+                clusters.expand(packageName);
+            }
         }
 
-        // Style edges
-        for (DefaultEdge e : graph.edgeSet()) {
-            String source = graph.getEdgeSource(e);
-            String target = graph.getEdgeTarget(e);
-            Object cell = graphAdapter.getEdgeToCellMap().get(e);
+        Set<Integer> unanchored = new HashSet<>();
+        List<Integer> unplaced = refreshVisible(unanchored);
+        progress.phase("Laying out the graph", 0.8);
+        if (unplaced.size() == scene.vertexIds().size()) {
+            layout(progress);
+        } else if (!unplaced.isEmpty()) {
+            layoutIncrementally(unplaced, unanchored, progress);
+        }
+        rememberPositions();
+    }
 
-            if (cyclicDependencies.containsKey(source) && cyclicDependencies.get(source).contains(target)) {
-                graphAdapter.getModel().setStyle(cell, "strokeColor=orange;strokeWidth=2");
-            } else if (redundantDependencies.containsKey(source) && redundantDependencies.get(source).contains(target)) {
-                graphAdapter.getModel().setStyle(cell, "strokeColor=blue;strokeWidth=2");
-            } else {
-                graphAdapter.getModel().setStyle(cell, "strokeColor=black;strokeWidth=1");
-            }
+    /**
+     * @return positions of every unit placed so far, updated whenever the view changes
+     */
+    public NodePositions getPositions() {
+        return positions;
+    }
+
+    /**
+     * @param onPositionsChanged runs on the UI thread after units were expanded, added or moved
+     */
+    public void setOnPositionsChanged(Runnable onPositionsChanged) {
+        this.onPositionsChanged = onPositionsChanged;
+    }
+
+    /**
+     * @param onFirstPaint runs on the UI thread once the graph was painted for the first time,
+     *                     with how long that paint took in nanoseconds. Set before getPanel()
+     */
+    public void setOnFirstPaint(LongConsumer onFirstPaint) {
+        this.onFirstPaint = onFirstPaint;
+    }
+
+    private void rememberPositions() {
+        for (int unit : scene.vertexIds()) {
+            positions.put(clusters.key(unit), scene.x(unit), scene.y(unit));
+        }
+        // units out of view keep their place, only those that left the graph are dropped
+        positions.retain(clusters::hasKey);
+        positions.setExpandedPackages(clusters.expandedPackages());
+    }
+
+    /**
+     * lay out the cycles first and then the DAG between them, see CondensedLayout.
+     * a plain force layout over every vertex is O(n^2) per iteration and too slow beyond a few hundred classes
+     */
+    private void layout(AnalysisProgress progress) {
+        int[] units = visibleUnits();
+        CondensedLayout layout = newLayout(units, progress);
+        layout.execute();
+        moveUnits(units, layout);
+    }
+
+    /**
+     * place only the new units, everything else is pinned, see CondensedLayout.executeIncremental
+     * @param unanchored new units that start next to their neighbours instead of where refreshVisible put them
+     */
+    private void layoutIncrementally(List<Integer> unplaced, Set<Integer> unanchored, AnalysisProgress progress) {
+        int[] units = visibleUnits();
+        Set<Integer> loose = new HashSet<>(unplaced);
+        double[] startX = new double[units.length];
+        double[] startY = new double[units.length];
+        boolean[] pinned = new boolean[units.length];
+        for (int node = 0; node < units.length; node++) {
+            int unit = units[node];
+            pinned[node] = !loose.contains(unit);
+            startX[node] = unanchored.contains(unit) ? Double.NaN : scene.x(unit);
+            startY[node] = unanchored.contains(unit) ? Double.NaN : scene.y(unit);
+        }
+        CondensedLayout layout = newLayout(units, progress);
+        layout.executeIncremental(startX, startY, pinned);
+        moveUnits(units, layout);
+    }
+
+    // the unit of every node of the layout graph, in the order the scene has them
+    private int[] visibleUnits() {
+        int[] units = new int[scene.vertexIds().size()];
+        int node = 0;
+        for (int unit : scene.vertexIds()) {
+            units[node++] = unit;
+        }
+        return units;
+    }
 
-            graphAdapter.getModel().setValue(cell, ""); // remove the labels on edges to prevent cluttering
+    /**
+     * visible units and the edges between them, node n stands for units[n].
+     * The nodes have no names, the layout only needs the edges
+     */
+    private DependencyGraph visibleGraph(int[] units) {
+        int largest = -1;
+        for (int unit : units) {
+            largest = Math.max(largest, unit);
+        }
+        int[] nodeOf = new int[largest + 1];
+        for (int node = 0; node < units.length; node++) {
+            nodeOf[units[node]] = node;
         }
+        DependencyGraph.Builder builder = new DependencyGraph.Builder();
+        for (long edge : scene.edgeIds()) {
+            builder.addEdge(nodeOf[(int) (edge >>> 32)], nodeOf[(int) edge]);
+        }
+        return DependencyGraph.fromEdges(builder.names(), units.length, builder.edges());
+    }
 
-        // apply an organic layout as dependencies map is not usually a hierarchical structure
-        mxFastOrganicLayout layout = new mxFastOrganicLayout(graphAdapter);
-        layout.setForceConstant(150);
-        layout.setMinDistanceLimit(50);
-        layout.setMaxIterations(1000);
-        layout.execute(graphAdapter.getDefaultParent());
+    private CondensedLayout newLayout(int[] units, AnalysisProgress progress) {
+        double[] width = new double[units.length];
+        double[] height = new double[units.length];
+        for (int node = 0; node < units.length; node++) {
+            width[node] = scene.width(units[node]);
+            height[node] = scene.height(units[node]);
+        }
+        return new CondensedLayout(visibleGraph(units), width, height, progress);
+    }
+
+    private void moveUnits(int[] units, CondensedLayout layout) {
+        scene.beginUpdate();
+        try {
+            for (int node = 0; node < units.length; node++) {
+                scene.moveVertex(units[node], layout.x(node), layout.y(node));
+            }
+        } finally {
+            scene.endUpdate();
+        }
+    }
+
+    public JBPanel getPanel() {
+        if (panel == null) {
+            panel = createPanel();
+        }
+        return panel;
+    }
 
-        // create graphComponent
-        mxGraphComponent graphComponent = new mxGraphComponent(graphAdapter);
-        graphComponent.setAutoscrolls(true);
-        graphComponent.setDragEnabled(true);
-        graphComponent.setAutoExtend(true);
-        graphComponent.setConnectable(false);
-        graphComponent.setPreferredSize(new Dimension(1200, 800));
+    private JBPanel createPanel() {
+        canvas = new GraphCanvas(scene);
+        canvas.setToolTips(this::toolTip); // dependents of a class on hover
+        canvas.setOnDoubleClick(unit -> {
+            if (PackageClusters.isPackage(unit)) {
+                expand(PackageClusters.index(unit));
+            }
+        });
+        // units dragged by hand are remembered as well
+        canvas.setOnVerticesMoved(() -> {
+            rememberPositions();
+            onPositionsChanged.run();
+        });
+        canvas.setOnFirstPaint(onFirstPaint);
 
         // Create legend panel
         JBPanel legend = new JBPanel<>();
         legend.setLayout(new BoxLayout(legend, BoxLayout.Y_AXIS)); // vertical box layout
         legend.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10)); // padding of 10 for each side
-        legend.add(createLegendItem(Color.RED, "Node"));
+        legend.add(createLegendItem(Color.decode(HEAT_COLORS[0]), "Class, few dependents"));
         legend.add(Box.createVerticalStrut(5)); // add vertical spacing of 5 pixel between two lines
+        legend.add(createLegendItem(Color.decode(HEAT_COLORS[HEAT_COLORS.length - 1]), "Class, many dependents"));
+        legend.add(Box.createVerticalStrut(5));
+        legend.add(createLegendItem(Color.decode(HEAT_COLORS[2]), "Package (double-click)"));
+        legend.add(Box.createVerticalStrut(5));
         legend.add(createLegendItem(Color.ORANGE, "Cyclic Dependency"));
         legend.add(Box.createVerticalStrut(5));
         legend.add(createLegendItem(Color.BLUE, "Redundant Dependency"));
         legend.add(Box.createVerticalStrut(5));
         legend.add(createLegendItem(Color.BLACK, "Normal Dependency"));
+        legend.add(Box.createVerticalStrut(5));
+        legend.add(createLegendItem(new Color(0x008000), "Dependency Path"));
+        legend.add(Box.createVerticalStrut(5));
+        legend.add(createLegendItem(new Color(0x8E24AA), "Found Class, Neighbours"));
+        legend.add(Box.createVerticalStrut(5));
+        legend.add(createLegendItem(new Color(0xD50000), "Newly Cyclic / Redundant"));
+        legend.add(Box.createVerticalStrut(5));
+        legend.add(createLegendItem(new Color(0x00B8D4), "Added since Baseline"));
+        legend.add(Box.createVerticalStrut(5));
+        legend.add(createLegendItem(new Color(0x9E9E9E), "Removed since Baseline"));
+        legend.add(Box.createVerticalStrut(5));
+        legend.add(createLegendItem(new Color(0x64DD17), "No Longer Cyclic / Redundant"));
         legend.setPreferredSize(new Dimension(200, legend.getPreferredSize().height));
 
         // Main panel with layout: graph left, legend right
         JBPanel mainPanel = new JBPanel<>(new BorderLayout());
-        mainPanel.add(graphComponent, BorderLayout.CENTER);
+        mainPanel.add(canvas, BorderLayout.CENTER);
         // To make legend not stretched and start from the top
         JBPanel legendContainer = new JBPanel<>(new BorderLayout()); // create a container, container will be the one that stretched
         legendContainer.add(legend, BorderLayout.PAGE_START); // put the legend from the top of the container, legend will not be stretched
@@ -84,6 +326,502 @@ public class GraphVisualiser {
         return mainPanel;
     }
 
+    private String toolTip(int unit) {
+        int[] impact = PackageClusters.isPackage(unit) ? null : classImpact.get(PackageClusters.index(unit));
+        if (impact == null) {
+            return clusters.label(unit);
+        }
+        return clusters.label(unit) + ": " + (impact[2] == 0 ? "~" : "") + impact[1] + " classes depend on it, "
+                + impact[3] + " are only needed through it";
+    }
+
+    /**
+     * @return the classes selected in the view, in the order they were selected. Selected packages are left out
+     */
+    public List<String> getSelectedClasses() {
+        List<String> selected = new ArrayList<>();
+        if (canvas == null) {
+            return selected;
+        }
+        for (int unit : canvas.getSelection()) {
+            if (!PackageClusters.isPackage(unit)) {
+                selected.add(clusters.className(PackageClusters.index(unit)));
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * highlight chains of dependencies, e.g. found by DependencyPaths, replacing the last highlight.
+     * The packages around their classes are opened so every step of a chain can be seen.
+     * must be called on the UI thread
+     * @param paths classes of every chain, in order. Empty to remove the highlight
+     */
+    public void highlightPaths(List<List<String>> paths) {
+        pathEdges.clear();
+        pathClasses.clear();
+        for (List<String> path : paths) {
+            int previous = -1;
+            for (String className : path) {
+                int id = clusters.classId(className);
+                if (id == -1) {
+                    break; // gone with an update since the query
+                }
+                pathClasses.add(id);
+                for (int p = clusters.parentPackage(PackageClusters.classUnit(id)); p != -1;
+                     p = clusters.parentPackage(PackageClusters.packageUnit(p))) {
+                    clusters.expand(p);
+                }
+                if (previous != -1) {
+                    pathEdges.add(pack(previous, id));
+                }
+                previous = id;
+            }
+        }
+        placeNewUnits();
+    }
+
+    /**
+     * highlight a class found by search and the classes around it: the class itself, what it depends on and what
+     * depends on it directly, and further out the transitive ones. The packages of the class and its direct
+     * neighbours are opened, transitive ones show through their cluster. When nothing had to be opened only the
+     * units and edges whose highlight changes are restyled. must be called on the UI thread
+     * @param neighbourhood null to clear the highlight
+     */
+    public void highlightNeighbourhood(DependencyPaths.Neighbourhood neighbourhood) {
+        // the units and bundles highlighted until now, they may have to lose it
+        Set<Integer> affectedUnits = new HashSet<>(neighbourUnits.keySet());
+        Set<Long> affectedBundles = new HashSet<>();
+        for (long edge : neighbourEdges) {
+            affectedBundles.add(unitBundle(edge));
+        }
+        neighbourClasses.clear();
+        neighbourEdges.clear();
+
+        boolean opened = false;
+        // a class gone with an update since the search only clears the highlight
+        int searched = neighbourhood != null && clusters.hasClass(neighbourhood.className)
+                ? clusters.classId(neighbourhood.className) : -1;
+        if (searched != -1) {
+            addNeighbours(neighbourhood.dependencies, neighbourhood.directDependencies, searched, true);
+            addNeighbours(neighbourhood.dependents, neighbourhood.directDependents, searched, false);
+            neighbourClasses.put(searched, SEARCHED);
+            for (Map.Entry<Integer, Integer> entry : neighbourClasses.entrySet()) {
+                if (entry.getValue() == TRANSITIVE) {
+                    continue;
+                }
+                for (int p = clusters.parentPackage(PackageClusters.classUnit(entry.getKey())); p != -1;
+                     p = clusters.parentPackage(PackageClusters.packageUnit(p))) {
+                    if (!clusters.isExpanded(p)) {
+                        clusters.expand(p);
+                        opened = true;
+                    }
+                }
+            }
+        }
+        if (opened) {
+            placeNewUnits(); // new units, everything is counted and styled again
+            return;
+        }
+
+        neighbourUnits = neighbourUnits();
+        affectedUnits.addAll(neighbourUnits.keySet());
+        for (long bundle : affectedBundles) {
+            int[] counts = edgeCounts.get(bundle);
+            if (counts != null) {
+                counts[4] = 0;
+            }
+        }
+        for (long edge : neighbourEdges) {
+            long bundle = unitBundle(edge);
+            int[] counts = edgeCounts.get(bundle);
+            if (counts != null) {
+                counts[4]++;
+                affectedBundles.add(bundle);
+            }
+        }
+        scene.beginUpdate();
+        try {
+            for (int unit : affectedUnits) {
+                if (scene.hasVertex(unit)) {
+                    scene.setVertexStyle(unit, nodeStyle(unit));
+                }
+            }
+            for (long bundle : affectedBundles) {
+                if (scene.hasEdge(bundle)) {
+                    scene.setEdgeStyle(bundle, bundleStyle(edgeCounts.get(bundle)));
+                }
+            }
+        } finally {
+            scene.endUpdate();
+        }
+    }
+
+    // the neighbours of one direction, the first direct ones are DIRECT and their dependency to or from searched
+    // is highlighted as well
+    private void addNeighbours(List<String> classNames, int direct, int searched, boolean dependencies) {
+        for (int i = 0; i < classNames.size(); i++) {
+            int id = clusters.classId(classNames.get(i));
+            if (id == -1 || id == searched) {
+                continue;
+            }
+            neighbourClasses.merge(id, i < direct ? DIRECT : TRANSITIVE, Math::min);
+            if (i < direct) {
+                neighbourEdges.add(dependencies ? pack(searched, id) : pack(id, searched));
+            }
+        }
+    }
+
+    /**
+     * lay the changes since a baseline over the dependencies, replacing the last diff: added ones, removed ones
+     * (between classes that still exist), and ones that became or stopped being cyclic or redundant.
+     * must be called on the UI thread
+     * @param diff null to remove the overlay
+     */
+    public void showDiff(DependencyDiff diff) {
+        this.diff = diff;
+        indexDiff();
+        placeNewUnits(); // removed dependencies may need edges of their own
+    }
+
+    // diffEdges from diff, again whenever classes come and go
+    private void indexDiff() {
+        diffEdges.clear();
+        if (diff == null) {
+            return;
+        }
+        for (DependencyDiff.EdgeDiff edge : diff.edges()) {
+            int source = clusters.classId(edge.source);
+            int target = clusters.classId(edge.target);
+            if (source == -1 || target == -1) {
+                continue; // a class that was removed
+            }
+            int kind = 0;
+            if (edge.appeared(CYCLIC) || edge.appeared(REDUNDANT)) {
+                kind |= DIFF_WORSE;
+            }
+            if (edge.isAdded()) {
+                kind |= DIFF_ADDED;
+            } else if (edge.isRemoved()) {
+                kind |= DIFF_REMOVED;
+            }
+            if (edge.disappeared(CYCLIC) || edge.disappeared(REDUNDANT)) {
+                kind |= DIFF_BETTER;
+            }
+            diffEdges.put(pack(source, target), kind);
+        }
+    }
+
+    // packed class ids of a dependency -> packed units of the edge it is counted in
+    private long unitBundle(long classEdge) {
+        return pack(clusters.unitOf((int) (classEdge >>> 32)), clusters.unitOf((int) classEdge));
+    }
+
+    /**
+     * open a package cluster where it is, its content is placed around the cluster's position.
+     * must be called on the UI thread
+     */
+    public void expand(int packageId) {
+        if (clusters.isExpanded(packageId)) {
+            return;
+        }
+        clusters.expand(packageId);
+        placeNewUnits();
+    }
+
+    /**
+     * bring the view up to date after knit.json changed, instead of building and laying out a new graph.
+     * must be called on the UI thread
+     * @param update changes computed by IncrementalAnalysis
+     * @param result flags of the graph after the update
+     * @param impact of the same graph, every class may have got more or fewer dependents
+     */
+    public void applyUpdate(IncrementalAnalysis.Update update, AnalysisResult result, ImpactAnalysis impact) {
+        for (String node : update.removedNodes) {
+            clusters.removeClass(node);
+        }
+        for (IncrementalAnalysis.EdgeChange change : update.addedEdges) {
+            clusters.addClass(change.source);
+            clusters.addClass(change.target);
+        }
+        // removed classes keep their node, without any dependency, and their id
+        this.result = result;
+        DependencyGraph graph = result.graph();
+        classOf = new int[graph.nodeCount()];
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            classOf[node] = clusters.classId(graph.name(node));
+        }
+        rateImpact(impact);
+        indexDiff();
+        placeNewUnits();
+    }
+
+    /**
+     * heat level of every class: dependents on a log scale, so a class a handful of others use already shows
+     * and the few everything depends on stand out. Classes must have been added to clusters before
+     */
+    private void rateImpact(ImpactAnalysis impact) {
+        classImpact.clear();
+        DependencyGraph graph = impact.graph();
+        double max = Math.log1p(impact.maxDependentCount());
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            int dependents = impact.dependentCount(node);
+            int level = max == 0 ? 0 : (int) Math.round((HEAT_COLORS.length - 1) * Math.log1p(dependents) / max);
+            classImpact.put(clusters.classId(graph.name(node)),
+                    new int[]{level, dependents, impact.isExact(node) ? 1 : 0, impact.dominatedCount(node)});
+        }
+    }
+
+    // after the visible units changed on the UI thread: small enough to place right away
+    private void placeNewUnits() {
+        Set<Integer> unanchored = new HashSet<>();
+        List<Integer> unplaced = refreshVisible(unanchored);
+        if (!unplaced.isEmpty()) {
+            layoutIncrementally(unplaced, unanchored, AnalysisProgress.NONE);
+        }
+        rememberPositions();
+        onPositionsChanged.run();
+    }
+
+    /**
+     * make the scene match what PackageClusters shows: units that disappeared are removed,
+     * new units are put next to the cluster they came out of (or a neighbour), edges are re-counted.
+     * everything that stays keeps its position, and new units that were placed in an earlier session go back there
+     * @param unanchored receives the new units that had neither a cluster nor a neighbour to be placed next to
+     * @return new units without a saved position, they still need a layout
+     */
+    private List<Integer> refreshVisible(Set<Integer> unanchored) {
+        List<Integer> unplaced = new ArrayList<>();
+        Set<Integer> units = new HashSet<>(clusters.visibleUnits());
+
+        // add up the class dependencies between visible units: count, cyclic, redundant, on a path, in the
+        // neighbourhood of the searched class, changed since the baseline.
+        // the unit of every class is looked up once, then the dependencies are read straight from the graph
+        DependencyGraph graph = result.graph();
+        int[] unitOf = new int[graph.nodeCount()];
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            unitOf[node] = clusters.unitOf(classOf[node]);
+        }
+        Map<Long, int[]> edges = new HashMap<>();
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            int source = unitOf[node];
+            int[] counts = null;
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                int target = unitOf[graph.target(edge)];
+                if (source == target) {
+                    continue; // inside one cluster
+                }
+                // a class's dependencies often all go into the same collapsed package
+                if (counts == null || target != unitOf[graph.target(edge - 1)]) {
+                    counts = edges.computeIfAbsent(pack(source, target), key -> new int[6]);
+                }
+                counts[0]++;
+                int flags = result.flags(edge);
+                if ((flags & CYCLIC) != 0) {
+                    counts[1]++;
+                }
+                if ((flags & REDUNDANT) != 0) {
+                    counts[2]++;
+                }
+            }
+        }
+        // highlighted dependencies are few, they are looked up one by one
+        countHighlighted(pathEdges, unitOf, edges, 3);
+        countHighlighted(neighbourEdges, unitOf, edges, 4);
+        // changed dependencies, the removed ones are not counted but may be all a bundle has
+        for (Map.Entry<Long, Integer> entry : diffEdges.entrySet()) {
+            int source = clusters.unitOf((int) (entry.getKey() >>> 32));
+            int target = clusters.unitOf((int) (long) entry.getKey());
+            if (source != target) {
+                edges.computeIfAbsent(pack(source, target), key -> new int[6])[5] |= entry.getValue();
+            }
+        }
+        edgeCounts = edges;
+        pathUnits = new HashSet<>();
+        for (int classId : pathClasses) {
+            pathUnits.add(clusters.unitOf(classId));
+        }
+        // a cluster is as hot as its hottest class
+        unitHeat = new HashMap<>();
+        for (Map.Entry<Integer, int[]> entry : classImpact.entrySet()) {
+            unitHeat.merge(clusters.unitOf(entry.getKey()), entry.getValue()[0], Math::max);
+        }
+        neighbourUnits = neighbourUnits();
+
+        scene.beginUpdate();
+        try {
+            // where new units go, worked out before the units they came out of are gone
+            Map<Integer, Integer> connected = new HashMap<>();
+            for (long edge : edges.keySet()) {
+                int source = (int) (edge >>> 32);
+                int target = (int) edge;
+                if (scene.hasVertex(target)) {
+                    connected.putIfAbsent(source, target);
+                }
+                if (scene.hasVertex(source)) {
+                    connected.putIfAbsent(target, source);
+                }
+            }
+            Map<Integer, List<Integer>> newUnitsByAnchor = new LinkedHashMap<>();
+            for (int unit : units) {
+                if (!scene.hasVertex(unit)) {
+                    newUnitsByAnchor.computeIfAbsent(anchor(unit, connected), key -> new ArrayList<>()).add(unit);
+                }
+            }
+            Map<Integer, double[]> anchorPositions = new HashMap<>();
+            for (int anchor : newUnitsByAnchor.keySet()) {
+                if (anchor != -1) {
+                    anchorPositions.put(anchor, new double[]{scene.x(anchor), scene.y(anchor)});
+                }
+            }
+
+            for (long edge : new ArrayList<>(scene.edgeIds())) {
+                if (!edges.containsKey(edge)) {
+                    scene.removeEdge(edge);
+                }
+            }
+            for (int unit : new ArrayList<>(scene.vertexIds())) {
+                if (!units.contains(unit)) {
+                    scene.removeVertex(unit);
+                }
+            }
+
+            for (Map.Entry<Integer, List<Integer>> group : newUnitsByAnchor.entrySet()) {
+                double[] anchor = anchorPositions.get(group.getKey());
+                double x = anchor == null ? 0 : anchor[0];
+                double y = anchor == null ? 0 : anchor[1];
+                // a square grid where the anchor was
+                int columns = (int) Math.ceil(Math.sqrt(group.getValue().size()));
+                int i = 0;
+                for (int unit : group.getValue()) {
+                    double[] saved = positions.get(clusters.key(unit));
+                    scene.addVertex(unit, clusters.label(unit),
+                            saved != null ? saved[0] : x + (i % columns) * 220,
+                            saved != null ? saved[1] : y + (i / columns) * 60,
+                            nodeStyle(unit));
+                    if (saved == null) {
+                        unplaced.add(unit);
+                        if (anchor == null) {
+                            unanchored.add(unit);
+                        } else {
+                            i++;
+                        }
+                    }
+                }
+            }
+            for (int unit : scene.vertexIds()) {
+                if (PackageClusters.isPackage(unit)) {
+                    scene.setVertexLabel(unit, clusters.label(unit)); // class count may have changed
+                }
+                scene.setVertexStyle(unit, nodeStyle(unit));
+            }
+
+            for (Map.Entry<Long, int[]> entry : edges.entrySet()) {
+                int[] counts = entry.getValue();
+                String style = bundleStyle(counts);
+                String label = counts[0] > 1 ? Integer.toString(counts[0]) : "";
+                if (!scene.hasEdge(entry.getKey())) {
+                    scene.addEdge(entry.getKey(), (int) (entry.getKey() >>> 32), (int) (long) entry.getKey(),
+                            label, style);
+                } else {
+                    scene.setEdgeStyle(entry.getKey(), style);
+                    scene.setEdgeLabel(entry.getKey(), label);
+                }
+            }
+        } finally {
+            scene.endUpdate();
+        }
+        return unplaced;
+    }
+
+    /**
+     * count dependencies of the graph that are in classEdges into edge counts, those that are gone are skipped
+     * @param classEdges packed class ids of PackageClusters
+     * @param unitOf visible unit of every node
+     * @param slot index in the counts of a bundle
+     */
+    private void countHighlighted(Set<Long> classEdges, int[] unitOf, Map<Long, int[]> edges, int slot) {
+        DependencyGraph graph = result.graph();
+        for (long classEdge : classEdges) {
+            int source = graph.id(clusters.className((int) (classEdge >>> 32)));
+            int target = graph.id(clusters.className((int) classEdge));
+            if (source == -1 || target == -1 || unitOf[source] == unitOf[target] || !graph.hasEdge(source, target)) {
+                continue;
+            }
+            edges.get(pack(unitOf[source], unitOf[target]))[slot]++;
+        }
+    }
+
+    /**
+     * the unit a new unit is placed next to: the cluster it was part of, otherwise a neighbour
+     * @param connected a unit in the scene connected to the unit, by unit
+     * @return -1 if there is none, the unit then goes to the top left corner
+     */
+    private int anchor(int unit, Map<Integer, Integer> connected) {
+        for (int p = clusters.parentPackage(unit); p != -1; p = clusters.parentPackage(PackageClusters.packageUnit(p))) {
+            if (scene.hasVertex(PackageClusters.packageUnit(p))) {
+                return PackageClusters.packageUnit(p);
+            }
+        }
+        return connected.getOrDefault(unit, -1);
+    }
+
+    private static long pack(int source, int target) {
+        return ((long) source << 32) | target;
+    }
+
+    // a highlighted chain goes over the searched neighbourhood, and that over the heat map
+    private String nodeStyle(int unit) {
+        boolean isPackage = PackageClusters.isPackage(unit);
+        if (pathUnits.contains(unit)) {
+            return isPackage ? PATH_CLUSTER_STYLE : PATH_NODE_STYLE;
+        }
+        Integer neighbour = neighbourUnits.get(unit);
+        if (neighbour != null) {
+            return isPackage ? NEIGHBOUR_CLUSTER_STYLES[neighbour] : NEIGHBOUR_NODE_STYLES[neighbour];
+        }
+        int level = unitHeat.getOrDefault(unit, 0);
+        return isPackage ? CLUSTER_STYLES[level] : NODE_STYLES[level];
+    }
+
+    // a bundle is cyclic if any dependency in it is, redundant only if all of them are,
+    // and on a highlighted chain, next to the searched class or changed since the baseline if any is.
+    // a change for the worse shows over an addition, that over a removal, that over a change for the better
+    private static String bundleStyle(int[] counts) {
+        if (counts[3] > 0) {
+            return PATH_EDGE_STYLE;
+        } else if (counts[4] > 0) {
+            return NEIGHBOUR_EDGE_STYLE;
+        } else if ((counts[5] & DIFF_WORSE) != 0) {
+            return DIFF_WORSE_EDGE_STYLE;
+        } else if ((counts[5] & DIFF_ADDED) != 0) {
+            return DIFF_ADDED_EDGE_STYLE;
+        } else if ((counts[5] & DIFF_REMOVED) != 0) {
+            return DIFF_REMOVED_EDGE_STYLE;
+        } else if ((counts[5] & DIFF_BETTER) != 0) {
+            return DIFF_BETTER_EDGE_STYLE;
+        }
+        return edgeStyle(counts[1] > 0, counts[2] == counts[0]);
+    }
+
+    // a unit is as close to the searched class as the closest class in it
+    private Map<Integer, Integer> neighbourUnits() {
+        Map<Integer, Integer> units = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : neighbourClasses.entrySet()) {
+            units.merge(clusters.unitOf(entry.getKey()), entry.getValue(), Math::min);
+        }
+        return units;
+    }
+
+    private static String edgeStyle(boolean cyclic, boolean redundant) {
+        if (cyclic) {
+            return CYCLIC_EDGE_STYLE;
+        } else if (redundant) {
+            return REDUNDANT_EDGE_STYLE;
+        }
+        return NORMAL_EDGE_STYLE;
+    }
+
     // Helper function to create a color box + label
     private static JBPanel createLegendItem(Color color, String text) {
         JBPanel panel = new JBPanel<>(new FlowLayout(FlowLayout.LEFT));
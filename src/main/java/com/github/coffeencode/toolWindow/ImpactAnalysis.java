@@ -0,0 +1,344 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.Arrays;
+
+/**
+ * how much of the project hangs on every class, two ways:
+ * the blast radius, how many classes depend on it directly or transitively (what a change to it can break), and
+ * the dominator tree of the injection graph, the classes that are only needed through it (what goes away with it).
+ *
+ * Blast radii are counted over the condensation, dependents first, with a bottom-k sketch per component
+ * (the K smallest of a random rank every class gets): a component's dependents are the union of its
+ * predecessors' dependents and the predecessors themselves, and the union of two sketches is merging them.
+ * Fewer than K dependents are counted exactly, more are estimated from the K-th smallest rank
+ * (relative error about 1 / sqrt(K - 2)). O(K * (V + E)) in time, sketches are dropped once every
+ * successor has used them.
+ * Dominators are found with Lengauer-Tarjan (the simple version, path compression without balancing,
+ * O(E log V)) from a virtual root above every class nobody depends on. A cycle nobody outside depends on
+ * gets its smallest class tied to the root as well.
+ * Immutable once built, may be read from any thread.
+ */
+public class ImpactAnalysis {
+    // sketch size, about 12% error on estimated blast radii
+    static final int K = 64;
+    // ranks are 63 bit, a rank r stands for the fraction r / 2^63 of the unit interval
+    private static final double RANK_RANGE = 0x1p63;
+
+    private final DependencyGraph graph;
+    private final int[] dependentCount;
+    private final boolean[] exact;
+    private final int maxDependentCount;
+    // immediate dominator of every class, -1 for the virtual root
+    private final int[] immediateDominator;
+    private final int[] dominatedCount;
+
+    public ImpactAnalysis(DependencyGraph graph) {
+        this(new StronglyConnectedComponents(graph), AnalysisProgress.NONE);
+    }
+
+    /**
+     * @param components shared with the other analyses, see AnalysisExecutor
+     * @param progress checked once per component and per class, may cancel the analysis by throwing
+     */
+    public ImpactAnalysis(StronglyConnectedComponents components, AnalysisProgress progress) {
+        this.graph = components.graph();
+        int n = graph.nodeCount();
+        dependentCount = new int[n];
+        exact = new boolean[n];
+        int[][] successors = components.condensedSuccessors();
+        int[][] predecessors = StronglyConnectedComponents.invert(successors);
+        countDependents(components, successors, predecessors, progress);
+        int max = 0;
+        for (int count : dependentCount) {
+            max = Math.max(max, count);
+        }
+        maxDependentCount = max;
+        immediateDominator = new int[n];
+        dominatedCount = new int[n];
+        findDominators(components, predecessors, progress);
+    }
+
+    public DependencyGraph graph() {
+        return graph;
+    }
+
+    /**
+     * @return how many other classes depend on the class directly or transitively, estimated above K
+     */
+    public int dependentCount(int node) {
+        return dependentCount[node];
+    }
+
+    /**
+     * @return false if dependentCount is an estimate
+     */
+    public boolean isExact(int node) {
+        return exact[node];
+    }
+
+    public int maxDependentCount() {
+        return maxDependentCount;
+    }
+
+    /**
+     * @return the class every chain of dependencies to this class goes through last, -1 if the class
+     *         is needed on its own (nobody depends on it, or it is reached from several such classes)
+     */
+    public int immediateDominator(int node) {
+        return immediateDominator[node];
+    }
+
+    /**
+     * @return how many classes are only needed through this one, the size of its subtree in the dominator tree
+     *         without itself
+     */
+    public int dominatedCount(int node) {
+        return dominatedCount[node];
+    }
+
+    // ---- blast radius ----
+
+    private void countDependents(StronglyConnectedComponents components, int[][] successors, int[][] predecessors,
+                                 AnalysisProgress progress) {
+        int count = components.componentCount();
+        // a component's sketch is needed until all its successors have merged it
+        int[] pending = new int[count];
+        for (int c = 0; c < count; c++) {
+            pending[c] = successors[c].length;
+        }
+        long[][] sketch = new long[count][];
+        long[] merged = new long[K];
+        long[] buffer = new long[K];
+        long[] members = new long[0];
+
+        // predecessors have higher numbers, so walking downwards has every predecessor's sketch ready
+        for (int c = count - 1; c >= 0; c--) {
+            progress.checkpoint();
+            // the dependents outside the component: the predecessors and everything depending on them
+            int size = 0;
+            for (int p : predecessors[c]) {
+                size = merge(merged, size, sketch[p], sketch[p].length, buffer);
+                long[] swap = merged;
+                merged = buffer;
+                buffer = swap;
+                if (--pending[p] == 0) {
+                    sketch[p] = null;
+                }
+            }
+            int componentSize = components.componentSize(c);
+            // an estimate can overshoot, but there are no more dependents than classes outside the component
+            int outside = Math.min(estimate(merged, size), graph.nodeCount() - componentSize);
+            for (int m = components.memberStart(c); m < components.memberEnd(c); m++) {
+                int node = components.member(m);
+                // the other members of a cycle depend on the class as well
+                dependentCount[node] = outside + componentSize - 1;
+                exact[node] = size < K;
+            }
+
+            if (pending[c] > 0) {
+                if (members.length < componentSize) {
+                    members = new long[componentSize];
+                }
+                for (int m = 0; m < componentSize; m++) {
+                    members[m] = rank(components.member(components.memberStart(c) + m));
+                }
+                Arrays.sort(members, 0, componentSize);
+                size = merge(merged, size, members, Math.min(componentSize, K), buffer);
+                sketch[c] = Arrays.copyOf(buffer, size);
+            }
+        }
+    }
+
+    /**
+     * union of two sketches, sorted ascending: the K smallest distinct ranks of both
+     * @return how many ranks were written to out
+     */
+    private static int merge(long[] a, int aSize, long[] b, int bSize, long[] out) {
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (size < K && (i < aSize || j < bSize)) {
+            long next;
+            if (j == bSize || (i < aSize && a[i] < b[j])) {
+                next = a[i++];
+            } else if (i == aSize || b[j] < a[i]) {
+                next = b[j++];
+            } else {
+                next = a[i++]; // the same class reached on two ways
+                j++;
+            }
+            out[size++] = next;
+        }
+        return size;
+    }
+
+    // exact below K, otherwise K - 1 over the K-th smallest rank as a fraction of the range, and never less
+    // than the K classes the sketch holds
+    private static int estimate(long[] sketch, int size) {
+        if (size < K) {
+            return size;
+        }
+        double estimate = (K - 1) / (sketch[K - 1] / RANK_RANGE);
+        return (int) Math.max(K, Math.min(Integer.MAX_VALUE, Math.round(estimate)));
+    }
+
+    // a random looking but fixed 63 bit rank per class (splitmix64), so results do not change between runs
+    private static long rank(int node) {
+        long z = node * 0x9E3779B97F4A7C15L + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (z ^ (z >>> 31)) >>> 1;
+    }
+
+    // ---- dominators ----
+
+    private void findDominators(StronglyConnectedComponents components, int[][] predecessors,
+                                AnalysisProgress progress) {
+        int n = graph.nodeCount();
+        int root = n; // the virtual root, above every class nobody depends on
+        boolean[] rootChild = new boolean[n];
+        // depth first numbering, from the root along dependencies. number[v] is -1 until v is reached
+        int[] number = new int[n + 1];
+        int[] vertex = new int[n + 1];
+        int[] parent = new int[n + 1];
+        Arrays.fill(number, -1);
+        int[] stack = new int[n + 1];
+        int[] nextEdge = new int[n + 1];
+        number[root] = 0;
+        vertex[0] = root;
+        int numbered = 1;
+
+        // children of the root: the smallest class of every component nobody outside depends on, which
+        // is every class without dependents and one class of every cycle nobody outside depends on
+        for (int start = 0; start < n; start++) {
+            if (number[start] == -1 && isSmallestOfSourceComponent(components, start, predecessors)) {
+                rootChild[start] = true;
+                parent[start] = root;
+                numbered = numberFrom(start, numbered, number, vertex, parent, stack, nextEdge, progress);
+            }
+        }
+
+        // semidominators, last numbered first, with the forest of processed vertices in ancestor and label
+        int[] semi = new int[n + 1];
+        int[] ancestor = new int[n + 1];
+        int[] label = new int[n + 1];
+        int[] dominator = new int[n + 1];
+        // bucket[w]: vertices whose semidominator is w, as linked lists
+        int[] bucketHead = new int[n + 1];
+        int[] bucketNext = new int[n + 1];
+        int[] path = new int[n + 1];
+        Arrays.fill(ancestor, -1);
+        Arrays.fill(bucketHead, -1);
+        for (int i = 0; i < numbered; i++) {
+            semi[vertex[i]] = i;
+            label[vertex[i]] = vertex[i];
+        }
+        for (int i = numbered - 1; i > 0; i--) {
+            if ((i & 0xFFF) == 0) {
+                progress.checkpoint();
+            }
+            int w = vertex[i];
+            if (rootChild[w]) {
+                semi[w] = 0;
+            }
+            for (int position = graph.dependentStart(w); position < graph.dependentEnd(w); position++) {
+                int v = graph.dependent(position);
+                int u = eval(v, ancestor, label, semi, path);
+                if (semi[u] < semi[w]) {
+                    semi[w] = semi[u];
+                }
+            }
+            int s = vertex[semi[w]];
+            bucketNext[w] = bucketHead[s];
+            bucketHead[s] = w;
+            ancestor[w] = parent[w];
+
+            int p = parent[w];
+            for (int v = bucketHead[p]; v != -1; v = bucketNext[v]) {
+                int u = eval(v, ancestor, label, semi, path);
+                dominator[v] = semi[u] < semi[v] ? u : p;
+            }
+            bucketHead[p] = -1;
+        }
+        for (int i = 1; i < numbered; i++) {
+            int w = vertex[i];
+            if (dominator[w] != vertex[semi[w]]) {
+                dominator[w] = dominator[dominator[w]];
+            }
+        }
+
+        // subtree sizes, children before parents: a dominator is numbered before what it dominates
+        int[] subtree = new int[n + 1];
+        Arrays.fill(subtree, 1);
+        for (int i = numbered - 1; i > 0; i--) {
+            int w = vertex[i];
+            subtree[dominator[w]] += subtree[w];
+        }
+        for (int node = 0; node < n; node++) {
+            immediateDominator[node] = dominator[node] == root ? -1 : dominator[node];
+            dominatedCount[node] = subtree[node] - 1;
+        }
+    }
+
+    private static boolean isSmallestOfSourceComponent(StronglyConnectedComponents components, int node,
+                                                       int[][] predecessors) {
+        int c = components.componentOf(node);
+        return predecessors[c].length == 0 && components.member(components.memberStart(c)) == node;
+    }
+
+    /**
+     * iterative depth first search from start, numbering every class reached for the first time
+     * @return the next free number
+     */
+    private int numberFrom(int start, int numbered, int[] number, int[] vertex, int[] parent,
+                           int[] stack, int[] nextEdge, AnalysisProgress progress) {
+        number[start] = numbered;
+        vertex[numbered++] = start;
+        int top = 0;
+        stack[0] = start;
+        nextEdge[0] = graph.edgeStart(start);
+        while (top >= 0) {
+            int node = stack[top];
+            if (nextEdge[top] == graph.edgeEnd(node)) {
+                top--;
+                continue;
+            }
+            int child = graph.target(nextEdge[top]++);
+            if (number[child] == -1) {
+                if ((numbered & 0xFFF) == 0) {
+                    progress.checkpoint();
+                }
+                number[child] = numbered;
+                vertex[numbered++] = child;
+                parent[child] = node;
+                stack[++top] = child;
+                nextEdge[top] = graph.edgeStart(child);
+            }
+        }
+        return numbered;
+    }
+
+    /**
+     * the vertex with the smallest semidominator on the forest path above v (v itself if it is a tree root),
+     * compressing the path on the way, without recursion
+     */
+    private static int eval(int v, int[] ancestor, int[] label, int[] semi, int[] path) {
+        if (ancestor[v] == -1) {
+            return v;
+        }
+        // the path up to the last vertex below the tree root, then compressed from the top down
+        int length = 0;
+        for (int x = v; ancestor[ancestor[x]] != -1; x = ancestor[x]) {
+            path[length++] = x;
+        }
+        for (int i = length - 1; i >= 0; i--) {
+            int x = path[i];
+            int a = ancestor[x];
+            if (semi[label[a]] < semi[label[x]]) {
+                label[x] = label[a];
+            }
+            ancestor[x] = ancestor[a];
+        }
+        return label[v];
+    }
+}
@@ -0,0 +1,434 @@
+package com.github.coffeencode.toolWindow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * keeps the dependency graph and its analyses alive between two versions of knit.json.
+ * knit.json is read entry by entry (one entry per top-level class), so a new version only
+ * changes the edges of the entries that differ, and cycles and redundancies are
+ * only recomputed for the classes that can reach one of the changed edges.
+ * A project with several modules is read through KnitJsonModules, its entries are keyed by module as well.
+ * Not thread safe, load and update are expected to run one after the other.
+ */
+public class IncrementalAnalysis {
+    private final ClassNameTable names;
+    // what was read per module, only used when reading the knit.json of several modules
+    private final KnitJsonModules modules;
+    private Map<String, long[]> entries = new HashMap<>();
+    // every edge of the graph, sorted, with the number of entries that contribute it
+    private long[] edges = new long[0];
+    private int[] contributions = new int[0];
+
+    private DependencyGraph graph;
+    // cyclic and redundant flags of every edge of graph
+    private AnalysisResult result;
+    // transitives are only worked out for the classes they are asked for, see TransitiveClosure
+    private TransitiveClosure transitiveClosure;
+    // blast radius and dominators of every class, see ImpactAnalysis
+    private ImpactAnalysis impact;
+    // path queries over the current graph, built on the first query after the graph changed
+    private DependencyPaths paths;
+    // class names of the current graph for the search, built the same way
+    private ClassSearchIndex searchIndex;
+
+    public IncrementalAnalysis() {
+        names = new ClassNameTable();
+        modules = new KnitJsonModules(names);
+        graph = DependencyGraph.fromEdges(names, 0, edges);
+        result = AnalysisResult.empty(graph);
+    }
+
+    /**
+     * restore a finished analysis, used by AnalysisSnapshot
+     */
+    IncrementalAnalysis(ClassNameTable names, Map<String, long[]> entries, long[] edges, int[] contributions,
+                        byte[] edgeFlags) {
+        this.names = names;
+        this.modules = new KnitJsonModules(names);
+        this.entries = entries;
+        this.edges = edges;
+        this.contributions = contributions;
+        this.graph = DependencyGraph.fromEdges(names, names.size(), edges);
+        this.result = new AnalysisResult(graph, edgeFlags);
+    }
+
+    /**
+     * read knit.json from scratch and run every analysis on the whole graph
+     * @param in content of knit.json, the stream is not closed
+     */
+    public void load(InputStream in) throws IOException {
+        load(in, AnalysisProgress.NONE);
+    }
+
+    /**
+     * @param progress told about every phase and checked inside them, may cancel the load by throwing
+     */
+    public void load(InputStream in, AnalysisProgress progress) throws IOException {
+        progress.phase("Reading knit.json", 0);
+        analyseEntries(KnitJsonReader.readEntries(in, names, progress), progress);
+    }
+
+    /**
+     * read the knit.json of every module from scratch (in parallel) and run every analysis on the merged graph
+     * @param files module name to knit.json, see KnitJsonModules.discover
+     * @param progress told about every phase and checked inside them, may cancel the load by throwing
+     */
+    public void load(Map<String, Path> files, AnalysisProgress progress) throws IOException {
+        progress.phase("Reading knit.json", 0);
+        analyseEntries(modules.refresh(files, progress), progress);
+    }
+
+    private void analyseEntries(Map<String, long[]> newEntries, AnalysisProgress progress) {
+        entries = newEntries;
+        Map<Long, Integer> counts = new HashMap<>();
+        for (long[] entryEdges : entries.values()) {
+            for (long edge : entryEdges) {
+                counts.merge(edge, 1, Integer::sum);
+            }
+        }
+        edges = new long[counts.size()];
+        int i = 0;
+        for (long edge : counts.keySet()) {
+            edges[i++] = edge;
+        }
+        Arrays.sort(edges);
+        contributions = new int[edges.length];
+        for (i = 0; i < edges.length; i++) {
+            contributions[i] = counts.get(edges[i]);
+        }
+
+        graph = DependencyGraph.fromEdges(names, names.size(), edges);
+        // cycles and redundancies are found at the same time
+        progress.phase("Finding cyclic and redundant dependencies", 0.3);
+        AnalysisExecutor.Result analysed = new AnalysisExecutor().analyse(graph, progress);
+        result = analysed.toAnalysisResult();
+        transitiveClosure = analysed.transitiveClosure;
+        impact = analysed.impact;
+    }
+
+    /**
+     * read a new version of knit.json and bring the graph and the analyses up to date
+     * @param in content of the new knit.json, the stream is not closed
+     * @return what has to change in a view of the previous version
+     */
+    public Update update(InputStream in) throws IOException {
+        return updateEntries(KnitJsonReader.readEntries(in, names));
+    }
+
+    /**
+     * read the knit.json of the modules that changed since the last load or update, and bring the graph and
+     * the analyses up to date. The modules that did not change are not read again
+     * @param files module name to knit.json, modules that are gone are dropped from the graph
+     * @return what has to change in a view of the previous version
+     */
+    public Update update(Map<String, Path> files) throws IOException {
+        return updateEntries(modules.refresh(files, AnalysisProgress.NONE));
+    }
+
+    /**
+     * after this analysis was restored from a snapshot of the modules' knit.json, remember what every module
+     * contributed, so the next update only reads the modules that changed since
+     * @param files module name to knit.json, with the content the snapshot was made from
+     * @param hashes module name to the hash of its file, see AnalysisSnapshot.hashes
+     */
+    public void restoreModules(Map<String, Path> files, Map<String, byte[]> hashes) throws IOException {
+        modules.restore(entries, files, hashes);
+    }
+
+    /**
+     * @return hash of the modules' knit.json as they were read by the last load or update, the key the
+     *         analysis is saved under, see AnalysisSnapshot.combine
+     */
+    public byte[] knitJsonHash() {
+        return modules.hash();
+    }
+
+    /**
+     * @return the module whose knit.json declares the class, null if the class was only referenced
+     *         or the analysis was read from a single knit.json
+     */
+    public String moduleOf(String className) {
+        return modules.moduleOf(className);
+    }
+
+    private Update updateEntries(Map<String, long[]> newEntries) {
+        // edges that entries added (+1) or dropped (-1), summed over every changed entry
+        Map<Long, Integer> delta = new HashMap<>();
+        for (Map.Entry<String, long[]> entry : newEntries.entrySet()) {
+            long[] oldEdges = entries.getOrDefault(entry.getKey(), new long[0]);
+            if (!Arrays.equals(oldEdges, entry.getValue())) {
+                diff(oldEdges, entry.getValue(), delta);
+            }
+        }
+        for (Map.Entry<String, long[]> entry : entries.entrySet()) {
+            if (!newEntries.containsKey(entry.getKey())) {
+                diff(entry.getValue(), new long[0], delta);
+            }
+        }
+        entries = newEntries;
+        delta.values().removeIf(count -> count == 0);
+
+        Update update = new Update();
+        if (delta.isEmpty()) {
+            return update;
+        }
+
+        // merge the delta into the contribution counts, an edge appears at 0 -> n and disappears at n -> 0
+        long[] changed = new long[delta.size()];
+        int changedCount = 0;
+        for (long edge : delta.keySet()) {
+            changed[changedCount++] = edge;
+        }
+        Arrays.sort(changed);
+        long[] mergedEdges = new long[edges.length + changed.length];
+        int[] mergedContributions = new int[mergedEdges.length];
+        List<Long> addedEdges = new ArrayList<>();
+        List<Long> removedEdges = new ArrayList<>();
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < edges.length || j < changed.length) {
+            long edge;
+            int before;
+            int after;
+            if (j == changed.length || (i < edges.length && edges[i] < changed[j])) {
+                edge = edges[i];
+                before = after = contributions[i++];
+            } else if (i == edges.length || changed[j] < edges[i]) {
+                edge = changed[j];
+                before = 0;
+                after = delta.get(changed[j++]);
+            } else {
+                edge = edges[i];
+                before = contributions[i++];
+                after = before + delta.get(changed[j++]);
+            }
+            if (before == 0 && after > 0) {
+                addedEdges.add(edge);
+            } else if (before > 0 && after <= 0) {
+                removedEdges.add(edge);
+            }
+            if (after > 0) {
+                mergedEdges[size] = edge;
+                mergedContributions[size++] = after;
+            }
+        }
+        if (addedEdges.isEmpty() && removedEdges.isEmpty()) {
+            edges = Arrays.copyOf(mergedEdges, size);
+            contributions = Arrays.copyOf(mergedContributions, size);
+            return update; // only the number of entries behind some edges changed
+        }
+
+        DependencyGraph oldGraph = graph;
+        AnalysisResult oldResult = result;
+        edges = Arrays.copyOf(mergedEdges, size);
+        contributions = Arrays.copyOf(mergedContributions, size);
+        graph = DependencyGraph.fromEdges(names, names.size(), edges);
+
+        // only classes that reach a changed edge, before or after the change, can see different results
+        boolean[] affected = new boolean[graph.nodeCount()];
+        List<Integer> changedSources = new ArrayList<>();
+        for (long edge : addedEdges) {
+            changedSources.add(source(edge));
+        }
+        for (long edge : removedEdges) {
+            changedSources.add(source(edge));
+        }
+        markDependents(oldGraph, changedSources, affected);
+        markDependents(graph, changedSources, affected);
+
+        // the flags of the affected classes are new, the others keep theirs: their edges did not change,
+        // so they are the same run of edges in both graphs, only at other edge ids
+        AnalysisExecutor.Result analysed = new AnalysisExecutor().analyse(graph, affected, AnalysisProgress.NONE);
+        byte[] edgeFlags = analysed.edgeFlags;
+        for (int node = 0; node < affected.length; node++) {
+            if (!affected[node] && node < oldGraph.nodeCount()) {
+                for (int k = 0; k < graph.outDegree(node); k++) {
+                    edgeFlags[graph.edgeStart(node) + k] = (byte) oldResult.flags(oldGraph.edgeStart(node) + k);
+                }
+            }
+        }
+        result = new AnalysisResult(graph, edgeFlags);
+        transitiveClosure = analysed.transitiveClosure;
+        impact = analysed.impact;
+
+        // describe the change for the view
+        for (long edge : removedEdges) {
+            update.removedEdges.add(new EdgeChange(name(source(edge)), name(target(edge)), false, false));
+        }
+        for (long edge : addedEdges) {
+            int id = graph.edgeId(source(edge), target(edge));
+            update.addedEdges.add(new EdgeChange(name(source(edge)), name(target(edge)),
+                    result.isCyclic(id), result.isRedundant(id)));
+        }
+        Set<Long> added = new HashSet<>(addedEdges);
+        for (int node = 0; node < affected.length; node++) {
+            if (!affected[node]) {
+                continue;
+            }
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                int child = graph.target(edge);
+                if (added.contains(((long) node << 32) | child)) {
+                    continue;
+                }
+                // not added, so the edge was in the old graph as well
+                if (result.flags(edge) != oldResult.flags(oldGraph.edgeId(node, child))) {
+                    update.restyledEdges.add(new EdgeChange(graph.name(node), graph.name(child),
+                            result.isCyclic(edge), result.isRedundant(edge)));
+                }
+            }
+        }
+        for (long edge : removedEdges) {
+            for (int node : new int[]{source(edge), target(edge)}) {
+                if (graph.outDegree(node) == 0 && graph.inDegree(node) == 0 && !update.removedNodes.contains(name(node))) {
+                    update.removedNodes.add(name(node));
+                }
+            }
+        }
+        return update;
+    }
+
+    // adds +1 for every edge only in newEdges and -1 for every edge only in oldEdges, both sorted
+    private static void diff(long[] oldEdges, long[] newEdges, Map<Long, Integer> delta) {
+        int i = 0;
+        int j = 0;
+        while (i < oldEdges.length || j < newEdges.length) {
+            if (j == newEdges.length || (i < oldEdges.length && oldEdges[i] < newEdges[j])) {
+                delta.merge(oldEdges[i++], -1, Integer::sum);
+            } else if (i == oldEdges.length || newEdges[j] < oldEdges[i]) {
+                delta.merge(newEdges[j++], 1, Integer::sum);
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+
+    // marks the starts and every class that can reach one of them in the given graph
+    static void markDependents(DependencyGraph graph, List<Integer> starts, boolean[] marked) {
+        Traversal traversal = new Traversal(graph);
+        for (int start : starts) {
+            marked[start] = true;
+            if (start < graph.nodeCount()) {
+                traversal.start(start);
+            }
+        }
+        traversal.breadthFirst(false, Integer.MAX_VALUE, null, -1);
+        for (int i = 0; i < traversal.count(); i++) {
+            marked[traversal.node(i)] = true;
+        }
+    }
+
+    private static int source(long edge) {
+        return (int) (edge >>> 32);
+    }
+
+    private static int target(long edge) {
+        return (int) edge;
+    }
+
+    private String name(int node) {
+        return names.name(node);
+    }
+
+    Map<String, long[]> getEntries() {
+        return entries;
+    }
+
+    long[] getEdges() {
+        return edges;
+    }
+
+    int[] getContributions() {
+        return contributions;
+    }
+
+    public DependencyGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return cyclic and redundant flags of every dependency of the current graph
+     */
+    public AnalysisResult getResult() {
+        return result;
+    }
+
+    /**
+     * @return the transitive dependencies of the current graph, worked out per class when asked for.
+     *         After a restore from a snapshot it is made on the first call
+     */
+    public TransitiveClosure getTransitiveClosure() {
+        if (transitiveClosure == null || transitiveClosure.graph() != graph) {
+            transitiveClosure = new TransitiveClosure(graph);
+        }
+        return transitiveClosure;
+    }
+
+    /**
+     * @return how many classes depend on every class of the current graph and which ones only it needs.
+     *         After a restore from a snapshot it is measured on the first call
+     */
+    public ImpactAnalysis getImpact() {
+        if (impact == null || impact.graph() != graph) {
+            impact = new ImpactAnalysis(graph);
+        }
+        return impact;
+    }
+
+    /**
+     * @return path queries over the current graph. Its reachability index is built on the first call after
+     *         a load or an update that changed the graph, so call it from the thread doing the updates
+     */
+    public DependencyPaths getPaths() {
+        if (paths == null || paths.graph() != graph) {
+            paths = new DependencyPaths(graph);
+        }
+        return paths;
+    }
+
+    /**
+     * @return the name index of the current graph, built on the first call after a load or an update that
+     *         changed the graph, so call it from the thread doing the updates
+     */
+    public ClassSearchIndex getSearchIndex() {
+        if (searchIndex == null || searchIndex.graph() != graph) {
+            searchIndex = new ClassSearchIndex(graph);
+        }
+        return searchIndex;
+    }
+
+    /**
+     * an edge of the view that has to be added, removed or restyled
+     */
+    public static class EdgeChange {
+        public final String source;
+        public final String target;
+        public final boolean cyclic;
+        public final boolean redundant;
+
+        public EdgeChange(String source, String target, boolean cyclic, boolean redundant) {
+            this.source = source;
+            this.target = target;
+            this.cyclic = cyclic;
+            this.redundant = redundant;
+        }
+    }
+
+    /**
+     * difference between two versions as seen by a view, names only so it can be handed to the UI thread
+     */
+    public static class Update {
+        public final List<EdgeChange> addedEdges = new ArrayList<>();
+        public final List<EdgeChange> removedEdges = new ArrayList<>();
+        public final List<EdgeChange> restyledEdges = new ArrayList<>();
+        public final List<String> removedNodes = new ArrayList<>();
+
+        public boolean isEmpty() {
+            return addedEdges.isEmpty() && removedEdges.isEmpty() && restyledEdges.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.github.coffeencode.toolWindow;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.function.Predicate;
+
+/**
+ * command line version of the tool window, for CI: reads one or more knit.json files without an IDE,
+ * writes the analysis as JSON or as a Graphviz DOT graph, and exits with 1 when there are cycles.
+ * Nothing of the IntelliJ Platform is loaded, only OrganiseHelpers and the analyses behind AnalysisExecutor.
+ * The results are written while they are found, transitives (the only part that can grow
+ * quadratically) straight from TransitiveClosure's iterators, so memory is bounded by the graph and the
+ * analyses' working sets rather than by the size of the output.
+ * A directory given instead of a file stands for the build/knit.json of every module below it.
+ * usage, e.g. from gradle: ./gradlew analyseKnitJson --args="--format dot demo-jvm/build/knit.json"
+ */
+public class KnitJsonAnalyser {
+    public static final int NO_CYCLES = 0;
+    public static final int CYCLES_FOUND = 1;
+    // bad arguments, or a knit.json that cannot be read
+    public static final int ERROR = 2;
+
+    // reachable components are kept for this many nodes at a time, members of a component share them
+    private static final int TRANSITIVE_BATCH = 1024;
+    private static final String USAGE = "usage: KnitJsonAnalyser [--format json|dot] [--output file] "
+            + "[--max-cycles n] [--max-cycle-length n] [--transitive] [--baseline knit.json|directory] "
+            + "(knit.json|project directory)...\n"
+            + "  --format       json (default) or dot\n"
+            + "  --output       write to a file instead of standard output\n"
+            + "  --max-cycles   how many individual cycles to list, shortest first, 100 by default, 0 for none (json only)\n"
+            + "  --max-cycle-length  longest cycle to list, in dependencies, 0 (default) for any\n"
+            + "  --transitive   also write every transitive dependency, can be large\n"
+            + "  --baseline     compare with another knit.json, e.g. of the main branch: dependencies added, removed,\n"
+            + "                 and cycles or redundancies that appeared or disappeared (json only)\n"
+            + "exit code: 0 no cycles, 1 cycles found, 2 error";
+
+    public static void main(String[] args) {
+        int exitCode;
+        try {
+            exitCode = run(args, System.out, System.err);
+        } catch (RuntimeException | OutOfMemoryError | StackOverflowError e) {
+            // the jvm would exit with 1 here, which CI would take for CYCLES_FOUND
+            e.printStackTrace();
+            exitCode = ERROR;
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * @param out where the results go unless --output is given, flushed but not closed
+     * @param err usage, errors and a one line summary
+     * @return the exit code, NO_CYCLES, CYCLES_FOUND or ERROR
+     */
+    public static int run(String[] args, OutputStream out, PrintStream err) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return ERROR;
+        }
+
+        DependencyGraph graph;
+        DependencyGraph baseline = null;
+        try {
+            options.discoverModules();
+            if (options.files.isEmpty() || (options.baseline != null && options.baseline.isEmpty())) {
+                err.println("no build/knit.json found in the given directories");
+                return ERROR;
+            }
+            graph = OrganiseHelpers.summariseDependencies(options.files, AnalysisProgress.NONE);
+            if (options.baseline != null) {
+                baseline = OrganiseHelpers.summariseDependencies(options.baseline, AnalysisProgress.NONE);
+            }
+        } catch (NoSuchFileException e) {
+            err.println("knit.json not found: " + e.getFile());
+            return ERROR;
+        } catch (IOException e) {
+            err.println("could not read knit.json: " + e.getMessage());
+            return ERROR;
+        }
+
+        AnalysisExecutor.Result analysed = new AnalysisExecutor().analyse(graph, AnalysisProgress.NONE);
+        AnalysisResult result = analysed.toAnalysisResult();
+        TransitiveClosure closure = analysed.transitiveClosure;
+        DependencyDiff diff = baseline == null ? null : DependencyDiff.compare(baseline, result, AnalysisProgress.NONE);
+
+        try (OutputStream target = options.output == null ? new KeepOpen(out) : Files.newOutputStream(options.output);
+             OutputStream buffered = new BufferedOutputStream(target, 1 << 16)) {
+            if (options.dot) {
+                writeDot(buffered, result, closure, options);
+            } else {
+                writeJson(buffered, result, closure, diff, options);
+            }
+        } catch (IOException e) {
+            err.println("could not write the results: " + e.getMessage());
+            return ERROR;
+        }
+
+        int cyclicCount = result.cyclicEdgeCount();
+        err.println(graph.nodeCount() + " classes, " + graph.edgeCount() + " dependencies, "
+                + cyclicCount + " cyclic, " + result.redundantEdgeCount() + " redundant");
+        if (diff != null) {
+            err.println("against the baseline: " + diff.addedCount() + " added, " + diff.removedCount() + " removed, "
+                    + diff.cyclesAppeared() + " newly cyclic, " + diff.cyclesDisappeared() + " no longer cyclic, "
+                    + diff.redundanciesAppeared() + " newly redundant, " + diff.redundanciesDisappeared()
+                    + " no longer redundant");
+        }
+        return cyclicCount > 0 ? CYCLES_FOUND : NO_CYCLES;
+    }
+
+    private static void writeJson(OutputStream out, AnalysisResult result, TransitiveClosure closure,
+                                  DependencyDiff diff, Options options) throws IOException {
+        DependencyGraph graph = result.graph();
+        try (JsonGenerator json = new JsonFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("files");
+            for (Path file : options.files) {
+                json.writeString(file.toString());
+            }
+            json.writeEndArray();
+            json.writeNumberField("classes", graph.nodeCount());
+            json.writeNumberField("dependencies", graph.edgeCount());
+
+            json.writeFieldName("cyclicDependencies");
+            writeEdges(json, result, AnalysisResult.CYCLIC);
+
+            if (options.maxCycles > 0) {
+                json.writeArrayFieldStart("cycles");
+                // written as they are found, shortest first, so a cap keeps the most interesting ones
+                Cyclic cyclic = new Cyclic(closure.components(), AnalysisProgress.NONE);
+                CycleEnumerator cycles = cyclic.cycles(options.maxCycles, options.maxCycleLength, 0);
+                while (cycles.hasNext()) {
+                    json.writeStartArray();
+                    for (String name : cycles.next()) {
+                        json.writeString(name);
+                    }
+                    json.writeEndArray();
+                }
+                json.writeEndArray();
+                json.writeBooleanField("allCyclesListed", cycles.stop() == CycleEnumerator.Stop.COMPLETE);
+            }
+
+            json.writeFieldName("redundantDependencies");
+            writeEdges(json, result, AnalysisResult.REDUNDANT);
+
+            if (options.transitive) {
+                json.writeObjectFieldStart("transitiveDependencies");
+                Map<Integer, CompressedBitmap> reachable = new HashMap<>();
+                for (int node = 0; node < graph.nodeCount(); node++) {
+                    PrimitiveIterator.OfInt targets = transitives(closure, node, reachable);
+                    if (targets.hasNext()) {
+                        json.writeArrayFieldStart(graph.name(node));
+                        while (targets.hasNext()) {
+                            json.writeString(graph.name(targets.nextInt()));
+                        }
+                        json.writeEndArray();
+                    }
+                }
+                json.writeEndObject();
+            }
+
+            if (diff != null) {
+                json.writeObjectFieldStart("diff");
+                json.writeArrayFieldStart("baseline");
+                for (Path file : options.baseline) {
+                    json.writeString(file.toString());
+                }
+                json.writeEndArray();
+                writeDiff(json, "added", diff, edge -> edge.isAdded());
+                writeDiff(json, "removed", diff, edge -> edge.isRemoved());
+                writeDiff(json, "cyclesAppeared", diff, edge -> edge.appeared(AnalysisResult.CYCLIC));
+                writeDiff(json, "cyclesDisappeared", diff, edge -> edge.disappeared(AnalysisResult.CYCLIC));
+                writeDiff(json, "redundanciesAppeared", diff, edge -> edge.appeared(AnalysisResult.REDUNDANT));
+                writeDiff(json, "redundanciesDisappeared", diff, edge -> edge.disappeared(AnalysisResult.REDUNDANT));
+                json.writeEndObject();
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+    }
+
+    // the edges with a flag as class -> dependencies, in node order, so the same knit.json always gives the same output
+    private static void writeEdges(JsonGenerator json, AnalysisResult result, int flag) throws IOException {
+        DependencyGraph graph = result.graph();
+        json.writeStartObject();
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            int count = flag == AnalysisResult.CYCLIC ? result.cyclicCount(node) : result.redundantCount(node);
+            if (count == 0) {
+                continue;
+            }
+            json.writeArrayFieldStart(graph.name(node));
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                if ((result.flags(edge) & flag) != 0) {
+                    json.writeString(graph.name(graph.target(edge)));
+                }
+            }
+            json.writeEndArray();
+        }
+        json.writeEndObject();
+    }
+
+    // the changed dependencies of one kind as class -> dependencies, by name like DependencyDiff sorts them
+    private static void writeDiff(JsonGenerator json, String field, DependencyDiff diff,
+                                  Predicate<DependencyDiff.EdgeDiff> kind) throws IOException {
+        json.writeObjectFieldStart(field);
+        String source = null;
+        for (DependencyDiff.EdgeDiff edge : diff.edges()) {
+            if (!kind.test(edge)) {
+                continue;
+            }
+            if (!edge.source.equals(source)) {
+                if (source != null) {
+                    json.writeEndArray();
+                }
+                source = edge.source;
+                json.writeArrayFieldStart(source);
+            }
+            json.writeString(edge.target);
+        }
+        if (source != null) {
+            json.writeEndArray();
+        }
+        json.writeEndObject();
+    }
+
+    /**
+     * every dependency once, cyclic ones red and redundant ones dashed like in the tool window,
+     * transitives dotted and grey
+     */
+    private static void writeDot(OutputStream out, AnalysisResult result, TransitiveClosure closure,
+                                 Options options) throws IOException {
+        DependencyGraph graph = result.graph();
+        Writer dot = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        dot.write("digraph knit {\n  rankdir=LR;\n  node [shape=box];\n");
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            String name = graph.name(node);
+            if (graph.outDegree(node) == 0 && graph.inDegree(node) == 0) {
+                dot.write("  " + quote(name) + ";\n");
+            }
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                String target = graph.name(graph.target(edge));
+                dot.write("  " + quote(name) + " -> " + quote(target));
+                boolean isCyclic = result.isCyclic(edge);
+                boolean isRedundant = result.isRedundant(edge);
+                if (isCyclic && isRedundant) {
+                    dot.write(" [color=red, style=dashed]");
+                } else if (isCyclic) {
+                    dot.write(" [color=red]");
+                } else if (isRedundant) {
+                    dot.write(" [style=dashed]");
+                }
+                dot.write(";\n");
+            }
+        }
+        if (options.transitive) {
+            Map<Integer, CompressedBitmap> reachable = new HashMap<>();
+            for (int node = 0; node < graph.nodeCount(); node++) {
+                for (PrimitiveIterator.OfInt targets = transitives(closure, node, reachable); targets.hasNext(); ) {
+                    dot.write("  " + quote(graph.name(node)) + " -> " + quote(graph.name(targets.nextInt()))
+                            + " [style=dotted, color=gray];\n");
+                }
+            }
+        }
+        dot.write("}\n");
+        dot.flush();
+    }
+
+    // the reachable components of the nodes' components, forgotten every TRANSITIVE_BATCH nodes
+    private static PrimitiveIterator.OfInt transitives(TransitiveClosure closure, int node,
+                                                       Map<Integer, CompressedBitmap> reachable) {
+        if (node % TRANSITIVE_BATCH == 0) {
+            reachable.clear();
+        }
+        CompressedBitmap components = reachable.computeIfAbsent(closure.components().componentOf(node),
+                closure::reachableComponents);
+        return closure.transitives(node, components);
+    }
+
+    // class names can hold generics and spaces, e.g. java.util.Map<a.K, a.V>
+    private static String quote(String name) {
+        return '"' + name.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    private static class Options {
+        final List<Path> files = new ArrayList<>();
+        // null without --baseline
+        List<Path> baseline;
+        Path output;
+        boolean dot;
+        boolean transitive;
+        int maxCycles = 100;
+        int maxCycleLength;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--format":
+                        String format = value(args, ++i, "--format");
+                        if (!format.equals("json") && !format.equals("dot")) {
+                            throw new IllegalArgumentException("unknown format: " + format);
+                        }
+                        options.dot = format.equals("dot");
+                        break;
+                    case "--output":
+                        options.output = Paths.get(value(args, ++i, "--output"));
+                        break;
+                    case "--max-cycles":
+                        try {
+                            options.maxCycles = Integer.parseInt(value(args, ++i, "--max-cycles"));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("--max-cycles needs a number");
+                        }
+                        break;
+                    case "--max-cycle-length":
+                        try {
+                            options.maxCycleLength = Integer.parseInt(value(args, ++i, "--max-cycle-length"));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("--max-cycle-length needs a number");
+                        }
+                        break;
+                    case "--transitive":
+                        options.transitive = true;
+                        break;
+                    case "--baseline":
+                        options.baseline = List.of(Paths.get(value(args, ++i, "--baseline")));
+                        break;
+                    default:
+                        if (args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("unknown option: " + args[i]);
+                        }
+                        options.files.add(Paths.get(args[i]));
+                }
+            }
+            if (options.files.isEmpty()) {
+                throw new IllegalArgumentException("no knit.json given");
+            }
+            if (options.dot && options.baseline != null) {
+                throw new IllegalArgumentException("--baseline only works with --format json");
+            }
+            return options;
+        }
+
+        // directories are replaced with the knit.json files of their modules, the baseline's as well
+        void discoverModules() throws IOException {
+            List<Path> found = discover(files);
+            files.clear();
+            files.addAll(found);
+            if (baseline != null) {
+                baseline = discover(baseline);
+            }
+        }
+
+        private static List<Path> discover(List<Path> paths) throws IOException {
+            List<Path> found = new ArrayList<>();
+            for (Path file : paths) {
+                if (Files.isDirectory(file)) {
+                    found.addAll(KnitJsonModules.discover(file).values());
+                } else {
+                    found.add(file);
+                }
+            }
+            return found;
+        }
+
+        private static String value(String[] args, int i, String option) {
+            if (i >= args.length) {
+                throw new IllegalArgumentException(option + " needs a value");
+            }
+            return args[i];
+        }
+    }
+
+    // standard output is flushed at the end but stays open for the caller
+    private static class KeepOpen extends FilterOutputStream {
+        KeepOpen(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.coffeencode.toolWindow;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * calls back once per batch of file system events that touches a knit.json of the project,
+ * e.g. when a Gradle build writes a new version of it, or a module produces its first one.
+ * Only files and directories that come, go, move or are renamed can change which knit.json files there are,
+ * a knit.json that is written again is still the same file, so the project does not have to be walked for it
+ */
+public class KnitJsonListener implements BulkFileListener {
+    private static final String KNIT_JSON = "/build/knit.json";
+    private static final String BUILD = "build";
+
+    /**
+     * told about a batch of events that touched a knit.json
+     */
+    public interface ChangeListener {
+        /**
+         * @param rediscover the knit.json files may have come or gone, the project has to be walked again
+         */
+        void knitJsonChanged(boolean rediscover);
+    }
+
+    private final String projectPath;
+    private final ChangeListener onChange;
+
+    /**
+     * @param projectPath VFS path of the project directory, every build/knit.json below it is watched
+     * @param onChange runs on the thread delivering the events, should hand the work off quickly
+     */
+    public KnitJsonListener(String projectPath, ChangeListener onChange) {
+        this.projectPath = projectPath.endsWith("/") ? projectPath : projectPath + "/";
+        this.onChange = onChange;
+    }
+
+    @Override
+    public void after(@NotNull List<? extends VFileEvent> events) {
+        boolean changed = false;
+        boolean rediscover = false;
+        for (VFileEvent event : events) {
+            String path = event.getPath();
+            if (!(path + "/").startsWith(projectPath)) {
+                continue;
+            }
+            boolean knitJson = ("/" + path).endsWith(KNIT_JSON);
+            if (event instanceof VFileContentChangeEvent) {
+                changed |= knitJson;
+            } else if (event instanceof VFilePropertyChangeEvent
+                    && !VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName())) {
+                continue; // e.g. only writable now
+            } else if (knitJson || isWalked(path)) {
+                changed = true;
+                rediscover = true;
+            }
+        }
+        if (changed) {
+            onChange.knitJsonChanged(rediscover);
+        }
+    }
+
+    // whether KnitJsonModules.discover walks to the path: not inside a build or a hidden directory
+    private boolean isWalked(String path) {
+        if (path.length() < projectPath.length()) {
+            return true; // the project directory itself
+        }
+        String[] parts = path.substring(projectPath.length()).split("/");
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i].startsWith(".") || (i < parts.length - 1 && parts[i].equals(BUILD))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
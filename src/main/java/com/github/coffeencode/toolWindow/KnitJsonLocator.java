@@ -0,0 +1,79 @@
+package com.github.coffeencode.toolWindow;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * finds the knit.json files inside an IDE project, and keeps what it found until it is asked to look again.
+ * Build directories are excluded from the project, so the VFS knows nothing about them and would send no event
+ * when a knit.json in there changes. Every build directory found is therefore loaded into the VFS with its
+ * children and watched, which also reports the first knit.json a module writes.
+ * Kept apart from OrganiseHelpers so the analysis code runs without the IntelliJ Platform, see KnitJsonAnalyser
+ */
+public class KnitJsonLocator implements Disposable {
+    private final Project project;
+    // the files of the last walk, and the build directories watched since then
+    private Map<String, Path> knitJsonFiles = Map.of();
+    private Set<LocalFileSystem.WatchRequest> watched = Set.of();
+
+    public KnitJsonLocator(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * walk the project for the knit.json of every module, see KnitJsonModules.discover.
+     * Only needed again when files or directories came or went, see KnitJsonListener
+     * @return module name to knit.json, empty if the project has none (or no directory on disk)
+     */
+    public synchronized Map<String, Path> findKnitJsonFiles() {
+        VirtualFile projectDir = ProjectUtil.guessProjectDir(project);
+        if (projectDir == null) {
+            return knitJsonFiles = Map.of();
+        }
+        List<Path> buildDirs = new ArrayList<>();
+        try {
+            knitJsonFiles = KnitJsonModules.discover(projectDir.toNioPath(), buildDirs::add);
+        } catch (IOException | UnsupportedOperationException e) {
+            return knitJsonFiles = Map.of(); // not on the local file system, or the project directory cannot be walked
+        }
+        watch(buildDirs);
+        return knitJsonFiles;
+    }
+
+    /**
+     * @return the files of the last findKnitJsonFiles, without walking the project
+     */
+    public synchronized Map<String, Path> knitJsonFiles() {
+        return knitJsonFiles;
+    }
+
+    private void watch(List<Path> buildDirs) {
+        LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+        List<String> roots = new ArrayList<>();
+        for (Path buildDir : buildDirs) {
+            VirtualFile dir = fileSystem.refreshAndFindFileByNioFile(buildDir);
+            if (dir != null) {
+                dir.getChildren(); // loads a knit.json that is there, and makes a new one show up as created
+                roots.add(buildDir.toString());
+            }
+        }
+        // a build directory holds a lot besides knit.json, its subdirectories are not watched
+        watched = fileSystem.replaceWatchedRoots(watched, List.of(), roots);
+    }
+
+    @Override
+    public synchronized void dispose() {
+        LocalFileSystem.getInstance().removeWatchedRoots(watched);
+        watched = Set.of();
+    }
+}
@@ -0,0 +1,304 @@
+package com.github.coffeencode.toolWindow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * the knit.json files of a multi-module project, one per module build output.
+ * Every module is read on its own (in parallel, each with its own class name table), then its ids are
+ * interned into the shared table so all modules end up in one graph, and every class is tagged with the
+ * module whose knit.json has its entry. What was read is kept per module: a refresh after one module was
+ * rebuilt only reads that module's knit.json again.
+ * The entries handed to IncrementalAnalysis are keyed by module and entry key, see entryKey.
+ */
+public class KnitJsonModules {
+    private static final String KNIT_JSON = "knit.json";
+    private static final String BUILD = "build";
+    // separates module and entry key in the merged entries, cannot appear in a module path
+    private static final char SEPARATOR = '\u0000';
+
+    private final ClassNameTable names;
+    private final Map<String, Module> modules = new HashMap<>();
+    // module name of every class id, null for classes without an entry of their own (e.g. java.util.List)
+    private String[] moduleOf = new String[0];
+
+    /**
+     * @param names the table of the graph every module is merged into
+     */
+    public KnitJsonModules(ClassNameTable names) {
+        this.names = names;
+    }
+
+    /**
+     * find every knit.json under the build outputs of a project: build/knit.json of every module directory.
+     * Hidden directories (.git, .gradle, .idea) are skipped, and the rest of a build directory is never walked
+     * @param projectDir root of the project
+     * @return module name (the Gradle path of its directory, e.g. ":app:core", ":" for the root) to knit.json,
+     *         sorted by module name
+     */
+    public static SortedMap<String, Path> discover(Path projectDir) throws IOException {
+        return discover(projectDir, buildDir -> {
+        });
+    }
+
+    /**
+     * @param buildDirs told about every build directory found, also those without a knit.json (yet)
+     */
+    public static SortedMap<String, Path> discover(Path projectDir, Consumer<Path> buildDirs) throws IOException {
+        SortedMap<String, Path> found = new TreeMap<>();
+        Files.walkFileTree(projectDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                Path name = dir.getFileName();
+                if (!dir.equals(projectDir) && name != null && name.toString().startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (name != null && name.toString().equals(BUILD)) {
+                    buildDirs.accept(dir);
+                    Path knitJson = dir.resolve(KNIT_JSON);
+                    if (Files.isRegularFile(knitJson)) {
+                        found.put(moduleName(projectDir, dir.getParent()), knitJson);
+                    }
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE; // unreadable directories hold no knit.json we could use
+            }
+        });
+        return found;
+    }
+
+    private static String moduleName(Path projectDir, Path moduleDir) {
+        StringBuilder name = new StringBuilder();
+        for (Path part : projectDir.relativize(moduleDir)) {
+            if (!part.toString().isEmpty()) {
+                name.append(':').append(part);
+            }
+        }
+        return name.length() == 0 ? ":" : name.toString();
+    }
+
+    /**
+     * bring the modules up to date with the knit.json files: modules whose file did not change since the last
+     * refresh (same modification time and size) are kept, the others are read again in parallel
+     * @param files module name to knit.json, e.g. from discover. Modules that are missing here are dropped
+     * @param progress checked once per top-level class entry of every file read
+     * @return the entries of every module, keyed by entryKey, each with its sorted packed edges
+     * @throws IOException if one of the files to read cannot be read or is not valid json
+     */
+    public Map<String, long[]> refresh(Map<String, Path> files, AnalysisProgress progress) throws IOException {
+        List<Module> stale = new ArrayList<>();
+        Map<String, Module> current = new TreeMap<>();
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            Module module = modules.get(file.getKey());
+            BasicFileAttributes attributes = Files.readAttributes(file.getValue(), BasicFileAttributes.class);
+            if (module == null || !module.isCurrent(file.getValue(), attributes)) {
+                module = new Module(file.getValue(), attributes);
+                stale.add(module);
+            }
+            current.put(file.getKey(), module);
+        }
+
+        // reading and tokenizing is the expensive part, every stale module gets its own task and table
+        List<ForkJoinTask<LocalRead>> reads = new ArrayList<>();
+        for (Module module : stale) {
+            reads.add(ForkJoinPool.commonPool().submit(() -> module.read(progress)));
+        }
+        for (int i = 0; i < stale.size(); i++) {
+            // interned one module after the other, the shared table is not thread safe
+            stale.get(i).intern(join(reads.get(i)), names);
+        }
+
+        modules.clear();
+        modules.putAll(current);
+        return merged(current);
+    }
+
+    private static <T> T join(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while reading knit.json", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause(); // e.g. cancelled through the progress
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * take the modules over from entries restored from a snapshot, so the next refresh only reads what changed
+     * since. Only valid when the files still have the content the entries were read from
+     * @param entries merged entries as refresh returned them
+     * @param files module name to knit.json, the same files the entries were read from
+     * @param hashes module name to the hash of its file, as the snapshot was found with
+     */
+    public void restore(Map<String, long[]> entries, Map<String, Path> files, Map<String, byte[]> hashes)
+            throws IOException {
+        Map<String, Map<String, long[]>> byModule = new HashMap<>();
+        for (Map.Entry<String, long[]> entry : entries.entrySet()) {
+            int separator = entry.getKey().indexOf(SEPARATOR);
+            if (separator == -1) {
+                continue; // read from a single knit.json, not per module
+            }
+            byModule.computeIfAbsent(entry.getKey().substring(0, separator), module -> new HashMap<>())
+                    .put(entry.getKey().substring(separator + 1), entry.getValue());
+        }
+        Map<String, Module> current = new TreeMap<>();
+        for (Map.Entry<String, Path> file : files.entrySet()) {
+            // a knit.json without entries has none in the snapshot either
+            BasicFileAttributes attributes = Files.readAttributes(file.getValue(), BasicFileAttributes.class);
+            Module module = new Module(file.getValue(), attributes);
+            module.entries = byModule.getOrDefault(file.getKey(), Map.of());
+            module.hash = hashes.get(file.getKey());
+            current.put(file.getKey(), module);
+        }
+        modules.clear();
+        modules.putAll(current);
+        tagClasses(current);
+    }
+
+    /**
+     * hash of the knit.json files with the content they were read with (or restored from), the way
+     * AnalysisSnapshot.combine hashes them. Not read again: a file rewritten since counts with what was read
+     */
+    public byte[] hash() {
+        Map<String, Path> files = new TreeMap<>();
+        Map<String, byte[]> hashes = new HashMap<>();
+        for (Map.Entry<String, Module> module : modules.entrySet()) {
+            files.put(module.getKey(), module.getValue().file);
+            hashes.put(module.getKey(), module.getValue().hash);
+        }
+        return AnalysisSnapshot.combine(files, hashes);
+    }
+
+    private Map<String, long[]> merged(Map<String, Module> current) {
+        Map<String, long[]> entries = new HashMap<>();
+        for (Map.Entry<String, Module> module : current.entrySet()) {
+            for (Map.Entry<String, long[]> entry : module.getValue().entries.entrySet()) {
+                entries.put(entryKey(module.getKey(), entry.getKey()), entry.getValue());
+            }
+        }
+        tagClasses(current);
+        return entries;
+    }
+
+    // a class declared in two modules keeps the first module by name
+    private void tagClasses(Map<String, Module> current) {
+        moduleOf = new String[names.size()];
+        for (Map.Entry<String, Module> module : current.entrySet()) {
+            for (String entryKey : module.getValue().entries.keySet()) {
+                int id = names.find(className(entryKey));
+                if (id != -1 && moduleOf[id] == null) {
+                    moduleOf[id] = module.getKey();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the module whose knit.json has an entry for the class, null if none has
+     */
+    public String moduleOf(String className) {
+        int id = names.find(className);
+        return id == -1 || id >= moduleOf.length ? null : moduleOf[id];
+    }
+
+    /**
+     * @return key of an entry in the merged entries
+     */
+    static String entryKey(String module, String entryKey) {
+        return module + SEPARATOR + entryKey;
+    }
+
+    // the class an entry is about, formatted the way KnitJsonReader formats it
+    private static String className(String entryKey) {
+        String dotted = entryKey.replace("/", ".");
+        return ClassNameTokenizer.tokenizeClassName(dotted, 0, dotted.length()).name;
+    }
+
+    private static class Module {
+        final Path file;
+        final long modified;
+        final long size;
+        // entry key to sorted packed edges, in ids of the shared table, and the hash of the bytes they came from
+        Map<String, long[]> entries = Map.of();
+        byte[] hash;
+
+        Module(Path file, BasicFileAttributes attributes) {
+            this.file = file;
+            this.modified = attributes.lastModifiedTime().toMillis();
+            this.size = attributes.size();
+        }
+
+        boolean isCurrent(Path file, BasicFileAttributes attributes) {
+            return this.file.equals(file) && modified == attributes.lastModifiedTime().toMillis()
+                    && size == attributes.size();
+        }
+
+        // runs on a pool thread, only touches this module's own table. The content is hashed while it is parsed
+        LocalRead read(AnalysisProgress progress) {
+            ClassNameTable local = new ClassNameTable();
+            try (DigestInputStream in = AnalysisSnapshot.digest(Files.newInputStream(file))) {
+                Map<String, long[]> entries = KnitJsonReader.readEntries(in, local, progress);
+                return new LocalRead(local, entries, AnalysisSnapshot.finish(in));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // move the edges of a read over to the ids of the shared table
+        void intern(LocalRead read, ClassNameTable names) {
+            int[] global = new int[read.names.size()];
+            for (int id = 0; id < global.length; id++) {
+                global[id] = names.intern(read.names.name(id));
+            }
+            Map<String, long[]> interned = new HashMap<>(read.entries.size() * 2);
+            for (Map.Entry<String, long[]> entry : read.entries.entrySet()) {
+                long[] local = entry.getValue();
+                long[] edges = new long[local.length];
+                for (int i = 0; i < local.length; i++) {
+                    edges[i] = ((long) global[(int) (local[i] >>> 32)] << 32) | global[(int) local[i]];
+                }
+                Arrays.sort(edges); // the new ids are in another order
+                interned.put(entry.getKey(), edges);
+            }
+            entries = interned;
+            hash = read.hash;
+        }
+    }
+
+    // what a module read on its own, before its ids were interned into the shared table
+    private static class LocalRead {
+        final ClassNameTable names;
+        final Map<String, long[]> entries;
+        final byte[] hash;
+
+        LocalRead(ClassNameTable names, Map<String, long[]> entries, byte[] hash) {
+            this.names = names;
+            this.entries = entries;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.github.coffeencode.toolWindow;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * single pass reader of knit.json on top of Jackson's streaming JsonParser.
+ * No JsonNode tree and no copy of the whole file is built, every dependency goes
+ * straight into the dependencies table while the tokens are read.
+ */
+public class KnitJsonReader {
+    // the stream belongs to the caller, e.g. to hash what is left of it after the json
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+            .build();
+
+    private final JsonParser parser;
+    private final AnalysisProgress progress;
+    // the same signatures repeat all over knit.json, each distinct one is tokenized once per read
+    private final ClassNameTokenizer tokenizer = new ClassNameTokenizer();
+    private DependencyGraph.Builder dependenciesTable;
+    // when set, every top-level class entry gets its own table and ends up in here
+    private Map<String, long[]> entries;
+
+    private KnitJsonReader(JsonParser parser, DependencyGraph.Builder dependenciesTable, AnalysisProgress progress) {
+        this.parser = parser;
+        this.progress = progress;
+        this.dependenciesTable = dependenciesTable;
+    }
+
+    /**
+     * read knit.json from a stream, the stream is not closed
+     * @param in content of knit.json
+     * @param dependenciesTable receives every dependency found
+     * @throws IOException if the content cannot be read or is not valid json
+     */
+    public static void read(InputStream in, DependencyGraph.Builder dependenciesTable) throws IOException {
+        read(in, dependenciesTable, AnalysisProgress.NONE);
+    }
+
+    /**
+     * @param progress checked once per top-level class entry
+     */
+    public static void read(InputStream in, DependencyGraph.Builder dependenciesTable, AnalysisProgress progress) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            new KnitJsonReader(parser, dependenciesTable, progress).readRoot(null);
+        }
+    }
+
+    public static void read(String jsonContent, DependencyGraph.Builder dependenciesTable) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(jsonContent)) {
+            new KnitJsonReader(parser, dependenciesTable, AnalysisProgress.NONE).readRoot(null);
+        }
+    }
+
+    /**
+     * read knit.json keeping the dependencies of every top-level class entry apart,
+     * so two versions of the file can be compared entry by entry
+     * @param in content of knit.json, the stream is not closed
+     * @param names table shared by every entry (and by earlier reads), so ids stay comparable
+     * @return entry key as written in knit.json, and the sorted packed edges (see DependencyGraph.Builder) it contributes
+     */
+    public static Map<String, long[]> readEntries(InputStream in, ClassNameTable names) throws IOException {
+        return readEntries(in, names, AnalysisProgress.NONE);
+    }
+
+    /**
+     * @param progress checked once per top-level class entry
+     */
+    public static Map<String, long[]> readEntries(InputStream in, ClassNameTable names, AnalysisProgress progress) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            KnitJsonReader reader = new KnitJsonReader(parser, null, progress);
+            reader.entries = new HashMap<>();
+            reader.readRoot(names);
+            return reader.entries;
+        }
+    }
+
+    /**
+     * @param entryNames table for the per-entry tables, only used by readEntries
+     */
+    private void readRoot(ClassNameTable entryNames) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return; // empty content or not a knit.json
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            progress.checkpoint();
+            // always store the . format instead of the / format
+            String className = parser.currentName();
+            if (entries != null) {
+                dependenciesTable = new DependencyGraph.Builder(entryNames);
+            }
+            ClassNameTokenizer.ClassName formatted = tokenizer.className(className.replace("/", "."));
+            formatted.addTo(dependenciesTable);
+            String formattedClassName = formatted.name;
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                readClass(formattedClassName);
+            } else {
+                parser.skipChildren();
+            }
+            if (entries != null) {
+                entries.put(className, dependenciesTable.edges());
+            }
+        }
+    }
+
+    // cached OrganiseHelpers.processClassName
+    private String processClassName(String raw) {
+        ClassNameTokenizer.ClassName className = tokenizer.className(raw);
+        className.addTo(dependenciesTable);
+        return className.name;
+    }
+
+    private void readClass(String formattedClassName) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "parent":
+                    readParent(formattedClassName, value);
+                    break;
+                case "providers":
+                    readProviders(value);
+                    break;
+                case "composite":
+                    readComposite(formattedClassName, value);
+                    break;
+                case "injections":
+                    readInjections(formattedClassName, value);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+    }
+
+    // there should be only one parent per class, only the first one is used
+    private void readParent(String formattedClassName, JsonToken value) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        boolean first = true;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (first && parser.currentToken().isScalarValue()) {
+                String parent = processClassName(parser.getText());
+                OrganiseHelpers.insertADependency(dependenciesTable, formattedClassName, parent);
+            }
+            first = false;
+            parser.skipChildren();
+        }
+    }
+
+    private void readProviders(JsonToken value) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() == JsonToken.START_OBJECT) {
+                readProvider();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readProvider() throws IOException {
+        String childClass = null;
+        // parameters may come before the provider field, keep them until the provider is known
+        List<String> parameters = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals("provider") && value.isScalarValue()) {
+                ClassNameTokenizer.Dependency dependency = tokenizer.dependency(parser.getText());
+                dependency.addTo(dependenciesTable);
+                childClass = dependency.child.name;
+            } else if (field.equals("parameters") && value == JsonToken.START_ARRAY) {
+                // parameters of each provider if exists is always a string[] according to observation, not an Object[]
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (parser.currentToken().isScalarValue()) {
+                        parameters.add(processClassName(parser.getText()));
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (childClass != null) {
+            for (String parameter : parameters) {
+                OrganiseHelpers.insertADependency(dependenciesTable, childClass, parameter);
+            }
+        }
+    }
+
+    private void readComposite(String formattedClassName, JsonToken value) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (parser.nextToken().isScalarValue()) {
+                String composite = processClassName(parser.getText());
+                OrganiseHelpers.insertADependency(dependenciesTable, formattedClassName, composite);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readInjections(String formattedClassName, JsonToken value) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String childClass = readInjection();
+            if (childClass != null) {
+                OrganiseHelpers.insertADependency(dependenciesTable, formattedClassName, childClass);
+            }
+        }
+    }
+
+    /**
+     * for analysing dependencies in each injection method, parameters are injections themselves.
+     * the parser is positioned on the START_OBJECT of the injection
+     * @return the (processed) class of the injection's methodId, null if it has none.
+     *         the caller, one level lower, depends on it
+     */
+    private String readInjection() throws IOException {
+        String childClass = null;
+        // inner level classes, the child class depends on them once it is known
+        List<String> innerClasses = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals("methodId") && value.isScalarValue()) {
+                ClassNameTokenizer.Dependency dependency = tokenizer.dependency(parser.getText());
+                dependency.addTo(dependenciesTable);
+                childClass = dependency.child.name;
+            } else if (field.equals("parameters") && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (parser.currentToken() == JsonToken.START_OBJECT) {
+                        String innerClass = readInjection();
+                        if (innerClass != null) {
+                            innerClasses.add(innerClass);
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (childClass != null) {
+            for (String innerClass : innerClasses) {
+                OrganiseHelpers.insertADependency(dependenciesTable, childClass, innerClass);
+            }
+        }
+        return childClass;
+    }
+}
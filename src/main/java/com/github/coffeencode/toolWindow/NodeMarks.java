@@ -0,0 +1,55 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.Arrays;
+
+/**
+ * a set of dense ids (classes, components) for traversals that run many times over the same graph.
+ * A mark is the number of the current round, so clear() starts a new round in O(1) instead of wiping an array
+ * per traversal; the array is only really wiped once the round number wraps around.
+ * Not thread safe, every thread needs its own
+ */
+public class NodeMarks {
+    private final int[] stamp;
+    // never 0, so a fresh array marks nothing
+    private int round = 1;
+
+    /**
+     * @param size ids from 0 to size - 1
+     */
+    public NodeMarks(int size) {
+        stamp = new int[size];
+    }
+
+    public int size() {
+        return stamp.length;
+    }
+
+    /**
+     * unmark everything
+     */
+    public void clear() {
+        if (++round == 0) {
+            Arrays.fill(stamp, 0);
+            round = 1;
+        }
+    }
+
+    /**
+     * @return true if the id was not marked before
+     */
+    public boolean mark(int id) {
+        if (stamp[id] == round) {
+            return false;
+        }
+        stamp[id] = round;
+        return true;
+    }
+
+    public boolean isMarked(int id) {
+        return stamp[id] == round;
+    }
+
+    public void unmark(int id) {
+        stamp[id] = 0;
+    }
+}
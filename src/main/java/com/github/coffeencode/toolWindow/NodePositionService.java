@@ -0,0 +1,81 @@
+package com.github.coffeencode.toolWindow;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.components.StoragePathMacros;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * keeps the graph view's node positions with the project, in the workspace file as they are
+ * personal and should not end up in version control. Registered in plugin.xml
+ */
+@State(name = "DependenciesVisualisationPositions", storages = @Storage(StoragePathMacros.WORKSPACE_FILE))
+public class NodePositionService implements PersistentStateComponent<NodePositionService.PositionsState> {
+    private PositionsState state = new PositionsState();
+
+    public static NodePositionService getInstance(Project project) {
+        return project.getService(NodePositionService.class);
+    }
+
+    // the platform may save from any thread, the view writes from the UI thread
+    @Override
+    public synchronized PositionsState getState() {
+        PositionsState copy = new PositionsState();
+        copy.positions.putAll(state.positions);
+        copy.expandedPackages.addAll(state.expandedPackages);
+        return copy;
+    }
+
+    @Override
+    public synchronized void loadState(@NotNull PositionsState state) {
+        this.state = state;
+    }
+
+    /**
+     * @return the positions of the last session, empty if there are none or they cannot be read
+     */
+    public synchronized NodePositions load() {
+        NodePositions positions = new NodePositions();
+        for (Map.Entry<String, String> entry : state.positions.entrySet()) {
+            String value = entry.getValue();
+            int comma = value.indexOf(',');
+            if (comma == -1) {
+                continue;
+            }
+            try {
+                positions.put(entry.getKey(), Double.parseDouble(value.substring(0, comma)),
+                        Double.parseDouble(value.substring(comma + 1)));
+            } catch (NumberFormatException ignored) {
+                // hand edited workspace file, the unit just gets laid out again
+            }
+        }
+        positions.setExpandedPackages(state.expandedPackages);
+        return positions;
+    }
+
+    public synchronized void save(NodePositions positions) {
+        PositionsState saved = new PositionsState();
+        for (Map.Entry<String, double[]> entry : positions.all().entrySet()) {
+            double[] position = entry.getValue();
+            // whole pixels are enough and keep the workspace file small
+            saved.positions.put(entry.getKey(), Math.round(position[0]) + "," + Math.round(position[1]));
+        }
+        saved.expandedPackages.addAll(positions.expandedPackages());
+        state = saved;
+    }
+
+    /**
+     * serialised by the platform, unit key -> "x,y"
+     */
+    public static class PositionsState {
+        public Map<String, String> positions = new HashMap<>();
+        public List<String> expandedPackages = new ArrayList<>();
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * where every unit of the graph view was (top-left corner, by PackageClusters.key) and which packages
+ * were open, so the view can come back the same way. Kept across sessions by NodePositionService
+ */
+public class NodePositions {
+    private final Map<String, double[]> positions = new HashMap<>();
+    private final List<String> expandedPackages = new ArrayList<>();
+
+    /**
+     * @return x and y, null if the unit was never placed
+     */
+    public double[] get(String key) {
+        return positions.get(key);
+    }
+
+    public void put(String key, double x, double y) {
+        positions.put(key, new double[]{x, y});
+    }
+
+    /**
+     * forget the units that are gone, so classes removed from the project do not pile up in the workspace file
+     */
+    public void retain(Predicate<String> exists) {
+        positions.keySet().removeIf(key -> !exists.test(key));
+    }
+
+    public boolean isEmpty() {
+        return positions.isEmpty();
+    }
+
+    public Map<String, double[]> all() {
+        return positions;
+    }
+
+    public List<String> expandedPackages() {
+        return expandedPackages;
+    }
+
+    public void setExpandedPackages(List<String> packageNames) {
+        expandedPackages.clear();
+        expandedPackages.addAll(packageNames);
+    }
+}
@@ -0,0 +1,287 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * package tree over the class names (in the . format processClassName produces), deciding what the
+ * graph view shows: a collapsed package is one cluster standing for every class below it,
+ * an expanded package shows its sub packages and classes.
+ * What is shown is called a unit, encoded as one int: classes are even (id * 2), packages odd (id * 2 + 1).
+ */
+public class PackageClusters {
+    private static final int ROOT = 0;
+    private static final String PACKAGE_KEY = "package:";
+
+    private final Map<String, Integer> classIds = new HashMap<>();
+    private final List<String> classNames = new ArrayList<>();
+    // package of every class, -1 once the class was removed
+    private final List<Integer> classPackage = new ArrayList<>();
+
+    private final Map<String, Integer> packageIds = new HashMap<>();
+    private final List<Package> packages = new ArrayList<>();
+
+    public PackageClusters() {
+        packages.add(new Package("", -1));
+        packages.get(ROOT).expanded = true;
+        packageIds.put("", ROOT);
+    }
+
+    /**
+     * @return id of the class, the same one if it was added before
+     */
+    public int addClass(String className) {
+        Integer id = classIds.get(className);
+        if (id != null) {
+            if (classPackage.get(id) == -1) {
+                attach(id, packageFor(className));
+            }
+            return id;
+        }
+        id = classNames.size();
+        classIds.put(className, id);
+        classNames.add(className);
+        classPackage.add(-1);
+        attach(id, packageFor(className));
+        return id;
+    }
+
+    /**
+     * take the class out of its package, e.g. when it no longer has any dependency
+     */
+    public void removeClass(String className) {
+        Integer id = classIds.get(className);
+        if (id == null || classPackage.get(id) == -1) {
+            return;
+        }
+        int p = classPackage.get(id);
+        packages.get(p).classes.remove(id);
+        for (; p != -1; p = packages.get(p).parent) {
+            packages.get(p).classCount--;
+        }
+        classPackage.set(id, -1);
+    }
+
+    private void attach(int id, int p) {
+        classPackage.set(id, p);
+        packages.get(p).classes.add(id);
+        for (; p != -1; p = packages.get(p).parent) {
+            packages.get(p).classCount++;
+        }
+    }
+
+    // package of the class, created with all its parents if needed.
+    // dots inside generic arguments do not count, e.g. java.util.List<out knit.demo.Item> is in java.util
+    private int packageFor(String className) {
+        int generic = className.indexOf('<');
+        int end = className.lastIndexOf('.', generic == -1 ? className.length() : generic);
+        if (end <= 0) {
+            return ROOT;
+        }
+        String name = className.substring(0, end);
+        Integer id = packageIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        int parent = packageFor(name);
+        id = packages.size();
+        packages.add(new Package(name, parent));
+        packages.get(parent).packages.add(id);
+        packageIds.put(name, id);
+        return id;
+    }
+
+    public int classId(String className) {
+        Integer id = classIds.get(className);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return false for a class that was never added, or was removed since
+     */
+    public boolean hasClass(String className) {
+        int id = classId(className);
+        return id != -1 && classPackage.get(id) != -1;
+    }
+
+    public String className(int id) {
+        return classNames.get(id);
+    }
+
+    public static int classUnit(int classId) {
+        return classId * 2;
+    }
+
+    public static int packageUnit(int packageId) {
+        return packageId * 2 + 1;
+    }
+
+    public static boolean isPackage(int unit) {
+        return (unit & 1) == 1;
+    }
+
+    /**
+     * @return the class or package id behind a unit
+     */
+    public static int index(int unit) {
+        return unit >>> 1;
+    }
+
+    /**
+     * @return the unit a class is shown as: itself, or the outermost collapsed package above it
+     */
+    public int unitOf(int classId) {
+        int unit = classUnit(classId);
+        for (int p = classPackage.get(classId); p != -1; p = packages.get(p).parent) {
+            if (!packages.get(p).expanded) {
+                unit = packageUnit(p);
+            }
+        }
+        return unit;
+    }
+
+    /**
+     * @return the package directly containing the unit, -1 for the root
+     */
+    public int parentPackage(int unit) {
+        return isPackage(unit) ? packages.get(index(unit)).parent : classPackage.get(index(unit));
+    }
+
+    /**
+     * stable name of a unit across sessions: the class name, or "package:" and the package name
+     * (a class named like a package, e.g. an outer class of nested classes, must not clash with it)
+     */
+    public String key(int unit) {
+        return isPackage(unit) ? PACKAGE_KEY + packages.get(index(unit)).name : classNames.get(index(unit));
+    }
+
+    /**
+     * @return false if the unit of the key, see key(int), is gone: a removed class or a package left without classes
+     */
+    public boolean hasKey(String key) {
+        if (!key.startsWith(PACKAGE_KEY)) {
+            return hasClass(key);
+        }
+        Integer id = packageIds.get(key.substring(PACKAGE_KEY.length()));
+        return id != null && packages.get(id).classCount > 0;
+    }
+
+    public String label(int unit) {
+        if (!isPackage(unit)) {
+            return classNames.get(index(unit));
+        }
+        Package p = packages.get(index(unit));
+        return p.name + " (" + p.classCount + ")";
+    }
+
+    public boolean isExpanded(int packageId) {
+        return packages.get(packageId).expanded;
+    }
+
+    public void expand(int packageId) {
+        packages.get(packageId).expanded = true;
+    }
+
+    /**
+     * open a package by name, e.g. one that was open in the last session
+     * @return false if there is no such package
+     */
+    public boolean expand(String packageName) {
+        Integer id = packageIds.get(packageName);
+        if (id == null) {
+            return false;
+        }
+        expand(id);
+        return true;
+    }
+
+    /**
+     * @return names of every open package, the root left out
+     */
+    public List<String> expandedPackages() {
+        List<String> names = new ArrayList<>();
+        for (int id = ROOT + 1; id < packages.size(); id++) {
+            if (packages.get(id).expanded) {
+                names.add(packages.get(id).name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * every unit currently shown, packages without classes are left out
+     */
+    public List<Integer> visibleUnits() {
+        List<Integer> units = new ArrayList<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(ROOT);
+        while (!stack.isEmpty()) {
+            Package p = packages.get(stack.pop());
+            for (int child : p.packages) {
+                if (packages.get(child).classCount == 0) {
+                    continue;
+                }
+                if (packages.get(child).expanded) {
+                    stack.push(child);
+                } else {
+                    units.add(packageUnit(child));
+                }
+            }
+            for (int classId : p.classes) {
+                units.add(classUnit(classId));
+            }
+        }
+        return units;
+    }
+
+    /**
+     * open packages level by level as long as no more than limit units end up visible.
+     * a package with a single child is always opened, it would only add a level of clicking
+     * @param limit how many units the first view may show
+     */
+    public void expandInitially(int limit) {
+        int visible = 0;
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(ROOT);
+        while (!queue.isEmpty()) {
+            int id = queue.poll();
+            Package p = packages.get(id);
+            int children = p.classes.size();
+            for (int child : p.packages) {
+                if (packages.get(child).classCount > 0) {
+                    children++;
+                }
+            }
+            // opening replaces the package's own unit by its children
+            int after = visible - (id == ROOT ? 0 : 1) + children;
+            if (id != ROOT && children > 1 && after > limit) {
+                continue;
+            }
+            p.expanded = true;
+            visible = after;
+            for (int child : p.packages) {
+                if (packages.get(child).classCount > 0) {
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    private static class Package {
+        final String name;
+        final int parent;
+        final List<Integer> packages = new ArrayList<>();
+        final List<Integer> classes = new ArrayList<>();
+        int classCount;
+        boolean expanded;
+
+        Package(String name, int parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+    }
+}
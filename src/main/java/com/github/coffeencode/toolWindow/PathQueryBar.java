@@ -0,0 +1,100 @@
+package com.github.coffeencode.toolWindow;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBPanel;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * "why does A depend on B": select two classes in the graph (the second with ctrl held), then ask for the
+ * shortest chain of dependencies from the first to the second, or every chain up to a length.
+ * The chains are highlighted in the view and listed in the bar. Queries run on the executor that also applies
+ * updates of knit.json, so they always see a whole version of the analysis
+ */
+public class PathQueryBar extends JBPanel<PathQueryBar> {
+    // all paths stops after this many, there can be exponentially many
+    private static final int MAX_PATHS = 20;
+    private static final int DEFAULT_MAX_LENGTH = 6;
+
+    private final GraphVisualiser visualiser;
+    private final IncrementalAnalysis analysis;
+    private final Executor executor;
+    private final JSpinner maxLength = new JSpinner(new SpinnerNumberModel(DEFAULT_MAX_LENGTH, 1, 30, 1));
+    private final JBLabel result = new JBLabel("Select two classes to see how the first depends on the second.");
+
+    public PathQueryBar(GraphVisualiser visualiser, IncrementalAnalysis analysis, Executor executor) {
+        super(new FlowLayout(FlowLayout.LEFT));
+        this.visualiser = visualiser;
+        this.analysis = analysis;
+        this.executor = executor;
+
+        JButton shortest = new JButton("Shortest path");
+        shortest.addActionListener(e -> query(false));
+        JButton all = new JButton("All paths");
+        all.addActionListener(e -> query(true));
+        JButton clear = new JButton("Clear");
+        clear.addActionListener(e -> {
+            visualiser.highlightPaths(List.of());
+            result.setText("");
+        });
+
+        add(shortest);
+        add(all);
+        add(new JBLabel("up to"));
+        add(maxLength);
+        add(new JBLabel("dependencies"));
+        add(clear);
+        add(result);
+    }
+
+    private void query(boolean all) {
+        List<String> selected = visualiser.getSelectedClasses();
+        if (selected.size() != 2) {
+            result.setText("Select exactly two classes (open packages with a double-click), the dependent one first.");
+            return;
+        }
+        String source = selected.get(0);
+        String target = selected.get(1);
+        int length = (Integer) maxLength.getValue();
+        result.setText("Searching...");
+        executor.execute(() -> {
+            DependencyPaths paths = analysis.getPaths();
+            List<List<String>> found = all
+                    ? paths.paths(source, target, length, MAX_PATHS)
+                    : nonEmpty(paths.shortestPath(source, target));
+            ApplicationManager.getApplication().invokeLater(() -> show(source, target, all ? length : -1, found));
+        });
+    }
+
+    private static List<List<String>> nonEmpty(List<String> path) {
+        return path.isEmpty() ? List.of() : List.of(path);
+    }
+
+    // length -1 for the shortest path, which has no limit
+    private void show(String source, String target, int length, List<List<String>> found) {
+        visualiser.highlightPaths(found);
+        if (found.isEmpty()) {
+            result.setText(source + " does not depend on " + target
+                    + (length == -1 ? "." : " through " + length + " dependencies or less."));
+            return;
+        }
+        // one line per chain, the label takes html
+        StringBuilder text = new StringBuilder("<html>");
+        for (List<String> path : found) {
+            text.append(escape(String.join(" \u2192 ", path))).append("<br>");
+        }
+        if (found.size() == MAX_PATHS) {
+            text.append("only the first ").append(MAX_PATHS).append(" are shown");
+        }
+        result.setText(text.append("</html>").toString());
+    }
+
+    // generics in class names, e.g. java.util.List<a.B>
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,208 @@
+package com.github.coffeencode.toolWindow;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * where the time of one run of the pipeline went: every phase (reading, analysing, layout, showing) with its
+ * duration and peak heap, the analyses that ran alongside each other inside a phase, and the size of the graph.
+ * Every phase is also a JFR event (see PhaseEvent), so a flight recording of the IDE shows them next to GC and
+ * allocation. Fed through the AnalysisProgress hooks, phases may start on different threads one after the other.
+ */
+public class PipelineStats {
+    private static final long MB = 1024 * 1024;
+
+    private final List<Measurement> phases = new ArrayList<>();
+    // analyses that ran at the same time inside a phase, e.g. the cycle and the redundancy search
+    private final List<Measurement> tasks = new ArrayList<>();
+
+    private String phaseName;
+    private long phaseStart;
+    private PhaseEvent phaseEvent;
+
+    private int classes;
+    private int dependencies;
+    private int cyclicDependencies;
+    private int classesInCycles;
+    private int redundantDependencies;
+    private boolean finished;
+
+    /**
+     * end the running phase and start the next one
+     * @param name readable description, the same ones AnalysisProgress.phase gets
+     */
+    public synchronized void phase(String name) {
+        endPhase();
+        resetPeakHeap();
+        phaseName = name;
+        phaseEvent = new PhaseEvent(name);
+        phaseEvent.begin();
+        phaseStart = System.nanoTime();
+    }
+
+    /**
+     * @param nanos how long a task inside the running phase took, measured by whoever ran it
+     */
+    public synchronized void task(String name, long nanos) {
+        tasks.add(new Measurement(name, nanos, -1));
+    }
+
+    /**
+     * the size of what was analysed
+     */
+    public synchronized void sizes(AnalysisResult result) {
+        classes = result.graph().nodeCount();
+        dependencies = result.graph().edgeCount();
+        cyclicDependencies = result.cyclicEdgeCount();
+        classesInCycles = result.classesInCycles();
+        redundantDependencies = result.redundantEdgeCount();
+    }
+
+    /**
+     * end the last phase and record the sizes as a JFR event, later calls to task are still listed
+     */
+    public synchronized void finish() {
+        endPhase();
+        if (finished) {
+            return;
+        }
+        finished = true;
+        SummaryEvent event = new SummaryEvent();
+        event.totalDuration = totalNanos();
+        event.classes = classes;
+        event.dependencies = dependencies;
+        event.cyclicDependencies = cyclicDependencies;
+        event.classesInCycles = classesInCycles;
+        event.redundantDependencies = redundantDependencies;
+        event.commit();
+    }
+
+    private void endPhase() {
+        if (phaseName == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - phaseStart;
+        long peakHeap = peakHeap();
+        phaseEvent.peakHeap = peakHeap;
+        phaseEvent.commit();
+        phases.add(new Measurement(phaseName, nanos, peakHeap));
+        phaseName = null;
+    }
+
+    /**
+     * @return time of every finished phase together
+     */
+    public synchronized long totalNanos() {
+        long total = 0;
+        for (Measurement phase : phases) {
+            total += phase.nanos;
+        }
+        return total;
+    }
+
+    /**
+     * @return a few lines for the IDE log and the stats footer, one per phase and task
+     */
+    public synchronized String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Dependency analysis took %d ms%n", totalNanos() / 1_000_000));
+        for (Measurement phase : phases) {
+            report.append(String.format("  %-56s %7d ms   peak heap %5d MB%n",
+                    phase.name, phase.nanos / 1_000_000, phase.peakHeap / MB));
+        }
+        for (Measurement task : tasks) {
+            report.append(String.format("    %-54s %7d ms%n", task.name, task.nanos / 1_000_000));
+        }
+        report.append(String.format("  %d classes, %d dependencies, %d cyclic (%d classes in cycles), %d redundant",
+                classes, dependencies, cyclicDependencies, classesInCycles, redundantDependencies));
+        return report.toString();
+    }
+
+    // peaks of the heap pools are tracked by the JVM, starting every phase from the current usage
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    // sum of the pools' peaks, they may peak at different moments so this is an upper bound
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static class Measurement {
+        final String name;
+        final long nanos;
+        // -1 if not measured
+        final long peakHeap;
+
+        Measurement(String name, long nanos, long peakHeap) {
+            this.name = name;
+            this.nanos = nanos;
+            this.peakHeap = peakHeap;
+        }
+    }
+
+    /**
+     * one phase of the pipeline, or one of the analyses running inside a phase (see AnalysisExecutor)
+     */
+    @Name("com.github.coffeencode.AnalysisPhase")
+    @Label("Dependency Analysis Phase")
+    @Category({"Dependencies Visualisation"})
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Peak Heap")
+        @Description("Highest heap usage during the phase, 0 for analyses running inside a phase")
+        @DataAmount
+        long peakHeap;
+
+        PhaseEvent(String phase) {
+            this.phase = phase;
+        }
+    }
+
+    @Name("com.github.coffeencode.AnalysisSummary")
+    @Label("Dependency Analysis Summary")
+    @Category({"Dependencies Visualisation"})
+    static class SummaryEvent extends Event {
+        @Label("Duration Of All Phases")
+        @Timespan(Timespan.NANOSECONDS)
+        long totalDuration;
+
+        @Label("Classes")
+        int classes;
+
+        @Label("Dependencies")
+        int dependencies;
+
+        @Label("Cyclic Dependencies")
+        int cyclicDependencies;
+
+        @Label("Classes In Cycles")
+        int classesInCycles;
+
+        @Label("Redundant Dependencies")
+        int redundantDependencies;
+    }
+}
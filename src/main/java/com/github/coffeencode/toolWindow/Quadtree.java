@@ -0,0 +1,213 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * rectangles by key, found again by the area they overlap: what is inside the viewport, what is under the mouse.
+ * Every rectangle is kept in the smallest square of the tree that holds it whole, so a query only looks at the
+ * squares that overlap the area and at the rectangles in them. A square is split in four once it holds more
+ * than CAPACITY rectangles, the root grows to twice its size whenever a rectangle lies outside of it.
+ * Query and insert are O(log n) for small rectangles, long ones (edges across the graph) stay near the root.
+ * Every key knows its slot in its square, so removing and moving one is O(1) however many share the square.
+ * Not thread safe
+ */
+public class Quadtree {
+    // rectangles a square holds before it is split
+    private static final int CAPACITY = 16;
+    // squares are not split further below this size, rectangles piled on one spot stay in one list
+    private static final double MIN_SIZE = 8;
+
+    private Square root = new Square(0, 0, 1024);
+    // where every rectangle is
+    private final Map<Long, Slot> slots = new HashMap<>();
+
+    public int size() {
+        return slots.size();
+    }
+
+    public boolean contains(long key) {
+        return slots.containsKey(key);
+    }
+
+    /**
+     * add a rectangle, or move it if the key is there already
+     */
+    public void put(long key, double x, double y, double width, double height) {
+        if (!Double.isFinite(x) || !Double.isFinite(y) || !Double.isFinite(width) || !Double.isFinite(height)) {
+            throw new IllegalArgumentException("not a rectangle: " + x + ", " + y + ", " + width + ", " + height);
+        }
+        Slot slot = slots.get(key);
+        if (slot != null) {
+            remove(slot);
+        } else {
+            slot = new Slot();
+            slots.put(key, slot);
+        }
+        while (!root.holds(x, y, width, height)) {
+            grow(x, y);
+        }
+        Square square = root;
+        while (true) {
+            if (square.children == null && square.count >= CAPACITY && square.size / 2 >= MIN_SIZE) {
+                split(square);
+            }
+            Square child = square.children == null ? null : square.childHolding(x, y, width, height);
+            if (child == null) {
+                break;
+            }
+            square = child;
+        }
+        add(square, slot, key, x, y, width, height);
+    }
+
+    public void remove(long key) {
+        Slot slot = slots.remove(key);
+        if (slot != null) {
+            remove(slot);
+        }
+    }
+
+    public void clear() {
+        root = new Square(0, 0, 1024);
+        slots.clear();
+    }
+
+    /**
+     * every rectangle that overlaps the area (touching counts), in no particular order
+     */
+    public void query(double x, double y, double width, double height, LongConsumer found) {
+        Square[] stack = new Square[16];
+        int top = 0;
+        stack[0] = root;
+        while (top >= 0) {
+            Square square = stack[top--];
+            if (!square.overlaps(x, y, width, height)) {
+                continue;
+            }
+            for (int i = 0; i < square.count; i++) {
+                int b = i * 4;
+                double[] bounds = square.bounds;
+                if (bounds[b] <= x + width && x <= bounds[b] + bounds[b + 2]
+                        && bounds[b + 1] <= y + height && y <= bounds[b + 1] + bounds[b + 3]) {
+                    found.accept(square.keys[i]);
+                }
+            }
+            if (square.children != null) {
+                if (top + 4 >= stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                for (Square child : square.children) {
+                    stack[++top] = child;
+                }
+            }
+        }
+    }
+
+    // a new root twice the size, towards the rectangle, with the old root as one of its quarters
+    private void grow(double x, double y) {
+        Square old = root;
+        double left = x < old.x ? old.x - old.size : old.x;
+        double top = y < old.y ? old.y - old.size : old.y;
+        root = new Square(left, top, old.size * 2);
+        split(root);
+        root.children[(old.x > left ? 1 : 0) + (old.y > top ? 2 : 0)] = old;
+    }
+
+    // four quarters, and every rectangle that fits in one of them moves down
+    private void split(Square square) {
+        double half = square.size / 2;
+        square.children = new Square[]{
+                new Square(square.x, square.y, half),
+                new Square(square.x + half, square.y, half),
+                new Square(square.x, square.y + half, half),
+                new Square(square.x + half, square.y + half, half)};
+        int kept = 0;
+        for (int i = 0; i < square.count; i++) {
+            int b = i * 4;
+            double[] bounds = square.bounds;
+            Slot slot = slots.get(square.keys[i]);
+            Square child = square.childHolding(bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3]);
+            if (child == null) {
+                square.keys[kept] = square.keys[i];
+                System.arraycopy(bounds, b, bounds, kept * 4, 4);
+                slot.index = kept++;
+            } else {
+                add(child, slot, square.keys[i], bounds[b], bounds[b + 1], bounds[b + 2], bounds[b + 3]);
+            }
+        }
+        square.count = kept;
+    }
+
+    private static void add(Square square, Slot slot, long key, double x, double y, double width, double height) {
+        slot.square = square;
+        slot.index = square.count;
+        square.add(key, x, y, width, height);
+    }
+
+    // the last rectangle of the square takes the place of the removed one
+    private void remove(Slot slot) {
+        Square square = slot.square;
+        int last = --square.count;
+        if (slot.index != last) {
+            square.keys[slot.index] = square.keys[last];
+            System.arraycopy(square.bounds, last * 4, square.bounds, slot.index * 4, 4);
+            slots.get(square.keys[slot.index]).index = slot.index;
+        }
+    }
+
+    private static class Slot {
+        Square square;
+        int index;
+    }
+
+    private static class Square {
+        final double x;
+        final double y;
+        final double size;
+        Square[] children;
+        // the rectangles kept here: keys, and x, y, width, height of each in a row
+        long[] keys = new long[4];
+        double[] bounds = new double[16];
+        int count;
+
+        Square(double x, double y, double size) {
+            this.x = x;
+            this.y = y;
+            this.size = size;
+        }
+
+        boolean holds(double rx, double ry, double width, double height) {
+            return rx >= x && ry >= y && rx + width <= x + size && ry + height <= y + size;
+        }
+
+        boolean overlaps(double rx, double ry, double width, double height) {
+            return rx <= x + size && x <= rx + width && ry <= y + size && y <= ry + height;
+        }
+
+        Square childHolding(double rx, double ry, double width, double height) {
+            for (Square child : children) {
+                if (child.holds(rx, ry, width, height)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        void add(long key, double rx, double ry, double width, double height) {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                bounds = Arrays.copyOf(bounds, count * 8);
+            }
+            keys[count] = key;
+            int b = count * 4;
+            bounds[b] = rx;
+            bounds[b + 1] = ry;
+            bounds[b + 2] = width;
+            bounds[b + 3] = height;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * answers "can A reach B" without walking the whole graph, built once per graph (GRAIL).
+ * Works on the condensation: classes of one strongly connected component reach each other, and components
+ * form a DAG. Every component gets one interval [low, rank] per labeling, rank being its position in a
+ * post-order of a randomised depth first search and low the smallest rank below it. If A reaches B,
+ * every interval of B lies inside the interval of A, so one interval that does not is a definite no.
+ * The component numbers of StronglyConnectedComponents are a topological order as well (edges go from
+ * higher to lower numbers), which rules out another part of the pairs.
+ * Only when every check passes the condensation is searched, skipping components whose intervals already
+ * rule them out. Immutable once built, queries may run on any thread.
+ */
+public class ReachabilityIndex {
+    // more labelings rule out more pairs at once, at LABELINGS ints per component and labeling
+    static final int LABELINGS = 3;
+
+    private final StronglyConnectedComponents components;
+    private final int[][] successors;
+    private final int[][] predecessors;
+    // low and rank of component c in labeling i at c * LABELINGS + i
+    private final int[] low;
+    private final int[] rank;
+
+    public ReachabilityIndex(DependencyGraph graph) {
+        this(new StronglyConnectedComponents(graph));
+    }
+
+    /**
+     * @param components of the graph to index, e.g. shared with the analyses
+     */
+    public ReachabilityIndex(StronglyConnectedComponents components) {
+        this.components = components;
+        successors = components.condensedSuccessors();
+        predecessors = StronglyConnectedComponents.invert(successors);
+        int count = components.componentCount();
+        low = new int[count * LABELINGS];
+        rank = new int[count * LABELINGS];
+        // a fixed seed, so the same graph always gets the same index
+        Random random = new Random(count);
+        // every labeling is a search of its own, the marks are cleared in between
+        NodeMarks visited = new NodeMarks(count);
+        for (int i = 0; i < LABELINGS; i++) {
+            visited.clear();
+            label(i, random, visited);
+        }
+    }
+
+    /**
+     * one labeling: post-order ranks of an iterative depth first search from every root of the condensation,
+     * roots and successors taken in a random order so the labelings differ
+     */
+    private void label(int labeling, Random random, NodeMarks visited) {
+        int count = components.componentCount();
+        int[] callComponent = new int[count];
+        // how many successors were visited, and where the random order starts
+        int[] callEdge = new int[count];
+        int[] callOffset = new int[count];
+        int nextRank = 0;
+
+        int[] roots = new int[count];
+        int rootCount = 0;
+        for (int c = 0; c < count; c++) {
+            if (predecessors[c].length == 0) {
+                roots[rootCount++] = c;
+            }
+        }
+        shuffle(roots, rootCount, random);
+
+        for (int r = 0; r < rootCount; r++) {
+            int callTop = 0;
+            callComponent[0] = roots[r];
+            callEdge[0] = 0;
+            callOffset[0] = random.nextInt(Math.max(1, successors[roots[r]].length));
+            visited.mark(roots[r]);
+            low[roots[r] * LABELINGS + labeling] = Integer.MAX_VALUE;
+
+            while (callTop >= 0) {
+                int c = callComponent[callTop];
+                int[] next = successors[c];
+                if (callEdge[callTop] < next.length) {
+                    int successor = next[(callOffset[callTop] + callEdge[callTop]++) % next.length];
+                    if (visited.mark(successor)) {
+                        low[successor * LABELINGS + labeling] = Integer.MAX_VALUE;
+                        callTop++;
+                        callComponent[callTop] = successor;
+                        callEdge[callTop] = 0;
+                        callOffset[callTop] = random.nextInt(Math.max(1, successors[successor].length));
+                    } else {
+                        // already ranked, everything below it is inside its interval
+                        lower(c, low[successor * LABELINGS + labeling], labeling);
+                    }
+                    continue;
+                }
+
+                // every successor is ranked
+                int slot = c * LABELINGS + labeling;
+                rank[slot] = nextRank++;
+                low[slot] = Math.min(low[slot], rank[slot]);
+                callTop--;
+                if (callTop >= 0) {
+                    lower(callComponent[callTop], low[slot], labeling);
+                }
+            }
+        }
+    }
+
+    private void lower(int c, int value, int labeling) {
+        int slot = c * LABELINGS + labeling;
+        low[slot] = Math.min(low[slot], value);
+    }
+
+    private static void shuffle(int[] values, int size, Random random) {
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+    }
+
+    public StronglyConnectedComponents components() {
+        return components;
+    }
+
+    /**
+     * @return true if there is a path from source to target, of length 0 when both are the same class
+     */
+    public boolean canReach(int source, int target) {
+        return canReachComponent(components.componentOf(source), components.componentOf(target));
+    }
+
+    /**
+     * only the intervals and the topological order, no search: O(LABELINGS)
+     * @return false if source definitely cannot reach target, true if it may
+     */
+    public boolean mayReach(int source, int target) {
+        int from = components.componentOf(source);
+        int to = components.componentOf(target);
+        return from == to || mayReachComponent(from, to);
+    }
+
+    /**
+     * @return true if component from can reach component to in the condensation
+     */
+    public boolean canReachComponent(int from, int to) {
+        if (from == to) {
+            return true;
+        }
+        if (!mayReachComponent(from, to)) {
+            return false;
+        }
+        // the intervals cannot tell, search the components that may still lie on a path
+        BitSet visited = new BitSet();
+        int[] stack = new int[successors[from].length + 1];
+        int top = 0;
+        stack[top++] = from;
+        visited.set(from);
+        while (top > 0) {
+            int c = stack[--top];
+            for (int successor : successors[c]) {
+                if (successor == to) {
+                    return true;
+                }
+                if (!visited.get(successor) && mayReachComponent(successor, to)) {
+                    visited.set(successor);
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top++] = successor;
+                }
+            }
+        }
+        return false;
+    }
+
+    // false means from definitely cannot reach to, true that it may
+    private boolean mayReachComponent(int from, int to) {
+        if (from < to) {
+            return false; // edges only go to lower component numbers
+        }
+        int fromSlot = from * LABELINGS;
+        int toSlot = to * LABELINGS;
+        for (int i = 0; i < LABELINGS; i++) {
+            if (low[toSlot + i] < low[fromSlot + i] || rank[toSlot + i] > rank[fromSlot + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.coffeencode.toolWindow;
+
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBPanel;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+/**
+ * collapsible footer of the tool window with the PipelineStats of the last run,
+ * one line with the total time, and every phase once it is opened
+ */
+public class StatsFooter extends JBPanel<StatsFooter> {
+    private final JBLabel toggle = new JBLabel();
+    private final JTextArea details = new JTextArea();
+    private PipelineStats stats;
+
+    public StatsFooter() {
+        super(new BorderLayout());
+        setBorder(BorderFactory.createEmptyBorder(2, 5, 2, 5));
+
+        toggle.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+        toggle.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                details.setVisible(!details.isVisible());
+                refresh();
+            }
+        });
+        add(toggle, BorderLayout.NORTH);
+
+        details.setEditable(false);
+        details.setOpaque(false);
+        details.setFont(new Font(Font.MONOSPACED, Font.PLAIN, toggle.getFont().getSize()));
+        details.setVisible(false);
+        add(details, BorderLayout.CENTER);
+    }
+
+    /**
+     * show the stats of a new run, must be called on the UI thread
+     */
+    public void show(PipelineStats stats) {
+        this.stats = stats;
+        refresh();
+    }
+
+    private void refresh() {
+        if (stats == null) {
+            return;
+        }
+        String arrow = details.isVisible() ? "\u25BE" : "\u25B8"; // down or right pointing triangle
+        toggle.setText(arrow + " Statistics: " + stats.totalNanos() / 1_000_000 + " ms");
+        details.setText(stats.report());
+        revalidate();
+        repaint();
+    }
+}
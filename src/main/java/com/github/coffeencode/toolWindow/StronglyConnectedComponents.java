@@ -0,0 +1,207 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.*;
+
+public class StronglyConnectedComponents {
+    private final DependencyGraph graph;
+    private final AnalysisProgress progress;
+    private final int[] componentOf;
+    private final int[] componentSize;
+    private final int componentCount;
+    private final int[] memberStart;
+    private final int[] members;
+
+    /**
+     * split the graph into strongly connected components (Tarjan)
+     * @param graph dependency graph of interest
+     */
+    public StronglyConnectedComponents(DependencyGraph graph) {
+        this(graph, AnalysisProgress.NONE);
+    }
+
+    /**
+     * @param progress checked while the components are searched
+     */
+    public StronglyConnectedComponents(DependencyGraph graph, AnalysisProgress progress) {
+        this.graph = graph;
+        this.progress = progress;
+        componentOf = new int[graph.nodeCount()];
+        componentCount = tarjan();
+        componentSize = new int[componentCount];
+        for (int component : componentOf) {
+            componentSize[component]++;
+        }
+
+        // group the members of each component next to each other
+        memberStart = new int[componentCount + 1];
+        for (int c = 0; c < componentCount; c++) {
+            memberStart[c + 1] = memberStart[c] + componentSize[c];
+        }
+        members = new int[graph.nodeCount()];
+        int[] fill = Arrays.copyOf(memberStart, componentCount);
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            members[fill[componentOf[node]]++] = node;
+        }
+    }
+
+    /**
+     * iterative Tarjan, so long provider chains cannot overflow the call stack.
+     * components are numbered in the order they are completed, which is a reverse
+     * topological order of the condensation: every edge between two components goes
+     * from a higher component number to a lower one.
+     * @return number of components
+     */
+    private int tarjan() {
+        int n = graph.nodeCount();
+        int[] index = new int[n];
+        int[] lowLink = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(index, -1);
+
+        int[] sccStack = new int[n];
+        int sccTop = 0;
+        // call stack of (node, position of the next child to visit)
+        int[] callNode = new int[n];
+        int[] callEdge = new int[n];
+        int callTop;
+
+        int nextIndex = 0;
+        int components = 0;
+        int steps = 0;
+        for (int root = 0; root < n; root++) {
+            if (index[root] != -1) {
+                continue;
+            }
+            callTop = 0;
+            callNode[0] = root;
+            callEdge[0] = 0;
+            index[root] = lowLink[root] = nextIndex++;
+            sccStack[sccTop++] = root;
+            onStack[root] = true;
+
+            while (callTop >= 0) {
+                if ((++steps & 0xFFF) == 0) {
+                    progress.checkpoint();
+                }
+                int node = callNode[callTop];
+                if (callEdge[callTop] < graph.outDegree(node)) {
+                    int child = graph.target(graph.edgeStart(node) + callEdge[callTop]++);
+                    if (index[child] == -1) {
+                        // descend into the child
+                        index[child] = lowLink[child] = nextIndex++;
+                        sccStack[sccTop++] = child;
+                        onStack[child] = true;
+                        callTop++;
+                        callNode[callTop] = child;
+                        callEdge[callTop] = 0;
+                    } else if (onStack[child]) {
+                        lowLink[node] = Math.min(lowLink[node], index[child]);
+                    }
+                    continue;
+                }
+
+                // all children done, node is the root of a component if its lowLink was not lowered
+                if (lowLink[node] == index[node]) {
+                    int member;
+                    do {
+                        member = sccStack[--sccTop];
+                        onStack[member] = false;
+                        componentOf[member] = components;
+                    } while (member != node);
+                    components++;
+                }
+                callTop--;
+                if (callTop >= 0) {
+                    int parent = callNode[callTop];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+            }
+        }
+        return components;
+    }
+
+    public DependencyGraph graph() {
+        return graph;
+    }
+
+    public int componentCount() {
+        return componentCount;
+    }
+
+    public int componentOf(int node) {
+        return componentOf[node];
+    }
+
+    public int componentSize(int component) {
+        return componentSize[component];
+    }
+
+    /** first position of the component's members, read them with member(position) */
+    public int memberStart(int component) {
+        return memberStart[component];
+    }
+
+    public int memberEnd(int component) {
+        return memberStart[component + 1];
+    }
+
+    public int member(int position) {
+        return members[position];
+    }
+
+    /**
+     * the condensation: every component collapsed to one node
+     * @return the distinct components every component depends on, all with lower numbers than the component
+     */
+    public int[][] condensedSuccessors() {
+        int[][] successors = new int[componentCount][];
+        int[] stamp = new int[componentCount];
+        Arrays.fill(stamp, -1);
+        int[] buffer = new int[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            int size = 0;
+            for (int m = memberStart(c); m < memberEnd(c); m++) {
+                int node = members[m];
+                for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                    int target = componentOf[graph.target(edge)];
+                    if (target != c && stamp[target] != c) {
+                        stamp[target] = c;
+                        buffer[size++] = target;
+                    }
+                }
+            }
+            successors[c] = Arrays.copyOf(buffer, size);
+        }
+        return successors;
+    }
+
+    /**
+     * @return the same edges the other way round, e.g. the predecessors of condensedSuccessors
+     */
+    public static int[][] invert(int[][] adjacency) {
+        int[] degree = new int[adjacency.length];
+        for (int[] targets : adjacency) {
+            for (int target : targets) {
+                degree[target]++;
+            }
+        }
+        int[][] inverted = new int[adjacency.length][];
+        for (int c = 0; c < adjacency.length; c++) {
+            inverted[c] = new int[degree[c]];
+            degree[c] = 0;
+        }
+        for (int c = 0; c < adjacency.length; c++) {
+            for (int target : adjacency[c]) {
+                inverted[target][degree[target]++] = c;
+            }
+        }
+        return inverted;
+    }
+
+    /**
+     * an edge is cyclic when both ends sit in the same component, self-loops excluded
+     */
+    public boolean isCyclicEdge(int source, int target) {
+        return source != target && componentOf[source] == componentOf[target];
+    }
+}
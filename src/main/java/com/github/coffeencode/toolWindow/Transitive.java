@@ -1,16 +1,40 @@
 package com.github.coffeencode.toolWindow;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 public class Transitive {
-    private final Map<String, List<String>> graph;
+    private final DependencyGraph graph;
+    private final AnalysisProgress progress;
+    // computed on the first findRedundant unless given to the constructor
+    private StronglyConnectedComponents components;
 
     /**
      * com.github.coffeencode.toolWindow.Transitive constructor
      * @param graph
      */
     public Transitive(Map<String, List<String>> graph) {
+        this(DependencyGraph.fromMap(graph));
+    }
+
+    public Transitive(DependencyGraph graph) {
+        this(graph, AnalysisProgress.NONE);
+    }
+
+    /**
+     * @param progress checked once per node or component, may cancel the analysis by throwing
+     */
+    public Transitive(DependencyGraph graph, AnalysisProgress progress) {
         this.graph = graph;
+        this.progress = progress;
+    }
+
+    /**
+     * @param components already computed, e.g. shared with Cyclic by AnalysisExecutor
+     */
+    public Transitive(StronglyConnectedComponents components, AnalysisProgress progress) {
+        this(components.graph(), progress);
+        this.components = components;
     }
 
     /**
@@ -35,19 +59,64 @@ public class Transitive {
      * -> java Transtive (this runs the file and output the test cases from main)
      */
     public Map<String, List<String>> findTransitives() {
-        Map<String, List<String>> result = new HashMap<>();
-        for (String node : graph.keySet()) {
-            Set<String> visited = new HashSet<>();
-            dfs(node, visited);
+        return findTransitives(null);
+    }
 
-            visited.remove(node);
-            visited.removeAll(graph.getOrDefault(node, Collections.emptyList()));
+    /**
+     * same as findTransitives(), restricted to some nodes.
+     * Classes of one strongly connected component reach the same classes, so the search runs once per
+     * component (see TransitiveClosure) and its members' lists are read off the same compressed set.
+     * The components are spread over a fork-join pool (see AnalysisExecutor.parallelFor).
+     * Every list holds the names of every class reached, use closure() for counts or lazy iteration instead
+     * @param sources sources[n] is true if the transitives of node n are wanted, null for every node
+     */
+    public Map<String, List<String>> findTransitives(boolean[] sources) {
+        TransitiveClosure closure = closure();
+        // every component sets only the slots of its own members, the size never changes
+        List<List<String>> transitivesOf = new ArrayList<>(Collections.nCopies(graph.nodeCount(), null));
+        AnalysisExecutor.parallelFor(0, components.componentCount(), c -> {
+            boolean wanted = sources == null;
+            for (int m = components.memberStart(c); m < components.memberEnd(c) && !wanted; m++) {
+                wanted = sources[components.member(m)];
+            }
+            if (!wanted) {
+                return;
+            }
+            progress.checkpoint();
+            CompressedBitmap reachable = closure.reachableComponents(c);
+            for (int m = components.memberStart(c); m < components.memberEnd(c); m++) {
+                int node = components.member(m);
+                if (sources != null && !sources[node]) {
+                    continue;
+                }
+                List<String> indirect = new ArrayList<>();
+                for (PrimitiveIterator.OfInt it = closure.transitives(node, reachable); it.hasNext(); ) {
+                    indirect.add(graph.name(it.nextInt()));
+                }
+                transitivesOf.set(node, indirect);
+            }
+        });
 
-            result.put(node, new ArrayList<>(visited));
+        Map<String, List<String>> result = new HashMap<>();
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            if (transitivesOf.get(node) != null) {
+                result.put(graph.name(node), transitivesOf.get(node));
+            }
         }
         return result;
     }
 
+    /**
+     * @return the transitive dependencies of every node, computed per component when asked for,
+     *         sharing the components with findRedundant
+     */
+    public TransitiveClosure closure() {
+        if (components == null) {
+            components = new StronglyConnectedComponents(graph, progress);
+        }
+        return new TransitiveClosure(components);
+    }
+
     /**
      * find redundant nodes: direct edges is redundant if the node is reachable
      * even without the direct dependencies.
@@ -55,55 +124,214 @@ public class Transitive {
      * A -> B -> C
      * A -> C
      * A -> C is redundant as A can still reach C via B
+     *
+     * works on the condensation (every strongly connected component collapsed to one node),
+     * walked in reverse topological order. Each component keeps the set of components it can
+     * reach as a CompressedBitmap until its last dependent is done, unions are built in a word-packed
+     * scratch bitset, so deciding all edges costs about O(V * E / 64).
+     * Edges inside a cycle (both ends in the same component) are never reported here,
+     * they are what com.github.coffeencode.toolWindow.Cyclic reports. An edge leaving a
+     * component is redundant when its target is reachable through another dependency of
+     * the component, or through a second edge between the same two components.
+     * A self-loop is always redundant.
      * @return a Map where each key is a node in a graph, and the corresponding
      *         value is a list of nodes that is redundant from that node
      * Example output:
      * {A=[C]} this means that A->C is redundant
      */
     public Map<String, List<String>> findRedundant() {
+        return findRedundant(null);
+    }
+
+    /**
+     * same as findRedundant(), only deciding the edges that leave some nodes.
+     * Reachability is only computed for the components those nodes can reach.
+     * @param sources sources[n] is true if the edges of node n are wanted, null for every node
+     */
+    public Map<String, List<String>> findRedundant(boolean[] sources) {
+        boolean[] redundant = findRedundantEdges(sources);
         Map<String, List<String>> redundantEdges = new HashMap<>();
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                if (redundant[edge]) {
+                    redundantEdges.computeIfAbsent(graph.name(node), key -> new ArrayList<>())
+                            .add(graph.name(graph.target(edge)));
+                }
+            }
+        }
+        return redundantEdges;
+    }
 
-        for (String node : graph.keySet()) {
-            List<String> redundant = new ArrayList<>();
+    /**
+     * the redundant edges by edge id, the shape AnalysisResult keeps them in
+     * @param sources sources[n] is true if the edges of node n are wanted, null for every node
+     * @return redundant[edge] for every edge id of the graph, false for edges of nodes that were not wanted
+     */
+    public boolean[] findRedundantEdges(boolean[] sources) {
+        if (components == null) {
+            components = new StronglyConnectedComponents(graph, progress);
+        }
+        int componentCount = components.componentCount();
 
-            for (String neighbour : graph.getOrDefault(node, Collections.emptyList())) {
-                // Create a visited set to check if there's an alternative path
-                Set<String> visited = new HashSet<>();
-                if (canReachWithoutEdge(node, neighbour, visited, node, neighbour)) {
-                    redundant.add(neighbour);
-                }
+        // decide[c]: edges of c are reported, needed[c]: c is reachable from a decided component
+        boolean[] decide = new boolean[componentCount];
+        boolean[] needed = new boolean[componentCount];
+        for (int node = 0; node < graph.nodeCount(); node++) {
+            if (sources == null || sources[node]) {
+                decide[components.componentOf(node)] = true;
             }
+        }
 
-            if (!redundant.isEmpty()) {
-                redundantEdges.put(node, redundant);
+        // count how many components depend on each one, and find each component's depth:
+        // the longest path to it from a decided component. Components of one depth never depend on
+        // each other, and everything they depend on is deeper, so a whole depth can be done in parallel
+        Scratch counting = new Scratch(componentCount);
+        int[] pending = new int[componentCount];
+        int[] depth = new int[componentCount];
+        int maxDepth = 0;
+        // predecessors have higher numbers, so walking downwards spreads needed (and depth) to every successor in time
+        for (int c = componentCount - 1; c >= 0; c--) {
+            needed[c] |= decide[c];
+            if (!needed[c]) {
+                continue;
+            }
+            maxDepth = Math.max(maxDepth, depth[c]);
+            int successorCount = collectSuccessors(components, c, counting.stamp, counting.multiplicity, counting.successors);
+            for (int i = 0; i < successorCount; i++) {
+                int successor = counting.successors[i];
+                needed[successor] = true;
+                pending[successor]++;
+                depth[successor] = Math.max(depth[successor], depth[c] + 1);
             }
         }
 
-        return redundantEdges;
+        // needed components grouped by depth (counting sort)
+        int[] levelStart = new int[maxDepth + 2];
+        for (int c = 0; c < componentCount; c++) {
+            if (needed[c]) {
+                levelStart[depth[c] + 1]++;
+            }
+        }
+        for (int d = 0; d <= maxDepth; d++) {
+            levelStart[d + 1] += levelStart[d];
+        }
+        int[] order = new int[levelStart[maxDepth + 1]];
+        int[] fill = Arrays.copyOf(levelStart, maxDepth + 1);
+        for (int c = 0; c < componentCount; c++) {
+            if (needed[c]) {
+                order[fill[depth[c]]++] = c;
+            }
+        }
+
+        // deepest components first, so every successor is finished before its predecessors.
+        // the reach sets are compressed, and dropped as soon as every predecessor has used them
+        CompressedBitmap[] reach = new CompressedBitmap[componentCount];
+        AtomicIntegerArray pendingPredecessors = new AtomicIntegerArray(pending);
+        boolean[] redundant = new boolean[graph.edgeCount()];
+        ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(componentCount));
+        for (int d = maxDepth; d >= 0; d--) {
+            AnalysisExecutor.parallelFor(levelStart[d], levelStart[d + 1], i -> {
+                progress.checkpoint();
+                decideComponent(order[i], sources, scratch.get(), reach, pendingPredecessors, redundant);
+            });
+        }
+        return redundant;
     }
 
-    private boolean canReachWithoutEdge(String current, String target, Set<String> visited, String src, String excluded) {
-        if (current.equals(target)) return true;
+    /**
+     * decide the edges of the members of component c and store the components c can reach.
+     * every successor of c has its reach set already
+     */
+    private void decideComponent(int c, boolean[] sources, Scratch scratch, CompressedBitmap[] reach,
+                                 AtomicIntegerArray pendingPredecessors, boolean[] redundant) {
+        int successorCount = collectSuccessors(components, c, scratch.stamp, scratch.multiplicity, scratch.successors);
+        int[] successors = scratch.successors;
+        int[] multiplicity = scratch.multiplicity;
+
+        // components reachable through at least one dependency, the dependencies themselves excluded.
+        // everything c reaches has a lower number, so only the words below c are used
+        long[] indirect = scratch.words;
+        int wordCount = (c + 63) >>> 6;
+        Arrays.fill(indirect, 0, wordCount, 0);
+        for (int i = 0; i < successorCount; i++) {
+            reach[successors[i]].orInto(indirect);
+        }
 
-        for (String neighbour : graph.getOrDefault(current, Collections.emptyList())) {
-            if (current.equals(src) && neighbour.equals(excluded)) continue;
-            if (visited.add(neighbour)) {
-                if (canReachWithoutEdge(neighbour, target, visited, src, excluded)) {
-                    return true;
+        for (int m = components.memberStart(c); m < components.memberEnd(c); m++) {
+            int node = components.member(m);
+            if (sources != null && !sources[node]) {
+                continue;
+            }
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                int child = graph.target(edge);
+                int target = components.componentOf(child);
+                boolean isRedundant;
+                if (child == node) {
+                    isRedundant = true;
+                } else if (target == c) {
+                    isRedundant = false;
+                } else {
+                    isRedundant = multiplicity[target] > 1
+                            || (indirect[target >>> 6] & (1L << target)) != 0;
                 }
+                redundant[edge] = isRedundant;
             }
         }
-        return false;
-    }
 
-    private void dfs(String node, Set<String> visited) {
-        for (String neighbour : graph.getOrDefault(node, Collections.emptyList())) {
-            if (visited.add(neighbour)) {
-                dfs(neighbour, visited);
+        for (int i = 0; i < successorCount; i++) {
+            int successor = successors[i];
+            indirect[successor >>> 6] |= 1L << successor;
+            // nobody else needs the successor's set once all its predecessors are done
+            if (pendingPredecessors.decrementAndGet(successor) == 0) {
+                reach[successor] = null;
             }
         }
+        if (pendingPredecessors.get(c) > 0) {
+            reach[c] = CompressedBitmap.of(indirect, wordCount); // a component nobody depends on keeps no set
+        }
     }
 
+    // per thread buffers of collectSuccessors, and of the reach set being built
+    private static class Scratch {
+        final int[] stamp;
+        final int[] multiplicity;
+        final int[] successors;
+        final long[] words;
+
+        Scratch(int componentCount) {
+            stamp = new int[componentCount];
+            multiplicity = new int[componentCount];
+            successors = new int[componentCount];
+            words = new long[(componentCount + 63) >>> 6];
+            Arrays.fill(stamp, -1);
+        }
+    }
+
+    /**
+     * collect the distinct components that component c depends on, and count the edges into each
+     * @return number of successors written into successors
+     */
+    private static int collectSuccessors(StronglyConnectedComponents components, int c,
+                                         int[] stamp, int[] multiplicity, int[] successors) {
+        DependencyGraph graph = components.graph();
+        int count = 0;
+        for (int m = components.memberStart(c); m < components.memberEnd(c); m++) {
+            int node = components.member(m);
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                int target = components.componentOf(graph.target(edge));
+                if (target == c) {
+                    continue;
+                }
+                if (stamp[target] != c) {
+                    stamp[target] = c;
+                    multiplicity[target] = 0;
+                    successors[count++] = target;
+                }
+                multiplicity[target]++;
+            }
+        }
+        return count;
+    }
 
     public static void main(String[] args) {
         //testing 1
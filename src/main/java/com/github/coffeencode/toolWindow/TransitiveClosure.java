@@ -0,0 +1,191 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * transitive dependencies without materialising them: classes of one strongly connected component reach
+ * exactly the same classes, so reachability is worked out once per component, over component numbers,
+ * as a CompressedBitmap. Nothing is computed up front, a component's set is found when a class of it is
+ * asked about (a search over the condensation), and only the counts and iterators built on it are handed out.
+ * Memory stays at the condensation plus the sets in use, instead of a list of names for every pair of classes.
+ * Thread safe, every query uses scratch arrays of its own thread.
+ */
+public class TransitiveClosure {
+    private final DependencyGraph graph;
+    private final StronglyConnectedComponents components;
+    private final int[][] successors;
+    // a component reaches itself if it is a cycle, or its single class depends on itself
+    private final boolean[] reachesItself;
+    private final ThreadLocal<Scratch> scratch;
+
+    public TransitiveClosure(DependencyGraph graph) {
+        this(new StronglyConnectedComponents(graph));
+    }
+
+    /**
+     * @param components shared with the other analyses, see AnalysisExecutor
+     */
+    public TransitiveClosure(StronglyConnectedComponents components) {
+        this.graph = components.graph();
+        this.components = components;
+        successors = components.condensedSuccessors();
+        int count = components.componentCount();
+        reachesItself = new boolean[count];
+        for (int c = 0; c < count; c++) {
+            int first = components.member(components.memberStart(c));
+            reachesItself[c] = components.componentSize(c) > 1 || graph.hasEdge(first, first);
+        }
+        scratch = ThreadLocal.withInitial(() -> new Scratch(count));
+    }
+
+    public DependencyGraph graph() {
+        return graph;
+    }
+
+    public StronglyConnectedComponents components() {
+        return components;
+    }
+
+    /**
+     * @return the components reachable from a component through at least one dependency, the component
+     *         itself only if it reaches itself. The same set serves every class of the component
+     */
+    public CompressedBitmap reachableComponents(int component) {
+        Scratch s = scratch.get();
+        int wordCount = (components.componentCount() + 63) >>> 6;
+        Arrays.fill(s.words, 0, wordCount, 0);
+        // iterative depth first search, every component reached is marked in the bitmap
+        int top = 0;
+        for (int successor : successors[component]) {
+            if (!s.marked(successor)) {
+                s.mark(successor);
+                s.stack[top++] = successor;
+            }
+        }
+        while (top > 0) {
+            int c = s.stack[--top];
+            for (int successor : successors[c]) {
+                if (!s.marked(successor)) {
+                    s.mark(successor);
+                    s.stack[top++] = successor;
+                }
+            }
+        }
+        if (reachesItself[component]) {
+            s.mark(component);
+        }
+        return CompressedBitmap.of(s.words, wordCount);
+    }
+
+    /**
+     * @return true if source reaches target through at least one dependency
+     */
+    public boolean reaches(int source, int target) {
+        return reachableComponents(components.componentOf(source)).contains(components.componentOf(target));
+    }
+
+    /**
+     * @return how many classes source reaches through at least one dependency, itself included if it is on a cycle
+     */
+    public int reachableCount(int source) {
+        return reachableCount(reachableComponents(components.componentOf(source)));
+    }
+
+    private int reachableCount(CompressedBitmap reachable) {
+        int count = 0;
+        for (PrimitiveIterator.OfInt it = reachable.iterator(); it.hasNext(); ) {
+            count += components.componentSize(it.nextInt());
+        }
+        return count;
+    }
+
+    /**
+     * the transitives as Transitive.findTransitives defines them: reachable, but neither the class itself
+     * nor one of its direct dependencies
+     */
+    public int transitiveCount(int source) {
+        CompressedBitmap reachable = reachableComponents(components.componentOf(source));
+        int count = reachableCount(reachable);
+        for (int edge = graph.edgeStart(source); edge < graph.edgeEnd(source); edge++) {
+            if (graph.target(edge) != source) {
+                count--; // every direct dependency is reachable, and counted once
+            }
+        }
+        if (reachable.contains(components.componentOf(source))) {
+            count--;
+        }
+        return count;
+    }
+
+    /**
+     * @return the classes counted by transitiveCount, produced while iterating, by component
+     */
+    public PrimitiveIterator.OfInt transitives(int source) {
+        return transitives(source, reachableComponents(components.componentOf(source)));
+    }
+
+    /**
+     * same as transitives(source), for a class whose component's set is already at hand,
+     * e.g. to go through every class of a component with one search
+     * @param reachable reachableComponents of the component of source
+     */
+    public PrimitiveIterator.OfInt transitives(int source, CompressedBitmap reachable) {
+        PrimitiveIterator.OfInt reachedComponents = reachable.iterator();
+        return new PrimitiveIterator.OfInt() {
+            private int position;
+            private int end;
+            private int next = -1;
+
+            @Override
+            public boolean hasNext() {
+                while (next == -1) {
+                    if (position == end) {
+                        if (!reachedComponents.hasNext()) {
+                            return false;
+                        }
+                        int c = reachedComponents.nextInt();
+                        position = components.memberStart(c);
+                        end = components.memberEnd(c);
+                        continue;
+                    }
+                    int node = components.member(position++);
+                    if (node != source && !graph.hasEdge(source, node)) {
+                        next = node;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int node = next;
+                next = -1;
+                return node;
+            }
+        };
+    }
+
+    // per thread search buffers, cleared before every search
+    private static class Scratch {
+        final long[] words;
+        final int[] stack;
+
+        Scratch(int componentCount) {
+            words = new long[(componentCount + 63) >>> 6];
+            stack = new int[componentCount];
+        }
+
+        boolean marked(int c) {
+            return (words[c >>> 6] & (1L << c)) != 0;
+        }
+
+        void mark(int c) {
+            words[c >>> 6] |= 1L << c;
+        }
+    }
+}
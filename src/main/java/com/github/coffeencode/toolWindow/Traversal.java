@@ -0,0 +1,147 @@
+package com.github.coffeencode.toolWindow;
+
+import java.util.function.IntPredicate;
+
+/**
+ * breadth first search over the dense ids of a DependencyGraph, along dependencies (forwards) or dependents,
+ * without recursion, boxing or a visited set per search: the reached classes are NodeMarks, and their order,
+ * parents and depths are int arrays sized once for the graph. clear() forgets a search in O(1), so one
+ * Traversal serves every search of an analysis or a query.
+ * Reached classes are kept in the order they were reached, which is also the queue: expanding takes them from
+ * the front, one level after the other.
+ * Not thread safe, every thread needs its own
+ */
+public class Traversal {
+    private final DependencyGraph graph;
+    private final NodeMarks reached;
+    // reached classes in order, the ones from head on are not expanded yet
+    private final int[] order;
+    // valid for reached classes only
+    private final int[] parent;
+    private final int[] depth;
+    private int count;
+    private int head;
+
+    public Traversal(DependencyGraph graph) {
+        this.graph = graph;
+        int n = graph.nodeCount();
+        reached = new NodeMarks(n);
+        order = new int[n];
+        parent = new int[n];
+        depth = new int[n];
+    }
+
+    public DependencyGraph graph() {
+        return graph;
+    }
+
+    /**
+     * forget every reached class, O(1)
+     */
+    public void clear() {
+        reached.clear();
+        count = 0;
+        head = 0;
+    }
+
+    /**
+     * reach a class to start from, at depth 0 without a parent
+     * @return false if it was reached already
+     */
+    public boolean start(int node) {
+        return reach(node, -1, 0);
+    }
+
+    public boolean isReached(int node) {
+        return reached.isMarked(node);
+    }
+
+    /**
+     * @return the class it was reached from, -1 for a start
+     */
+    public int parent(int node) {
+        return parent[node];
+    }
+
+    /**
+     * @return dependencies from the closest start, 0 for a class that was not reached
+     */
+    public int depth(int node) {
+        return reached.isMarked(node) ? depth[node] : 0;
+    }
+
+    /**
+     * @return how many classes were reached
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * @return the i-th class reached, starts first
+     */
+    public int node(int i) {
+        return order[i];
+    }
+
+    /**
+     * reach every class next to node that is not reached yet and that filter accepts, one deeper than node.
+     * node itself need not be reached, it then counts as depth 0 and is reached again if a cycle leads back
+     * @param filter null to accept every class
+     * @return how many classes were reached
+     */
+    public int expand(int node, boolean forwards, IntPredicate filter) {
+        int before = count;
+        int next = depth(node) + 1;
+        int start = forwards ? graph.edgeStart(node) : graph.dependentStart(node);
+        int end = forwards ? graph.edgeEnd(node) : graph.dependentEnd(node);
+        for (int position = start; position < end; position++) {
+            int neighbour = forwards ? graph.target(position) : graph.dependent(position);
+            if (!reached.isMarked(neighbour) && (filter == null || filter.test(neighbour))) {
+                reach(neighbour, node, next);
+            }
+        }
+        return count - before;
+    }
+
+    /**
+     * expand every class reached but not expanded yet, not the ones this reaches
+     * @return how many classes were reached, 0 once the search is over
+     */
+    public int nextLevel(boolean forwards, IntPredicate filter) {
+        int before = count;
+        for (int end = count; head < end; head++) {
+            expand(order[head], forwards, filter);
+        }
+        return count - before;
+    }
+
+    /**
+     * expand until nothing new is reached, or target is
+     * @param maxDepth classes this deep are reached but not expanded
+     * @param target stops as soon as it is reached, -1 to search everything
+     * @return true if target was reached
+     */
+    public boolean breadthFirst(boolean forwards, int maxDepth, IntPredicate filter, int target) {
+        while (head < count) {
+            int node = order[head++];
+            if (depth[node] < maxDepth) {
+                expand(node, forwards, filter);
+                if (target != -1 && reached.isMarked(target)) {
+                    return true;
+                }
+            }
+        }
+        return target != -1 && reached.isMarked(target);
+    }
+
+    private boolean reach(int node, int from, int level) {
+        if (!reached.mark(node)) {
+            return false;
+        }
+        order[count++] = node;
+        parent[node] = from;
+        depth[node] = level;
+        return true;
+    }
+}
@@ -1,6 +1,15 @@
 package com.github.coffeencode.toolWindow;
 
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectUtil;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowFactory;
 import com.intellij.ui.components.JBLabel;
@@ -8,70 +17,281 @@ import com.intellij.ui.components.JBPanel;
 import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
-import org.jgrapht.graph.DefaultDirectedGraph;
-import org.jgrapht.graph.DefaultEdge;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 public class VisualisationToolWindowFactory implements ToolWindowFactory {
+    // the whole pipeline (reading, analyses and layout) has to finish within this time
+    private static final long TIME_BUDGET_MILLIS = 120_000;
+    private static final Logger LOG = Logger.getInstance(VisualisationToolWindowFactory.class);
 
     @Override
     public void createToolWindowContent (Project project, ToolWindow toolWindow){
-        // read knit.json file
-        String jsonContent = OrganiseHelpers.readFile(project);
-        String errMessage = "";
-        // if no json content is found
-        if (jsonContent.isEmpty()) {
-            errMessage = "Sorry, we could not find the knit.json file of your project.";
-        }
+        // the knit.json of every module is searched for in the background, walking a large project takes a while.
+        // their build directories are watched as long as the tool window
+        VirtualFile projectDir = ProjectUtil.guessProjectDir(project);
+        KnitJsonLocator locator = new KnitJsonLocator(project);
+        Disposer.register(toolWindow.getDisposable(), locator);
 
-        // summarise dependencies
-        Map<String, List<String>> dependenciesTable = OrganiseHelpers.summariseDependencies(jsonContent);
-        if (dependenciesTable.isEmpty()) {
-            errMessage = "Sorry, no dependencies were found for this project.";
-        }
+        // placeholder until the background analysis is done
+        showMessage(toolWindow, "Analysing the dependencies in knit.json...");
+        Path snapshotPath = snapshotPath(project);
 
-        // find cycles
-        Map<String, List<String>> cyclicDependencies = new Cyclic(dependenciesTable).findCycles();
+        new Task.Backgroundable(project, "Analysing knit dependencies", true) {
+            private IncrementalAnalysis analysis;
+            private GraphVisualiser visualiser;
+            // the project has no knit.json in its build outputs
+            private boolean noKnitJson;
+            // knit.json could not be read, shown instead of the graph
+            private IOException loadError;
+            // every phase below is timed, see the stats footer and the IDE log
+            private final PipelineStats stats = new PipelineStats();
 
-        // find transitives
-        Map<String, List<String>> transitiveDependencies = new Transitive(dependenciesTable).findTransitives();
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(false);
+                AnalysisProgress progress = new AnalysisProgress(TIME_BUDGET_MILLIS) {
+                    @Override
+                    protected void checkCancelled() {
+                        indicator.checkCanceled();
+                    }
 
-        // find redundancies
-        Map<String, List<String>> redundantDependencies = new Transitive(dependenciesTable).findRedundant();
+                    @Override
+                    public void phase(String name, double fraction) {
+                        indicator.setText(name);
+                        indicator.setFraction(fraction);
+                        stats.phase(name);
+                    }
 
-        // if contains error
-        if (!errMessage.isEmpty()) {
-            JBPanel panel = new JBPanel<>();
-            panel.add(new JBLabel(errMessage));
-            Content content = ContentFactory.getInstance().createContent(panel, null, false);
-            toolWindow.getContentManager().addContent(content);
-            return;
-        }
+                    @Override
+                    public void taskFinished(String name, long nanos) {
+                        stats.task(name, nanos);
+                    }
+                };
+
+                progress.phase("Looking for knit.json", 0);
+                Map<String, Path> knitJsonFiles = projectDir == null ? Map.of() : locator.findKnitJsonFiles();
+                if (knitJsonFiles.isEmpty()) {
+                    noKnitJson = true;
+                    return;
+                }
+
+                // unchanged knit.json since the last run: restore the saved analysis instead of redoing it
+                progress.phase("Checking for a saved analysis", 0);
+                try {
+                    Map<String, byte[]> hashes = AnalysisSnapshot.hashes(knitJsonFiles);
+                    analysis = AnalysisSnapshot.load(snapshotPath, AnalysisSnapshot.combine(knitJsonFiles, hashes));
+                    if (analysis != null) {
+                        analysis.restoreModules(knitJsonFiles, hashes);
+                    }
+                } catch (IOException e) {
+                    analysis = null;
+                }
+
+                if (analysis == null) {
+                    // every module's knit.json is streamed in parallel, keeping them per module and class entry for later updates
+                    analysis = new IncrementalAnalysis();
+                    try {
+                        analysis.load(knitJsonFiles, progress);
+                    } catch (IOException e) {
+                        loadError = e;
+                        return;
+                    }
+                    // saved under the hash of the bytes that were parsed, not of the files as they are by now
+                    saveSnapshot(snapshotPath, analysis.knitJsonHash(), analysis);
+                }
+                stats.sizes(analysis.getResult());
+                if (analysis.getGraph().edgeCount() == 0) {
+                    return;
+                }
+
+                progress.phase("Building the graph view", 0.6);
+                // positions of the last session are reused, only what is new gets laid out
+                NodePositions saved = NodePositionService.getInstance(project).load();
+                visualiser = new GraphVisualiser(analysis.getResult(), analysis.getImpact(), saved, progress);
+            }
+
+            @Override
+            public void onSuccess() {
+                if (noKnitJson) {
+                    stats.finish();
+                    showMessage(toolWindow,
+                            "Sorry, we could not find a knit.json file in the build outputs of your project.");
+                    return;
+                }
+                if (loadError != null) {
+                    stats.finish();
+                    LOG.warn("knit.json could not be read", loadError);
+                    showMessage(toolWindow, "Sorry, knit.json could not be read: " + loadError.getMessage());
+                    return;
+                }
+                if (visualiser == null) {
+                    stats.finish();
+                    LOG.info(stats.report());
+                    showMessage(toolWindow, "Sorry, no dependencies were found for this project.");
+                    return;
+                }
+                showResult(project, toolWindow, projectDir, locator, analysis, visualiser, stats);
+            }
+
+            @Override
+            public void onCancel() {
+                showMessage(toolWindow, "The dependency analysis was cancelled, reopen the project to run it again.");
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                stats.finish();
+                LOG.info(stats.report());
+                if (error instanceof AnalysisProgress.TimeBudgetExceededException) {
+                    showMessage(toolWindow, "Sorry, analysing knit.json took longer than "
+                            + TIME_BUDGET_MILLIS / 1000 + " seconds and was stopped.");
+                } else {
+                    showMessage(toolWindow, "Sorry, the dependencies could not be analysed: " + error.getMessage());
+                }
+            }
+        }.queue();
+    }
+
+    private static void showMessage(ToolWindow toolWindow, String message) {
+        JBPanel panel = new JBPanel<>();
+        panel.add(new JBLabel(message));
+        Content content = ContentFactory.getInstance().createContent(panel, null, false);
+        toolWindow.getContentManager().removeAllContents(true);
+        toolWindow.getContentManager().addContent(content);
+    }
+
+    // swap the placeholder for the graph, must run on the UI thread
+    private static void showResult(Project project, ToolWindow toolWindow, VirtualFile projectDir,
+                                   KnitJsonLocator locator, IncrementalAnalysis analysis,
+                                   GraphVisualiser visualiser, PipelineStats stats) {
+        stats.phase("Showing the graph");
+        // the first paint happens later, once the tool window is visible
+        StatsFooter footer = new StatsFooter();
+        visualiser.setOnFirstPaint(nanos -> {
+            stats.task("Painting the graph", nanos);
+            footer.show(stats);
+        });
 
         // set up the panel
         JBPanel panel = new JBPanel<>();
         panel.setLayout(new BoxLayout(panel, BoxLayout.Y_AXIS));
         panel.add(Box.createVerticalStrut(5)); // add 5 pixels spacing from the top border
 
-        if (cyclicDependencies.isEmpty() && redundantDependencies.isEmpty()) {
-            panel.add(new JBLabel("FANTASTIC! Your project has no cyclic or redundant dependencies."));
-        } else if (cyclicDependencies.isEmpty()) {
-            panel.add(new JBLabel("GREAT! Your project has no cyclic dependencies."));
-        } else if (redundantDependencies.isEmpty()) {
-            panel.add(new JBLabel("GREAT! Your project has no redundant dependencies."));
-        }
+        JBLabel statusLabel = new JBLabel(statusMessage(analysis.getResult()));
+        panel.add(statusLabel);
         panel.add(Box.createVerticalStrut(5)); // add 5 pixels spacing after the message
 
-        DefaultDirectedGraph<String, DefaultEdge> graph = GraphBuilder.buildGraph(dependenciesTable);
-        panel.add(GraphVisualiser.visualise(graph, cyclicDependencies, redundantDependencies));
+        // updates of knit.json, path queries and cycle lists take turns on a single background thread,
+        // which goes away with the tool window, together with whatever is still queued
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Knit re-analysis", 1);
+        Disposer.register(toolWindow.getDisposable(), executor::shutdownNow);
+        panel.add(new ClassSearchBar(visualiser, analysis, executor));
+        panel.add(new PathQueryBar(visualiser, analysis, executor));
+        BaselineDiffBar diffBar = new BaselineDiffBar(project, visualiser, analysis, executor);
+        panel.add(diffBar);
+        panel.add(new CycleListPanel(visualiser, analysis, executor));
+        panel.add(visualiser.getPanel());
+
+        // keep the positions with the project, whenever units are laid out, expanded or dragged
+        NodePositionService positionService = NodePositionService.getInstance(project);
+        positionService.save(visualiser.getPositions());
+        visualiser.setOnPositionsChanged(() -> positionService.save(visualiser.getPositions()));
 
         JBScrollPane scrollPane = new JBScrollPane(panel); // in case vertically too long
+        // the stats stay at the bottom while scrolling
+        JBPanel root = new JBPanel<>(new BorderLayout());
+        root.add(scrollPane, BorderLayout.CENTER);
+        root.add(footer, BorderLayout.SOUTH);
 
         // add to toolWindow
-        Content content = ContentFactory.getInstance().createContent(scrollPane, "Dependencies Visualisation", false);
+        Content content = ContentFactory.getInstance().createContent(root, "Dependencies Visualisation", false);
+        toolWindow.getContentManager().removeAllContents(true);
         toolWindow.getContentManager().addContent(content);
+
+        stats.finish();
+        LOG.info(stats.report());
+        footer.show(stats);
+
+        watchKnitJson(project, toolWindow, projectDir, locator, analysis, visualiser, diffBar, statusLabel, footer,
+                executor);
+    }
+
+    // one snapshot per project, in the IDE's system directory so it never ends up in version control
+    private static Path snapshotPath(Project project) {
+        return Paths.get(PathManager.getSystemPath(), "coffeencode", project.getLocationHash(), "analysis.snapshot");
+    }
+
+    // the snapshot is only a cache, failing to write it just means the next start analyses again
+    private static void saveSnapshot(Path snapshotPath, byte[] hash, IncrementalAnalysis analysis) {
+        try {
+            AnalysisSnapshot.save(snapshotPath, hash, analysis);
+        } catch (IOException e) {
+            LOG.warn("Could not save the analysis snapshot to " + snapshotPath, e);
+        }
+    }
+
+    /**
+     * re-analyse whenever a knit.json of the project changes and patch the view instead of rebuilding it.
+     * only the modules whose knit.json changed are read again (modules may also appear or disappear, the
+     * project is only walked for them when files came or went).
+     * updates run one after the other on the executor, the patch is applied on the UI thread
+     */
+    private static void watchKnitJson(Project project, ToolWindow toolWindow, VirtualFile projectDir,
+                                      KnitJsonLocator locator, IncrementalAnalysis analysis,
+                                      GraphVisualiser visualiser, BaselineDiffBar diffBar, JBLabel statusLabel,
+                                      StatsFooter footer, ExecutorService executor) {
+        Path snapshotPath = snapshotPath(project);
+        KnitJsonListener listener = new KnitJsonListener(projectDir.getPath(), rediscover -> executor.execute(() -> {
+            PipelineStats stats = new PipelineStats();
+            stats.phase("Updating the analysis");
+            IncrementalAnalysis.Update update;
+            try {
+                Map<String, Path> knitJsonFiles = rediscover ? locator.findKnitJsonFiles() : locator.knitJsonFiles();
+                update = analysis.update(knitJsonFiles);
+            } catch (IOException e) {
+                return; // a file is being rewritten or was deleted, the next event brings the new content
+            }
+            // the files are not read again for the hash, a rewrite since the update would not match the analysis
+            saveSnapshot(snapshotPath, analysis.knitJsonHash(), analysis); // also when only formatting changed
+            if (update.isEmpty()) {
+                return;
+            }
+            diffBar.compareAgain(); // queued behind this update, the diff follows the graph
+            AnalysisResult result = analysis.getResult();
+            String message = statusMessage(result);
+            ImpactAnalysis impact = analysis.getImpact();
+            stats.sizes(result);
+            ApplicationManager.getApplication().invokeLater(() -> {
+                stats.phase("Updating the graph view");
+                visualiser.applyUpdate(update, result, impact);
+                statusLabel.setText(message);
+                stats.finish();
+                LOG.info(stats.report());
+                footer.show(stats);
+            }, project.getDisposed());
+        }));
+        project.getMessageBus().connect(toolWindow.getDisposable()).subscribe(VirtualFileManager.VFS_CHANGES, listener);
+    }
+
+    private static String statusMessage(AnalysisResult result) {
+        boolean noCycles = result.cyclicEdgeCount() == 0;
+        boolean noRedundancies = result.redundantEdgeCount() == 0;
+        if (noCycles && noRedundancies) {
+            return "FANTASTIC! Your project has no cyclic or redundant dependencies.";
+        } else if (noCycles) {
+            return "GREAT! Your project has no cyclic dependencies.";
+        } else if (noRedundancies) {
+            return "GREAT! Your project has no redundant dependencies.";
+        }
+        return "";
     }
 }
@@ -0,0 +1,89 @@
+package com.github.coffeencode.toolWindow
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class CycleEnumeratorTest {
+
+    // every class depends on every other one: 6 cycles of 2 classes, 8 of 3 and 6 of 4
+    private fun complete(vararg names: String): Cyclic {
+        val builder = DependencyGraph.Builder()
+        for (source in names) {
+            for (target in names) {
+                if (source != target) {
+                    builder.addEdge(source, target)
+                }
+            }
+        }
+        return Cyclic(builder.build())
+    }
+
+    private fun lengths(cycles: List<List<String>>): List<Int> = cycles.map { it.size - 1 }
+
+    @Test
+    fun everyCycleShortestFirst() {
+        val cycles = mutableListOf<List<String>>()
+
+        val stop = complete("A", "B", "C", "D").enumerateCycles(0, 0, 0) { cycles.add(it) }
+
+        assertEquals(CycleEnumerator.Stop.COMPLETE, stop)
+        assertEquals(20, cycles.size)
+        assertEquals(List(6) { 2 } + List(8) { 3 } + List(6) { 4 }, lengths(cycles))
+        assertEquals("no rotation comes out twice", 20, cycles.toSet().size)
+        for (cycle in cycles) {
+            assertEquals("written from the smallest class", cycle.min(), cycle.first())
+            assertEquals(cycle.first(), cycle.last())
+            assertEquals("elementary", cycle.size - 1, cycle.toSet().size)
+        }
+    }
+
+    @Test
+    fun chainOfGrowingCycles() {
+        val builder = DependencyGraph.Builder()
+        builder.addEdge("A", "B")
+        builder.addEdge("B", "A")
+        builder.addEdge("B", "C")
+        builder.addEdge("C", "A")
+        builder.addEdge("C", "D")
+        builder.addEdge("D", "A")
+        builder.addEdge("E", "E")
+
+        val cycles = Cyclic(builder.build()).cycles(0, 0, 0).asSequence().toList()
+
+        assertEquals(
+            listOf(listOf("A", "B", "A"), listOf("A", "B", "C", "A"), listOf("A", "B", "C", "D", "A")),
+            cycles
+        )
+    }
+
+    @Test
+    fun stopsAtMaxLength() {
+        val cycles = complete("A", "B", "C", "D").cycles(0, 3, 0)
+
+        val found = cycles.asSequence().toList()
+
+        assertEquals(14, found.size)
+        assertTrue(lengths(found).all { it <= 3 })
+        assertEquals(CycleEnumerator.Stop.MAX_LENGTH, cycles.stop())
+    }
+
+    @Test
+    fun stopsAtMaxCycles() {
+        val cycles = complete("A", "B", "C", "D").cycles(5, 0, 0)
+
+        val found = cycles.asSequence().toList()
+
+        assertEquals(List(5) { 2 }, lengths(found))
+        assertEquals(CycleEnumerator.Stop.MAX_CYCLES, cycles.stop())
+    }
+
+    @Test
+    fun johnsonFindsTheSameCycles() {
+        val cyclic = complete("A", "B", "C", "D")
+        val enumerated = cyclic.cycles(0, 0, 0).asSequence().toSet()
+
+        assertEquals(enumerated, cyclic.findElementaryCycles(100).toSet())
+        assertEquals(7, cyclic.findElementaryCycles(7).size)
+    }
+}
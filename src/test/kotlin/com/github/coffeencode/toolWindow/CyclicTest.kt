@@ -0,0 +1,88 @@
+package com.github.coffeencode.toolWindow
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class CyclicTest {
+
+    // nodes get their ids in the order they are named here
+    private fun graph(vararg edges: Pair<String, String>): DependencyGraph {
+        val builder = DependencyGraph.Builder()
+        for ((source, target) in edges) {
+            builder.addEdge(source, target)
+        }
+        return builder.build()
+    }
+
+    // A -> B -> C -> A, C -> D, D <-> E, and F depending on itself only
+    private val twoComponents = graph(
+        "A" to "B", "B" to "C", "C" to "A", "C" to "D", "D" to "E", "E" to "D", "F" to "F"
+    )
+
+    @Test
+    fun componentsOfCyclesAndTheirNeighbours() {
+        val components = StronglyConnectedComponents(twoComponents)
+        val graph = twoComponents
+
+        assertEquals(3, components.componentCount())
+        assertEquals(3, components.componentSize(components.componentOf(graph.id("A"))))
+        assertEquals(components.componentOf(graph.id("A")), components.componentOf(graph.id("C")))
+        assertEquals(components.componentOf(graph.id("D")), components.componentOf(graph.id("E")))
+        assertTrue(components.componentOf(graph.id("C")) != components.componentOf(graph.id("D")))
+        assertEquals(1, components.componentSize(components.componentOf(graph.id("F"))))
+    }
+
+    @Test
+    fun onlyEdgesInsideAComponentAreCyclic() {
+        val components = StronglyConnectedComponents(twoComponents)
+        val graph = twoComponents
+
+        assertTrue(components.isCyclicEdge(graph.id("C"), graph.id("A")))
+        assertTrue(components.isCyclicEdge(graph.id("E"), graph.id("D")))
+        assertFalse(components.isCyclicEdge(graph.id("C"), graph.id("D")))
+        assertFalse("self-loops are not cycles", components.isCyclicEdge(graph.id("F"), graph.id("F")))
+    }
+
+    @Test
+    fun findCycles() {
+        val cycles = Cyclic(twoComponents).findCycles()
+
+        assertEquals(
+            mapOf("A" to listOf("B"), "B" to listOf("C"), "C" to listOf("A"), "D" to listOf("E"), "E" to listOf("D")),
+            cycles
+        )
+    }
+
+    @Test
+    fun findCyclesFromAMap() {
+        val cycles = Cyclic(
+            mapOf("A" to listOf("B", "D"), "B" to listOf("C"), "C" to listOf("A"), "D" to listOf("A"))
+        ).findCycles()
+
+        assertEquals(setOf("A", "B", "C", "D"), cycles.keys)
+        assertEquals(setOf("B", "D"), cycles.getValue("A").toSet())
+    }
+
+    @Test
+    fun findCyclicEdgesOfSomeSources() {
+        val graph = twoComponents
+        val sources = BooleanArray(graph.nodeCount())
+        sources[graph.id("C")] = true
+
+        val cyclic = Cyclic(graph).findCyclicEdges(sources)
+
+        assertEquals(graph.edgeCount(), cyclic.size)
+        assertEquals(1, cyclic.count { it })
+        assertTrue(cyclic[graph.edgeId(graph.id("C"), graph.id("A"))])
+    }
+
+    @Test
+    fun noCyclesWithoutBackEdges() {
+        val cyclic = Cyclic(graph("A" to "B", "B" to "C", "A" to "C"))
+
+        assertTrue(cyclic.findCycles().isEmpty())
+        assertTrue(cyclic.findElementaryCycles(100).isEmpty())
+    }
+}
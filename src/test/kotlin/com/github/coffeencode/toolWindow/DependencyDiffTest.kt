@@ -0,0 +1,98 @@
+package com.github.coffeencode.toolWindow
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.random.Random
+
+class DependencyDiffTest {
+
+    private fun graph(edges: List<Pair<String, String>>): DependencyGraph {
+        val builder = DependencyGraph.Builder()
+        for ((source, target) in edges) {
+            builder.addEdge(source, target)
+        }
+        return builder.build()
+    }
+
+    private fun analyse(graph: DependencyGraph): AnalysisResult =
+        AnalysisExecutor().analyse(graph, AnalysisProgress.NONE).toAnalysisResult()
+
+    private fun flagsByEdge(result: AnalysisResult): Map<Pair<String, String>, Int> {
+        val graph = result.graph()
+        val flags = HashMap<Pair<String, String>, Int>()
+        for (node in 0 until graph.nodeCount()) {
+            for (edge in graph.edgeStart(node) until graph.edgeEnd(node)) {
+                flags[graph.name(node) to graph.name(graph.target(edge))] = result.flags(edge)
+            }
+        }
+        return flags
+    }
+
+    // both graphs analysed in full, and every dependency whose flags differ, as source, target, before, after
+    private fun bruteForce(baseline: DependencyGraph, current: DependencyGraph): List<List<Any>> {
+        val before = flagsByEdge(analyse(baseline))
+        val after = flagsByEdge(analyse(current))
+        return (before.keys + after.keys)
+            .map { edge ->
+                listOf(edge.first, edge.second,
+                    before[edge] ?: DependencyDiff.ABSENT, after[edge] ?: DependencyDiff.ABSENT)
+            }
+            .filter { it[2] != it[3] }
+            .sortedWith(compareBy({ it[0] as String }, { it[1] as String }))
+    }
+
+    private fun compare(baseline: DependencyGraph, current: DependencyGraph): List<List<Any>> =
+        DependencyDiff.compare(baseline, analyse(current), AnalysisProgress.NONE).edges()
+            .map { listOf(it.source, it.target, it.before, it.after) }
+
+    @Test
+    fun removedDependencyOfAClassOnlyInTheBaseline() {
+        // R exists only in the baseline, and its cycle with A goes with it
+        val baseline = graph(listOf("A" to "B", "A" to "R", "R" to "A", "B" to "C"))
+        val current = graph(listOf("A" to "B", "B" to "C"))
+
+        val diff = compare(baseline, current)
+
+        assertEquals(bruteForce(baseline, current), diff)
+        assertTrue(diff.contains(listOf("R", "A", AnalysisResult.CYCLIC, DependencyDiff.ABSENT)))
+    }
+
+    @Test
+    fun cycleAppearsAndDisappears() {
+        // B <-> C becomes a cycle, D <-> E stops being one, and A -> B and A -> C become redundant through it
+        val baseline = graph(listOf("A" to "B", "A" to "C", "C" to "D", "D" to "E", "E" to "D"))
+        val current = graph(listOf("A" to "B", "A" to "C", "B" to "C", "C" to "B", "C" to "D", "D" to "E"))
+
+        val diff = compare(baseline, current)
+
+        assertEquals(bruteForce(baseline, current), diff)
+        assertTrue(diff.contains(listOf("E", "D", AnalysisResult.CYCLIC, DependencyDiff.ABSENT)))
+        assertTrue(diff.contains(listOf("D", "E", AnalysisResult.CYCLIC, 0)))
+        assertTrue(diff.contains(listOf("C", "B", DependencyDiff.ABSENT, AnalysisResult.CYCLIC)))
+    }
+
+    @Test
+    fun unchangedGraphsHaveNoDifference() {
+        val edges = listOf("A" to "B", "B" to "C", "A" to "C", "C" to "A")
+
+        assertTrue(DependencyDiff.compare(graph(edges), analyse(graph(edges.reversed())), AnalysisProgress.NONE)
+            .isEmpty)
+    }
+
+    @Test
+    fun randomChangesEqualABruteForceDiff() {
+        val random = Random(7)
+        repeat(50) {
+            // classes 0 until 30 in both graphs, the baseline also has 30 until 35, the current 35 until 40
+            val shared = List(60) { "C" + random.nextInt(30) to "C" + random.nextInt(30) }
+            val baselineOnly = List(10) { "C" + random.nextInt(35) to "C" + random.nextInt(30, 35) }
+            val currentOnly = List(10) { "C" + random.nextInt(30) to "C" + random.nextInt(35, 40) }
+            val baseline = graph(shared.filter { random.nextInt(10) != 0 } + baselineOnly)
+            val current = graph(shared.filter { random.nextInt(10) != 0 } + currentOnly +
+                List(5) { "C" + random.nextInt(30) to "C" + random.nextInt(30) })
+
+            assertEquals(bruteForce(baseline, current), compare(baseline, current))
+        }
+    }
+}
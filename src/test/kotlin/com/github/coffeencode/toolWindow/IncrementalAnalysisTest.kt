@@ -0,0 +1,94 @@
+package com.github.coffeencode.toolWindow
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class IncrementalAnalysisTest {
+
+    // a knit.json where every class provides itself from the classes it depends on
+    private fun knitJson(vararg classes: Pair<String, List<String>>): String =
+        classes.joinToString(",\n", "{\n", "\n}") { (name, dependencies) ->
+            val className = name.replace("/", ".")
+            val parameters = dependencies.joinToString(", ") { "\"" + it.replace("/", ".") + "\"" }
+            "\"$name\": {\"providers\": [{\"provider\": \"$className.<init> -> $className\", " +
+                "\"parameters\": [$parameters]}]}"
+        }
+
+    private fun load(knitJson: String): IncrementalAnalysis {
+        val analysis = IncrementalAnalysis()
+        analysis.load(knitJson.byteInputStream())
+        return analysis
+    }
+
+    // flags of every dependency by class names, edge ids differ between an updated and a fresh graph
+    private fun flagsByEdge(analysis: IncrementalAnalysis): Map<Pair<String, String>, Int> {
+        val graph = analysis.graph
+        val flags = HashMap<Pair<String, String>, Int>()
+        for (node in 0 until graph.nodeCount()) {
+            for (edge in graph.edgeStart(node) until graph.edgeEnd(node)) {
+                flags[graph.name(node) to graph.name(graph.target(edge))] = analysis.result.flags(edge)
+            }
+        }
+        return flags
+    }
+
+    private val cyclic = AnalysisResult.CYCLIC
+    private val redundant = AnalysisResult.REDUNDANT
+
+    // x/X -> x/Y -> x/Z with x/X -> x/Z redundant, and x/P <-> x/Q, none of them touched by the update,
+    // so their flags are copied over from before, to edge ids moved by the changes before them
+    private val untouched = arrayOf(
+        "x/X" to listOf("x/Y", "x/Z"), "x/Y" to listOf("x/Z"), "x/Z" to listOf(),
+        "x/P" to listOf("x/Q"), "x/Q" to listOf("x/P")
+    )
+
+    // a/B <-> a/C, a/A -> a/B -> a/D with a/A -> a/D redundant
+    private val before = knitJson(
+        "a/A" to listOf("a/B", "a/D"), "a/B" to listOf("a/C", "a/D"), "a/C" to listOf("a/B"), "a/D" to listOf(),
+        *untouched
+    )
+
+    // a/C no longer depends on a/B, a/D is gone, and the new a/E sits between a/A and a/B
+    private val after = knitJson(
+        "a/A" to listOf("a/B", "a/E"), "a/B" to listOf("a/C"), "a/C" to listOf(), "a/E" to listOf("a/B"),
+        *untouched
+    )
+
+    @Test
+    fun updatedFlagsEqualAFreshLoad() {
+        val analysis = load(before)
+        assertEquals(cyclic, analysis.result.flags("a.C", "a.B"))
+        assertEquals(redundant, analysis.result.flags("a.A", "a.D"))
+
+        val update = analysis.update(after.byteInputStream())
+        assertTrue(update.removedNodes.contains("a.D"))
+
+        val fresh = load(after)
+        assertEquals(flagsByEdge(fresh), flagsByEdge(analysis))
+    }
+
+    @Test
+    fun brokenCycleAddedAndRemovedClasses() {
+        val analysis = load(before)
+        analysis.update(after.byteInputStream())
+        val flags = flagsByEdge(analysis)
+
+        assertEquals("the cycle is broken", 0, flags.getValue("a.B" to "a.C"))
+        assertFalse(flags.containsKey("a.C" to "a.B"))
+        assertFalse("the removed class keeps no dependency", flags.keys.any { it.first == "a.D" || it.second == "a.D" })
+        assertEquals("redundant through the added class", redundant, flags.getValue("a.A" to "a.B"))
+        assertEquals(redundant, flags.getValue("x.X" to "x.Z"))
+        assertEquals(cyclic, flags.getValue("x.P" to "x.Q"))
+    }
+
+    @Test
+    fun updateBackToTheFirstVersion() {
+        val analysis = load(before)
+        analysis.update(after.byteInputStream())
+        analysis.update(before.byteInputStream())
+
+        assertEquals(flagsByEdge(load(before)), flagsByEdge(analysis))
+    }
+}